@@ -19,7 +19,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.support.ui.Select;
 import org.webtestingexplorer.config.ActionGeneratorConfig;
 import org.webtestingexplorer.config.actiongenerator.TagActionGeneratorConfig;
 import org.webtestingexplorer.driver.WebDriverWrapper;
@@ -61,19 +60,12 @@ public class ActionGenerator {
       WebElementWithIdentifier elementWithId) {
     
     // WebDriver can only interact with visible elements.
-    WebElement element = elementWithId.safeGetElement(driver);
-    if (!element.isDisplayed() || !element.isEnabled()) {
+    if (!isInteractable(driver, elementWithId)) {
       return Sets.newHashSet();
     }
         
-    // We set this up to first look for custom action generator configs
-    // in the reverse order that they were added. Then if we haven't
-    // matched any custom ones, we check the default ones.
-    List<ActionGeneratorConfig> allActionGeneratorConfigs = Lists.newArrayList();
-    allActionGeneratorConfigs.addAll(customActionGeneratorConfigs);
-    Collections.reverse(allActionGeneratorConfigs);
-    allActionGeneratorConfigs.addAll(defaultActionGeneratorConfigs);
-    
+    List<ActionGeneratorConfig> allActionGeneratorConfigs =
+        getAllActionGeneratorConfigs(customActionGeneratorConfigs);
     for (ActionGeneratorConfig actionConfig : allActionGeneratorConfigs) {
       if (actionConfig.matches(driver, elementWithId)) {
         LOGGER.log(Level.FINE, "Generated actions for element " + elementWithId.getIdentifier());
@@ -83,6 +75,66 @@ public class ActionGenerator {
     LOGGER.log(Level.FINE, "No actions generated for element " + elementWithId.getIdentifier());
     return Sets.newHashSet();
   }
+  
+  /**
+   * Builds the list of actions to take on each of the given elements, the
+   * same as {@link #generateActionsForElement} would, but matching the
+   * configs that can be matched in the browser against all the elements of a
+   * frame at once.
+   * 
+   * @return the actions, in the order of the elements.
+   */
+  public List<Set<Action>> generateActionsForElements(WebDriverWrapper driver,
+      List<ActionGeneratorConfig> customActionGeneratorConfigs,
+      List<WebElementWithIdentifier> elements) {
+    Set<WebElementWithIdentifier> interactableElements = Sets.newLinkedHashSet();
+    for (WebElementWithIdentifier elementWithId : elements) {
+      if (isInteractable(driver, elementWithId)) {
+        interactableElements.add(elementWithId);
+      }
+    }
+    
+    ActionGeneratorMatcher matcher = new ActionGeneratorMatcher(
+        getAllActionGeneratorConfigs(customActionGeneratorConfigs));
+    matcher.matchAll(driver, Lists.newArrayList(interactableElements));
+    
+    List<Set<Action>> allActions = Lists.newArrayList();
+    for (WebElementWithIdentifier elementWithId : elements) {
+      ActionGeneratorConfig actionConfig = null;
+      if (interactableElements.contains(elementWithId)) {
+        actionConfig = matcher.getFirstMatch(driver, elementWithId);
+      }
+      if (actionConfig != null) {
+        LOGGER.log(Level.FINE, "Generated actions for element " + elementWithId.getIdentifier());
+        allActions.add(actionConfig.generateActions(driver, elementWithId));
+      } else {
+        LOGGER.log(Level.FINE, "No actions generated for element " + elementWithId.getIdentifier());
+        allActions.add(Sets.<Action>newHashSet());
+      }
+    }
+    return allActions;
+  }
+  
+  private static boolean isInteractable(WebDriverWrapper driver,
+      WebElementWithIdentifier elementWithId) {
+    WebElement element = elementWithId.safeGetElement(driver);
+    return element.isDisplayed() && element.isEnabled();
+  }
+  
+  /**
+   * Gets the configs to try, in order of precedence.
+   */
+  private List<ActionGeneratorConfig> getAllActionGeneratorConfigs(
+      List<ActionGeneratorConfig> customActionGeneratorConfigs) {
+    // We set this up to first look for custom action generator configs
+    // in the reverse order that they were added. Then if we haven't
+    // matched any custom ones, we check the default ones.
+    List<ActionGeneratorConfig> allActionGeneratorConfigs = Lists.newArrayList();
+    allActionGeneratorConfigs.addAll(customActionGeneratorConfigs);
+    Collections.reverse(allActionGeneratorConfigs);
+    allActionGeneratorConfigs.addAll(defaultActionGeneratorConfigs);
+    return allActionGeneratorConfigs;
+  }
 
   /**
    * Creates the requested number of SelectActions for the given element.
@@ -149,12 +201,14 @@ public class ActionGenerator {
       Set<Action> actions = Sets.newHashSet();
       // Default to selecting each of the first two options.
       // TODO(smcmaster): Enhance the API to allow customizing this behavior.
-      Select select = new Select(elementWithId.getElement());
+      // The length (number of options) comes from the element snapshot, so
+      // this saves fetching all the options.
+      int numOptions = Integer.parseInt(elementWithId.getElement().getAttribute("length"));
       int numActions = 0;
-      if (select.getOptions().size() >= 0) {
+      if (numOptions >= 0) {
         ++numActions;
       }
-      if (select.getOptions().size() >= 1) {
+      if (numOptions >= 1) {
         ++numActions;
       }
       actions.addAll(createDefaultSelectWidgetActions(elementWithId.getIdentifier(), numActions));
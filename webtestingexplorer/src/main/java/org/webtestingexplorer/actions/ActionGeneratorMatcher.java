@@ -0,0 +1,218 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.webtestingexplorer.config.ActionGeneratorConfig;
+import org.webtestingexplorer.config.ScriptMatchableActionGeneratorConfig;
+import org.webtestingexplorer.driver.WebDriverWrapper;
+import org.webtestingexplorer.driver.WebElementWrapper;
+import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
+import org.webtestingexplorer.javascript.JavaScriptUtil;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the first {@link ActionGeneratorConfig} that matches each of a list of
+ * elements. The {@link ScriptMatchableActionGeneratorConfig}s are matched
+ * against all the elements of a frame with one script call, instead of with
+ * several attribute lookups per element and config; the other configs are
+ * still asked one element at a time, in their turn.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionGeneratorMatcher {
+
+  private final static Logger LOGGER = Logger.getLogger(ActionGeneratorMatcher.class.getName());
+
+  private static final String MATCH_SCRIPT =
+      JavaScriptUtil.getJavaScriptFromFile("/matchActionGeneratorConfigs.js");
+
+  /**
+   * Java regular expression constructs that JavaScript doesn't have, or that
+   * mean something else there: named groups, lookbehind and inline flags,
+   * Unicode classes, \A, \Z, \z, \G and \Q...\E quoting, and possessive
+   * quantifiers.
+   */
+  private static final Pattern UNSUPPORTED_REGEX_CONSTRUCTS =
+      Pattern.compile("\\(\\?[<a-zA-Z]|\\\\[pPAZzGQE]|[*+?}]\\+");
+
+  private final List<ActionGeneratorConfig> configs;
+
+  /**
+   * For each config, the flattened [key, pattern, key, pattern...] list that
+   * the script matches with, or null if we have to ask the config itself.
+   */
+  private final List<List<String>> scriptPatterns;
+
+  /**
+   * The indexes in configs of the configs with script patterns, in the order
+   * that we pass them to the script.
+   */
+  private final List<Integer> scriptConfigIndexes;
+
+  /**
+   * The indexes of the configs that matched each element we ran the script
+   * on, in the order the script reports them.
+   */
+  private final Map<WebElement, List<Integer>> scriptMatches =
+      new IdentityHashMap<WebElement, List<Integer>>();
+
+  /**
+   * @param configs the configs to try, in order of precedence.
+   */
+  public ActionGeneratorMatcher(List<ActionGeneratorConfig> configs) {
+    this.configs = configs;
+    scriptPatterns = Lists.newArrayList();
+    scriptConfigIndexes = Lists.newArrayList();
+    for (int i = 0; i < configs.size(); ++i) {
+      List<String> patterns = getScriptPatterns(configs.get(i));
+      scriptPatterns.add(patterns);
+      if (patterns != null) {
+        scriptConfigIndexes.add(i);
+      }
+    }
+  }
+
+  /**
+   * Matches the script-matchable configs against all the given elements, one
+   * script call per frame. If a call fails, those elements are matched in
+   * Java instead.
+   */
+  public void matchAll(WebDriverWrapper driver, List<WebElementWithIdentifier> elements) {
+    if (scriptConfigIndexes.isEmpty()) {
+      return;
+    }
+    Map<String, List<WebElement>> elementsByFrame = Maps.newLinkedHashMap();
+    for (WebElementWithIdentifier elementWithId : elements) {
+      String frameIdentifier = elementWithId.getIdentifier().getFrameIdentifier();
+      List<WebElement> frameElements = elementsByFrame.get(frameIdentifier);
+      if (frameElements == null) {
+        frameElements = Lists.newArrayList();
+        elementsByFrame.put(frameIdentifier, frameElements);
+      }
+      frameElements.add(elementWithId.getElement());
+    }
+
+    List<List<String>> configPatterns = Lists.newArrayList();
+    for (int configIndex : scriptConfigIndexes) {
+      configPatterns.add(scriptPatterns.get(configIndex));
+    }
+    for (Map.Entry<String, List<WebElement>> entry : elementsByFrame.entrySet()) {
+      List<WebElement> frameElements = entry.getValue();
+      List<WebElement> scriptElements = Lists.newArrayList();
+      for (WebElement element : frameElements) {
+        scriptElements.add(unwrap(element));
+      }
+      try {
+        List<?> results = (List<?>) driver.executeScriptInFrame(entry.getKey(), MATCH_SCRIPT,
+            scriptElements, configPatterns);
+        for (int i = 0; i < frameElements.size(); ++i) {
+          List<Integer> matches = Lists.newArrayList();
+          for (Object match : (List<?>) results.get(i)) {
+            matches.add(scriptConfigIndexes.get(((Number) match).intValue()));
+          }
+          scriptMatches.put(frameElements.get(i), matches);
+        }
+      } catch (WebDriverException e) {
+        LOGGER.log(Level.WARNING, "Failed to match action generator configs in frame "
+            + entry.getKey() + ", matching them one at a time", e);
+      }
+    }
+  }
+
+  /**
+   * @return the first config that matches the given element, or null if none
+   *     of them do.
+   */
+  public ActionGeneratorConfig getFirstMatch(WebDriverWrapper driver,
+      WebElementWithIdentifier elementWithId) {
+    List<Integer> matches = scriptMatches.get(elementWithId.getElement());
+    for (int i = 0; i < configs.size(); ++i) {
+      ActionGeneratorConfig config = configs.get(i);
+      boolean isMatch;
+      if (matches != null && scriptPatterns.get(i) != null) {
+        isMatch = matches.contains(i);
+      } else {
+        isMatch = config.matches(driver, elementWithId);
+      }
+      if (isMatch) {
+        return config;
+      }
+    }
+    return null;
+  }
+
+  private static WebElement unwrap(WebElement element) {
+    if (element instanceof WebElementWrapper) {
+      return ((WebElementWrapper) element).getWrappedElement();
+    }
+    return element;
+  }
+
+  /**
+   * Gets the patterns to match the given config with in the browser, or null
+   * if it isn't script-matchable, has its own idea of what matching means, or
+   * uses regular expression features that JavaScript doesn't share.
+   */
+  static List<String> getScriptPatterns(ActionGeneratorConfig config) {
+    if (!(config instanceof ScriptMatchableActionGeneratorConfig)) {
+      return null;
+    }
+    ScriptMatchableActionGeneratorConfig scriptConfig =
+        (ScriptMatchableActionGeneratorConfig) config;
+    Map<String, Pattern> patterns = scriptConfig.getMatchPatterns();
+    if (patterns == null || !declaresOwnMatches(scriptConfig)) {
+      return null;
+    }
+    List<String> scriptPatterns = Lists.newArrayList();
+    for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
+      Pattern pattern = entry.getValue();
+      if (pattern.flags() != 0 ||
+          UNSUPPORTED_REGEX_CONSTRUCTS.matcher(pattern.pattern()).find()) {
+        return null;
+      }
+      scriptPatterns.add(entry.getKey());
+      scriptPatterns.add(pattern.pattern());
+    }
+    return scriptPatterns;
+  }
+
+  /**
+   * @return whether matches() is the one that goes with getMatchPatterns(),
+   *     and not an override in a subclass that checks something else.
+   */
+  private static boolean declaresOwnMatches(ScriptMatchableActionGeneratorConfig config) {
+    try {
+      Class<?> matchesClass = config.getClass().getMethod("matches",
+          WebDriverWrapper.class, WebElementWithIdentifier.class).getDeclaringClass();
+      Class<?> patternsClass = config.getClass().getMethod("getMatchPatterns")
+          .getDeclaringClass();
+      return matchesClass.equals(patternsClass);
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
@@ -19,21 +19,75 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * A sequence of {@link Action}s to run.
+ * Sequences created with {@link #extend(Action)} or {@link #extendWith(ActionSequence)}
+ * share their prefix with the sequence they extend rather than copying it,
+ * so the many sequences in the queue with a common prefix only store it once.
+ * Because of that, don't add actions to a sequence once it has been extended.
+ * 
  * @author smcmaster@google.com (Scott McMaster)
  */
 public class ActionSequence {
+  /**
+   * The sequence whose actions come before ours. May be null.
+   */
+  private ActionSequence parent;
+  
+  /**
+   * The actions that come after the parent's.
+   */
   private List<Action> actions = new ArrayList<Action>();
   
   public ActionSequence(Action action) {
     actions.add(action);
   }
 
+  /**
+   * Creates an independent copy of the given sequence.
+   */
   public ActionSequence(ActionSequence actionSequence) {
     addActionsFrom(actionSequence);
   }
 
   public ActionSequence() {
   }
+  
+  private ActionSequence(ActionSequence parent, List<Action> actions) {
+    this.parent = parent;
+    this.actions = actions;
+  }
+
+  /**
+   * @return a new sequence consisting of this one followed by the given action,
+   *     which shares this sequence's actions.
+   */
+  public ActionSequence extend(Action action) {
+    List<Action> suffix = new ArrayList<Action>(1);
+    suffix.add(action);
+    return new ActionSequence(this, suffix);
+  }
+  
+  /**
+   * @return a new sequence consisting of this one followed by the actions in
+   *     the given one, which shares this sequence's actions.
+   */
+  public ActionSequence extendWith(ActionSequence actionSequence) {
+    return new ActionSequence(this, new ArrayList<Action>(actionSequence.getActions()));
+  }
+
+  /**
+   * @return the sequence whose actions come before ours, or null.
+   */
+  ActionSequence getParent() {
+    return parent;
+  }
+  
+  /**
+   * @return just the actions that come after the parent's.
+   */
+  List<Action> getSuffixActions() {
+    return actions;
+  }
 
   public void addActionsFrom(ActionSequence actionSequence) {
     actions.addAll(actionSequence.getActions());
@@ -43,8 +97,26 @@ public class ActionSequence {
     actions.add(action);
   }
 
+  /**
+   * Gets all of the actions in the sequence. If the sequence shares a prefix
+   * with others, this is a new list built on each call, so use
+   * {@link #addAction(Action)} rather than modifying it.
+   */
   public List<Action> getActions() {
-    return actions;
+    if (parent == null) {
+      return actions;
+    }
+    List<ActionSequence> chain = new ArrayList<ActionSequence>();
+    int size = 0;
+    for (ActionSequence node = this; node != null; node = node.parent) {
+      chain.add(node);
+      size += node.actions.size();
+    }
+    List<Action> result = new ArrayList<Action>(size);
+    for (int i = chain.size() - 1; i >= 0; --i) {
+      result.addAll(chain.get(i).actions);
+    }
+    return result;
   } 
   
   /**
@@ -53,9 +125,11 @@ public class ActionSequence {
    */
   public int getLength() {
     int length = 0;
-    for (Action action : actions) {
-      if (!action.isInitial()) {
-        ++length;
+    for (ActionSequence node = this; node != null; node = node.parent) {
+      for (Action action : node.actions) {
+        if (!action.isInitial()) {
+          ++length;
+        }
       }
     }
     return length;
@@ -64,7 +138,7 @@ public class ActionSequence {
   @Override
   public String toString() {
     String result = "";
-    for (Action action : actions) {
+    for (Action action : getActions()) {
       if (action.isInitial()) {
         continue;
       }
@@ -81,15 +155,17 @@ public class ActionSequence {
    * as initial.
    */
   public void setInitial() {
-    for (Action action : actions) {
+    for (Action action : getActions()) {
       action.setInitial(true);
     }
   }
 
   public Action getLastAction() {
-    if (actions.isEmpty()) {
-      return null;
+    for (ActionSequence node = this; node != null; node = node.parent) {
+      if (!node.actions.isEmpty()) {
+        return node.actions.get(node.actions.size() - 1);
+      }
     }
-    return actions.get(actions.size() - 1);
+    return null;
   }
 }
@@ -0,0 +1,341 @@
+package org.webtestingexplorer.actions;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.identifiers.AttributeValueWebElementIdentifier;
+import org.webtestingexplorer.identifiers.ClassIndexWebElementIdentifier;
+import org.webtestingexplorer.identifiers.IdWebElementIdentifier;
+import org.webtestingexplorer.identifiers.IndexWebElementIdentifier;
+import org.webtestingexplorer.identifiers.IndexWebElementIdentifier.IndexBasis;
+import org.webtestingexplorer.identifiers.NameWebElementIdentifier;
+import org.webtestingexplorer.identifiers.TagIndexWebElementIdentifier;
+import org.webtestingexplorer.identifiers.WebElementIdentifier;
+import org.webtestingexplorer.identifiers.XpathWebElementIdentifier;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Binary encoding for {@link ActionSequence}s, {@link Action}s and
+ * {@link WebElementIdentifier}s; the binary counterpart of
+ * {@link ActionSequenceXStream}. Each built-in class gets a one-byte type code,
+ * and anything else (e.g. custom actions) is written as XStream XML.
+ * Sequences that share a prefix (see {@link ActionSequence#extend}) share it
+ * in the encoding too.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionSequenceCodec {
+
+  private static final int ACTION_XSTREAM = 0;
+  private static final int ACTION_BACK = 1;
+  private static final int ACTION_FORWARD = 2;
+  private static final int ACTION_REFRESH = 3;
+  private static final int ACTION_CLICK = 4;
+  private static final int ACTION_SET_TEXT = 5;
+  private static final int ACTION_SELECT = 6;
+  private static final int ACTION_HOVER = 7;
+  private static final int ACTION_WAIT = 8;
+  private static final int ACTION_COMPOSITE = 9;
+
+  private static final int IDENTIFIER_NULL = 0;
+  private static final int IDENTIFIER_XSTREAM = 1;
+  private static final int IDENTIFIER_ID = 2;
+  private static final int IDENTIFIER_NAME = 3;
+  private static final int IDENTIFIER_XPATH = 4;
+  private static final int IDENTIFIER_ATTRIBUTE_VALUE = 5;
+  private static final int IDENTIFIER_INDEX = 6;
+  private static final int IDENTIFIER_TAG_INDEX = 7;
+  private static final int IDENTIFIER_CLASS_INDEX = 8;
+
+  /**
+   * For anything we don't have a binary encoding for.
+   */
+  private final XStream xstream;
+
+  public ActionSequenceCodec() {
+    this(ActionSequenceXStream.createXStream());
+  }
+
+  /**
+   * @param xstream used to encode custom classes, so it should know about
+   *     any of them that need aliases.
+   */
+  public ActionSequenceCodec(XStream xstream) {
+    this.xstream = xstream;
+  }
+
+  /**
+   * Writes a whole queue, with a header, in pop order.
+   */
+  public void writeQueue(BinaryEncoder encoder, ActionSequenceQueue queue) throws IOException {
+    encoder.writeHeader(BinaryFormat.KIND_ACTION_SEQUENCE_QUEUE);
+    List<ActionSequence> sequences = queue.asList();
+    encoder.writeVarInt(sequences.size());
+    for (ActionSequence sequence : sequences) {
+      writeActionSequence(encoder, sequence);
+    }
+    encoder.flush();
+  }
+
+  public ActionSequenceQueue readQueue(BinaryDecoder decoder) throws IOException {
+    decoder.readHeader(BinaryFormat.KIND_ACTION_SEQUENCE_QUEUE);
+    int size = decoder.readVarInt();
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    ActionSequence[] sequences = new ActionSequence[size];
+    for (int i = 0; i < size; ++i) {
+      sequences[i] = readActionSequence(decoder);
+    }
+    for (int i = size - 1; i >= 0; --i) {
+      queue.push(sequences[i]);
+    }
+    return queue;
+  }
+
+  public void writeActionSequence(BinaryEncoder encoder, ActionSequence sequence)
+      throws IOException {
+    if (encoder.writeReference(sequence)) {
+      return;
+    }
+    ActionSequence parent = sequence.getParent();
+    encoder.writeBoolean(parent != null);
+    if (parent != null) {
+      writeActionSequence(encoder, parent);
+    }
+    writeActions(encoder, sequence.getSuffixActions());
+    encoder.addReference(sequence);
+  }
+
+  public ActionSequence readActionSequence(BinaryDecoder decoder) throws IOException {
+    ActionSequence reference = (ActionSequence) decoder.readReference();
+    if (reference != null) {
+      return reference;
+    }
+    ActionSequence parent = null;
+    if (decoder.readBoolean()) {
+      parent = readActionSequence(decoder);
+    }
+    ActionSequence suffix = new ActionSequence();
+    for (Action action : readActions(decoder)) {
+      suffix.addAction(action);
+    }
+    ActionSequence sequence = parent == null ? suffix : parent.extendWith(suffix);
+    decoder.addReference(sequence);
+    return sequence;
+  }
+
+  private void writeActions(BinaryEncoder encoder, List<Action> actions) throws IOException {
+    encoder.writeVarInt(actions.size());
+    for (Action action : actions) {
+      writeAction(encoder, action);
+    }
+  }
+
+  private Action[] readActions(BinaryDecoder decoder) throws IOException {
+    Action[] actions = new Action[decoder.readVarInt()];
+    for (int i = 0; i < actions.length; ++i) {
+      actions[i] = readAction(decoder);
+    }
+    return actions;
+  }
+
+  public void writeAction(BinaryEncoder encoder, Action action) throws IOException {
+    Class<?> actionClass = action.getClass();
+    if (actionClass == BackAction.class) {
+      encoder.writeVarInt(ACTION_BACK);
+    } else if (actionClass == ForwardAction.class) {
+      encoder.writeVarInt(ACTION_FORWARD);
+    } else if (actionClass == RefreshAction.class) {
+      encoder.writeVarInt(ACTION_REFRESH);
+    } else if (actionClass == ClickAction.class) {
+      encoder.writeVarInt(ACTION_CLICK);
+      writeIdentifier(encoder, action.getIdentifier());
+    } else if (actionClass == SetTextAction.class) {
+      encoder.writeVarInt(ACTION_SET_TEXT);
+      writeIdentifier(encoder, action.getIdentifier());
+      encoder.writeString(((SetTextAction) action).getKeysToSend());
+    } else if (actionClass == SelectAction.class) {
+      encoder.writeVarInt(ACTION_SELECT);
+      writeIdentifier(encoder, action.getIdentifier());
+      encoder.writeSignedVarLong(((SelectAction) action).getOptionIndex());
+    } else if (actionClass == HoverAction.class) {
+      encoder.writeVarInt(ACTION_HOVER);
+      writeIdentifier(encoder, action.getIdentifier());
+      encoder.writeSignedVarLong(((HoverAction) action).getHoverDelayMillis());
+    } else if (actionClass == WaitAction.class) {
+      encoder.writeVarInt(ACTION_WAIT);
+      encoder.writeSignedVarLong(((WaitAction) action).getMillis());
+    } else if (actionClass == CompositeAction.class) {
+      encoder.writeVarInt(ACTION_COMPOSITE);
+      writeActions(encoder, ((CompositeAction) action).getActions());
+    } else {
+      encoder.writeVarInt(ACTION_XSTREAM);
+      encoder.writeXStream(xstream, action);
+      return;
+    }
+    encoder.writeBoolean(action.isInitial());
+  }
+
+  public Action readAction(BinaryDecoder decoder) throws IOException {
+    int type = decoder.readVarInt();
+    Action action;
+    switch (type) {
+      case ACTION_XSTREAM:
+        return (Action) decoder.readXStream(xstream);
+      case ACTION_BACK:
+        action = new BackAction();
+        break;
+      case ACTION_FORWARD:
+        action = new ForwardAction();
+        break;
+      case ACTION_REFRESH:
+        action = new RefreshAction();
+        break;
+      case ACTION_CLICK:
+        action = new ClickAction(readIdentifier(decoder));
+        break;
+      case ACTION_SET_TEXT:
+        action = new SetTextAction(readIdentifier(decoder), decoder.readString());
+        break;
+      case ACTION_SELECT:
+        action = new SelectAction(readIdentifier(decoder), (int) decoder.readSignedVarLong());
+        break;
+      case ACTION_HOVER:
+        action = new HoverAction(readIdentifier(decoder), decoder.readSignedVarLong());
+        break;
+      case ACTION_WAIT:
+        action = new WaitAction(decoder.readSignedVarLong());
+        break;
+      case ACTION_COMPOSITE:
+        action = new CompositeAction(readActions(decoder));
+        break;
+      default:
+        throw new IOException("Unknown action type: " + type);
+    }
+    action.setInitial(decoder.readBoolean());
+    return action;
+  }
+
+  public void writeIdentifier(BinaryEncoder encoder, WebElementIdentifier identifier)
+      throws IOException {
+    if (identifier == null) {
+      encoder.writeVarInt(IDENTIFIER_NULL);
+      return;
+    }
+    Class<?> identifierClass = identifier.getClass();
+    if (identifierClass == IdWebElementIdentifier.class) {
+      encoder.writeVarInt(IDENTIFIER_ID);
+      encoder.writeString(((IdWebElementIdentifier) identifier).getId());
+    } else if (identifierClass == NameWebElementIdentifier.class) {
+      encoder.writeVarInt(IDENTIFIER_NAME);
+      encoder.writeString(((NameWebElementIdentifier) identifier).getName());
+    } else if (identifierClass == XpathWebElementIdentifier.class) {
+      encoder.writeVarInt(IDENTIFIER_XPATH);
+      encoder.writeString(((XpathWebElementIdentifier) identifier).getXpath());
+    } else if (identifierClass == AttributeValueWebElementIdentifier.class &&
+        ((AttributeValueWebElementIdentifier) identifier).getAttributeName() != null) {
+      AttributeValueWebElementIdentifier attributeValueIdentifier =
+          (AttributeValueWebElementIdentifier) identifier;
+      encoder.writeVarInt(IDENTIFIER_ATTRIBUTE_VALUE);
+      encoder.writeString(attributeValueIdentifier.getAttributeName());
+      encoder.writeString(attributeValueIdentifier.getAttributeValue());
+    } else if (identifierClass == IndexWebElementIdentifier.class) {
+      encoder.writeVarInt(IDENTIFIER_INDEX);
+      writeIndex(encoder, (IndexWebElementIdentifier) identifier);
+    } else if (identifierClass == TagIndexWebElementIdentifier.class) {
+      encoder.writeVarInt(IDENTIFIER_TAG_INDEX);
+      writeIndex(encoder, (IndexWebElementIdentifier) identifier);
+      encoder.writeString(((TagIndexWebElementIdentifier) identifier).getTagName());
+    } else if (identifierClass == ClassIndexWebElementIdentifier.class) {
+      encoder.writeVarInt(IDENTIFIER_CLASS_INDEX);
+      writeIndex(encoder, (IndexWebElementIdentifier) identifier);
+      encoder.writeString(((ClassIndexWebElementIdentifier) identifier).getClassName());
+    } else {
+      encoder.writeVarInt(IDENTIFIER_XSTREAM);
+      encoder.writeXStream(xstream, identifier);
+      return;
+    }
+    encoder.writeString(identifier.getFrameIdentifier());
+    encoder.writeString(identifier.getOuterHtml());
+  }
+
+  private void writeIndex(BinaryEncoder encoder, IndexWebElementIdentifier identifier)
+      throws IOException {
+    encoder.writeSignedVarLong(identifier.getIndex());
+    IndexBasis basis = identifier.getBasis();
+    encoder.writeVarInt(basis == null ? 0 : basis.ordinal() + 1);
+  }
+
+  public WebElementIdentifier readIdentifier(BinaryDecoder decoder) throws IOException {
+    int type = decoder.readVarInt();
+    if (type == IDENTIFIER_NULL) {
+      return null;
+    }
+    if (type == IDENTIFIER_XSTREAM) {
+      return (WebElementIdentifier) decoder.readXStream(xstream);
+    }
+
+    // The frame comes last, so read the type-specific fields first.
+    String first = null;
+    String second = null;
+    int index = 0;
+    IndexBasis basis = null;
+    switch (type) {
+      case IDENTIFIER_ID:
+      case IDENTIFIER_NAME:
+      case IDENTIFIER_XPATH:
+        first = decoder.readString();
+        break;
+      case IDENTIFIER_ATTRIBUTE_VALUE:
+        first = decoder.readString();
+        second = decoder.readString();
+        break;
+      case IDENTIFIER_INDEX:
+      case IDENTIFIER_TAG_INDEX:
+      case IDENTIFIER_CLASS_INDEX:
+        index = (int) decoder.readSignedVarLong();
+        int basisCode = decoder.readVarInt();
+        if (basisCode > 0) {
+          basis = IndexBasis.values()[basisCode - 1];
+        }
+        if (type != IDENTIFIER_INDEX) {
+          first = decoder.readString();
+        }
+        break;
+      default:
+        throw new IOException("Unknown identifier type: " + type);
+    }
+    String frameIdentifier = decoder.readString();
+    String outerHtml = decoder.readString();
+
+    WebElementIdentifier identifier;
+    switch (type) {
+      case IDENTIFIER_ID:
+        identifier = new IdWebElementIdentifier(first, frameIdentifier);
+        break;
+      case IDENTIFIER_NAME:
+        identifier = new NameWebElementIdentifier(first, frameIdentifier);
+        break;
+      case IDENTIFIER_XPATH:
+        identifier = new XpathWebElementIdentifier(first, frameIdentifier);
+        break;
+      case IDENTIFIER_ATTRIBUTE_VALUE:
+        identifier = new AttributeValueWebElementIdentifier(first, second, frameIdentifier);
+        break;
+      case IDENTIFIER_INDEX:
+        identifier = new IndexWebElementIdentifier(index, frameIdentifier, basis);
+        break;
+      case IDENTIFIER_TAG_INDEX:
+        identifier = new TagIndexWebElementIdentifier(frameIdentifier, first, index, basis);
+        break;
+      default:
+        identifier = new ClassIndexWebElementIdentifier(frameIdentifier, first, index, basis);
+        break;
+    }
+    identifier.setOuterHtml(outerHtml);
+    return identifier;
+  }
+}
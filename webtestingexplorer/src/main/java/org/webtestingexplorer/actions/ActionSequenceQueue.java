@@ -4,10 +4,20 @@ import com.google.common.collect.Lists;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayDeque;
@@ -30,42 +40,105 @@ public class ActionSequenceQueue implements Iterable<ActionSequence> {
   private static XStream xstream = ActionSequenceXStream.createXStream();
 
   /**
-   * Writes the given action sequence queue to the given filesystem location,
-   * overwriting if it already exists.
+   * Writes the given action sequence queue to the given filesystem location
+   * in XML, overwriting if it already exists.
    */
   public static void writeToFile(ActionSequenceQueue queue, String filename) {
+    writeToFile(queue, filename, SerializationFormat.XML);
+  }
+
+  /**
+   * Writes the given action sequence queue to the given filesystem location
+   * in the given format, overwriting if it already exists. Any
+   * {@link ActionSequenceQueueJournal} for the location is discarded.
+   */
+  public static void writeToFile(ActionSequenceQueue queue, String filename,
+      SerializationFormat format) {
     LOGGER.info("Writing action sequence queue to file: " + filename);
-    String xml = xstream.toXML(queue);
-    Writer out = null;
+    File tmpFile = new File(filename + ".tmp");
     try {
-      out = new OutputStreamWriter(new FileOutputStream(filename));
-      out.write(xml);
+      queue.writeSnapshot(tmpFile, format);
+      File journalFile = ActionSequenceQueueJournal.getJournalFile(filename);
+      if (journalFile.exists() && !journalFile.delete()) {
+        throw new IOException("Failed to delete " + journalFile);
+      }
+      replaceFile(tmpFile, new File(filename));
     } catch (Exception e) {
       LOGGER.log(Level.SEVERE, "Failed to write " + filename, e);
     }
-    finally {
-      try { out.close(); } catch (Exception e) {}
+  }
+
+  /**
+   * Writes the queue to the given file. Subclasses must write something that
+   * a plain queue can be read back from.
+   */
+  void writeSnapshot(File file, SerializationFormat format) throws IOException {
+    if (format == SerializationFormat.BINARY) {
+      OutputStream out = null;
+      try {
+        out = new BufferedOutputStream(new FileOutputStream(file));
+        new ActionSequenceCodec().writeQueue(new BinaryEncoder(out), this);
+      } finally {
+        if (out != null) {
+          try { out.close(); } catch (Exception e) {}
+        }
+      }
+      return;
+    }
+    
+    String xml = xstream.toXML(this);
+    Writer out = null;
+    try {
+      out = new OutputStreamWriter(new FileOutputStream(file));
+      out.write(xml);
+    } finally {
+      if (out != null) {
+        try { out.close(); } catch (Exception e) {}
+      }
     }
   }
 
   /**
-   * Reads an action sequence queue from the given file system location.
+   * Moves the given file over the target, so that a reader sees either the
+   * complete old file or the complete new one.
+   */
+  static void replaceFile(File file, File target) throws IOException {
+    if (!file.renameTo(target)) {
+      // Windows won't rename over an existing file.
+      target.delete();
+      if (!file.renameTo(target)) {
+        throw new IOException("Failed to rename " + file + " to " + target);
+      }
+    }
+  }
+
+  /**
+   * Reads an action sequence queue in either format from the given file system
+   * location, applying its {@link ActionSequenceQueueJournal} if there is one.
    * 
    * @return the read-in action sequence queue, or null if the file does not exist.
    */
   public static ActionSequenceQueue readFromFile(String filename) {
     LOGGER.info("Reading action sequence queue from file: " + filename);
     File inputFile = new File(filename);
-    FileInputStream inputStream = null;
+    InputStream inputStream = null;
+    ActionSequenceQueue queue = null;
     try {
-      inputStream = new FileInputStream(inputFile);
-      return (ActionSequenceQueue) xstream.fromXML(inputStream);
+      inputStream = new BufferedInputStream(new FileInputStream(inputFile));
+      if (BinaryFormat.isBinary(inputStream)) {
+        queue = new ActionSequenceCodec().readQueue(new BinaryDecoder(inputStream));
+      } else {
+        queue = (ActionSequenceQueue) xstream.fromXML(inputStream);
+      }
     } catch (FileNotFoundException e) {
-      return null;
+      queue = null;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read " + filename, e);
     } finally {
       if (inputStream != null) {
         try { inputStream.close(); } catch (Exception e) {}      }
     }
+    return ActionSequenceQueueJournal.applyJournal(queue, filename);
   }
 
   private Deque<ActionSequence> actionSequences;
@@ -73,6 +146,18 @@ public class ActionSequenceQueue implements Iterable<ActionSequence> {
   public ActionSequenceQueue() {
     actionSequences = new ArrayDeque<ActionSequence>();
   }
+
+  /**
+   * For subclasses that keep the sequences themselves, and so override
+   * everything that would use our storage.
+   *
+   * @param hasStorage whether to allocate our storage anyway.
+   */
+  protected ActionSequenceQueue(boolean hasStorage) {
+    if (hasStorage) {
+      actionSequences = new ArrayDeque<ActionSequence>();
+    }
+  }
   
   public ActionSequenceQueue(Iterable<ActionSequence> allSequences) {
     this();
@@ -93,15 +178,38 @@ public class ActionSequenceQueue implements Iterable<ActionSequence> {
     return actionSequences.pop();
   }
 
+  /**
+   * Like {@link #pop()}, but returns null rather than throwing if the queue is empty.
+   */
+  public ActionSequence poll() {
+    return actionSequences.poll();
+  }
+
   public void push(ActionSequence sequence) {
     actionSequences.push(sequence);
   }
 
+  /**
+   * Pushes all of the given sequences, in order (so the last one will be
+   * popped first).
+   */
+  public void pushAll(Iterable<ActionSequence> sequences) {
+    for (ActionSequence sequence : sequences) {
+      push(sequence);
+    }
+  }
+
+  /**
+   * Iterates in the order the sequences would be popped.
+   */
   @Override
   public Iterator<ActionSequence> iterator() {
     return actionSequences.iterator();
   }
   
+  /**
+   * @return a copy of the queue contents, in the order they would be popped.
+   */
   public List<ActionSequence> asList() {
     return Lists.newArrayList(actionSequences);
   }
@@ -0,0 +1,325 @@
+package org.webtestingexplorer.actions;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoints an {@link ActionSequenceQueue} by appending a record for each
+ * push and pop to a journal file next to the queue file, rather than
+ * rewriting the whole queue every time it changes. Every so often the journal
+ * is compacted: the queue is written out as usual and the journal starts over.
+ * {@link ActionSequenceQueue#readFromFile(String)} rebuilds the queue from
+ * the queue file plus the journal.
+ *
+ * <p>
+ * Pops are recorded by sequence identity, so the queue may be reordered
+ * (e.g. by a prioritizer) without writing anything; the order is not
+ * preserved across a restart, though, so reprioritize after reading.
+ *
+ * <p>
+ * The journal is safe against the process dying at any point: a
+ * partially-written last record is ignored, and the queue file is replaced
+ * atomically when compacting.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionSequenceQueueJournal {
+
+  private final static Logger LOGGER =
+      Logger.getLogger(ActionSequenceQueueJournal.class.getName());
+
+  public static final String JOURNAL_SUFFIX = ".journal";
+
+  /**
+   * The fewest records we let accumulate before compacting.
+   */
+  public static final int MIN_RECORDS_BEFORE_COMPACTION = 10000;
+
+  private static final int MAGIC = 0x57544a51; // "WTJQ"
+  private static final short VERSION = 1;
+  private static final byte PUSH_RECORD = 1;
+  private static final byte POP_RECORD = 2;
+
+  private static XStream xstream = ActionSequenceXStream.createXStream();
+
+  private final String filename;
+  private final File journalFile;
+  private final SerializationFormat format;
+
+  /**
+   * The ids of the sequences in the queue, as used in the journal records.
+   * Sequences in the queue file are numbered from the bottom of the queue up.
+   */
+  private final Map<ActionSequence, Long> ids = new IdentityHashMap<ActionSequence, Long>();
+  private long nextId;
+
+  private DataOutputStream out;
+  private int recordCount;
+
+  /**
+   * Starts journaling the given queue to the given file in XML, writing out
+   * the queue as it is now.
+   */
+  public static ActionSequenceQueueJournal open(ActionSequenceQueue queue, String filename)
+      throws IOException {
+    return open(queue, filename, SerializationFormat.XML);
+  }
+
+  /**
+   * Starts journaling the given queue to the given file, writing out the queue
+   * as it is now. Both the queue file and the pushed sequences in the journal
+   * use the given format.
+   */
+  public static ActionSequenceQueueJournal open(ActionSequenceQueue queue, String filename,
+      SerializationFormat format) throws IOException {
+    ActionSequenceQueueJournal journal = new ActionSequenceQueueJournal(filename, format);
+    journal.compact(queue);
+    return journal;
+  }
+
+  private ActionSequenceQueueJournal(String filename, SerializationFormat format) {
+    this.filename = filename;
+    this.journalFile = getJournalFile(filename);
+    this.format = format;
+  }
+
+  static File getJournalFile(String filename) {
+    return new File(filename + JOURNAL_SUFFIX);
+  }
+
+  /**
+   * Records the given sequences and pushes them onto the queue, in order.
+   * The two happen together so that compaction can't fall in between.
+   */
+  public synchronized void pushAll(ActionSequenceQueue queue, Iterable<ActionSequence> sequences)
+      throws IOException {
+    for (ActionSequence sequence : sequences) {
+      long id = nextId++;
+      ids.put(sequence, id);
+      writeRecord(PUSH_RECORD, id, encode(sequence));
+    }
+    queue.pushAll(sequences);
+  }
+
+  /**
+   * Records that the given sequence has been popped from the queue.
+   */
+  public synchronized void recordPop(ActionSequence sequence) throws IOException {
+    Long id = ids.remove(sequence);
+    if (id == null) {
+      // We must have compacted after it was popped.
+      return;
+    }
+    writeRecord(POP_RECORD, id, null);
+  }
+
+  /**
+   * Writes out any buffered records.
+   */
+  public synchronized void flush() throws IOException {
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  /**
+   * @return whether it is time to compact a journal on a queue of the given size.
+   *     We wait until there are more records than queued sequences so that the
+   *     cost of rewriting the queue is spread over at least that many records.
+   */
+  public synchronized boolean shouldCompact(int queueSize) {
+    return recordCount >= Math.max(MIN_RECORDS_BEFORE_COMPACTION, queueSize);
+  }
+
+  /**
+   * Writes out the given queue and starts a new, empty journal. The caller
+   * must make sure the queue is not being pushed to (except through us) or
+   * reordered while we do this.
+   */
+  public synchronized void compact(ActionSequenceQueue queue) throws IOException {
+    closeStream();
+
+    List<ActionSequence> bottomUp = Lists.reverse(queue.asList());
+    ActionSequenceQueue snapshot = new ActionSequenceQueue(bottomUp);
+    File tmpFile = new File(filename + ".tmp");
+    snapshot.writeSnapshot(tmpFile, format);
+
+    // If we die after deleting the journal but before the rename, we come back
+    // up from the previous snapshot alone, which is out of date but consistent.
+    if (journalFile.exists() && !journalFile.delete()) {
+      throw new IOException("Failed to delete " + journalFile);
+    }
+    ActionSequenceQueue.replaceFile(tmpFile, new File(filename));
+
+    ids.clear();
+    nextId = 0;
+    for (ActionSequence sequence : bottomUp) {
+      ids.put(sequence, nextId++);
+    }
+    recordCount = 0;
+    LOGGER.info("Compacted action sequence queue journal, queue size: " + bottomUp.size());
+  }
+
+  /**
+   * Flushes and closes the journal file.
+   */
+  public synchronized void close() {
+    closeStream();
+  }
+
+  private void closeStream() {
+    if (out != null) {
+      try { out.close(); } catch (Exception e) {}
+      out = null;
+    }
+  }
+
+  private byte[] encode(ActionSequence sequence) throws IOException {
+    if (format == SerializationFormat.BINARY) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BinaryEncoder encoder = new BinaryEncoder(out);
+      encoder.writeHeader(BinaryFormat.KIND_ACTION_SEQUENCE);
+      new ActionSequenceCodec().writeActionSequence(encoder, sequence);
+      encoder.flush();
+      return out.toByteArray();
+    }
+    return xstream.toXML(sequence).getBytes("UTF-8");
+  }
+
+  private static ActionSequence decode(byte[] data) throws IOException {
+    if (BinaryFormat.isBinary(data)) {
+      BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(data));
+      decoder.readHeader(BinaryFormat.KIND_ACTION_SEQUENCE);
+      return new ActionSequenceCodec().readActionSequence(decoder);
+    }
+    return (ActionSequence) xstream.fromXML(new String(data, "UTF-8"));
+  }
+
+  private void writeRecord(byte type, long id, byte[] data) throws IOException {
+    if (out == null) {
+      boolean isNew = !journalFile.exists() || journalFile.length() == 0;
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+      if (isNew) {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+      }
+    }
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    updateCrc(crc, id);
+    out.writeByte(type);
+    out.writeLong(id);
+    if (data != null) {
+      crc.update(data);
+      out.writeInt(data.length);
+      out.write(data);
+    }
+    out.writeInt((int) crc.getValue());
+    ++recordCount;
+  }
+
+  private static void updateCrc(CRC32 crc, long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (value >>> shift));
+    }
+  }
+
+  /**
+   * Applies the journal for the given queue file, if there is one, to the
+   * queue read from that file.
+   *
+   * @param snapshot the queue read from the file, or null if there wasn't one.
+   * @return the up-to-date queue, or the snapshot if there is no journal.
+   */
+  static ActionSequenceQueue applyJournal(ActionSequenceQueue snapshot, String filename) {
+    File journalFile = getJournalFile(filename);
+    if (!journalFile.exists()) {
+      return snapshot;
+    }
+
+    // Keyed by id, in push order.
+    Map<Long, ActionSequence> queued = Maps.newLinkedHashMap();
+    long id = 0;
+    if (snapshot != null) {
+      for (ActionSequence sequence : Lists.reverse(snapshot.asList())) {
+        queued.put(id++, sequence);
+      }
+    }
+
+    int recordCount = 0;
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+      if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+        LOGGER.warning("Ignoring unrecognized action sequence queue journal: " + journalFile);
+        return snapshot;
+      }
+      while (true) {
+        byte type = in.readByte();
+        long recordId = in.readLong();
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        updateCrc(crc, recordId);
+        byte[] data = null;
+        if (type == PUSH_RECORD) {
+          int length = in.readInt();
+          if (length < 0 || length > journalFile.length()) {
+            LOGGER.warning("Corrupt record in action sequence queue journal, ignoring the rest");
+            break;
+          }
+          data = new byte[length];
+          in.readFully(data);
+          crc.update(data);
+        } else if (type != POP_RECORD) {
+          LOGGER.warning("Corrupt record in action sequence queue journal, ignoring the rest");
+          break;
+        }
+        if (in.readInt() != (int) crc.getValue()) {
+          LOGGER.warning("Corrupt record in action sequence queue journal, ignoring the rest");
+          break;
+        }
+        if (type == PUSH_RECORD) {
+          queued.put(recordId, decode(data));
+        } else {
+          queued.remove(recordId);
+        }
+        ++recordCount;
+      }
+    } catch (EOFException e) {
+      // The end, possibly in the middle of a record that never got finished.
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, "Failed reading action sequence queue journal, ignoring the rest", e);
+    } finally {
+      if (in != null) {
+        try { in.close(); } catch (Exception e) {}
+      }
+    }
+    LOGGER.info("Applied " + recordCount + " action sequence queue journal records");
+    return new ActionSequenceQueue(queued.values());
+  }
+}
@@ -0,0 +1,196 @@
+package org.webtestingexplorer.actions;
+
+import com.google.common.collect.Lists;
+
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An {@link ActionSequenceQueue} that can be shared by multiple threads.
+ * It is a lock-free (Treiber) stack, so push and pop are a single
+ * compare-and-set regardless of how many sequences are queued, and
+ * {@link #pushAll(Iterable)} links a whole batch in with one compare-and-set.
+ * Iteration is weakly consistent: it sees the sequences that were queued
+ * when it started, and never throws {@link java.util.ConcurrentModificationException}.
+ *
+ * <p>
+ * When written with {@link ActionSequenceQueue#writeToFile}, the contents are
+ * saved as a plain {@link ActionSequenceQueue}; use {@link #copyOf} to get a
+ * concurrent queue back.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ConcurrentActionSequenceQueue extends ActionSequenceQueue {
+
+  private static class Node {
+    private final ActionSequence sequence;
+    // Only written before the node is published by the compare-and-set.
+    private Node next;
+
+    public Node(ActionSequence sequence, Node next) {
+      this.sequence = sequence;
+      this.next = next;
+    }
+  }
+
+  private final transient AtomicReference<Node> head = new AtomicReference<Node>();
+  private final transient AtomicInteger size = new AtomicInteger();
+
+  public ConcurrentActionSequenceQueue() {
+    super(false);
+  }
+
+  /**
+   * Creates a concurrent queue with the same contents, in the same pop order,
+   * as the given queue.
+   */
+  public static ConcurrentActionSequenceQueue copyOf(ActionSequenceQueue queue) {
+    ConcurrentActionSequenceQueue result = new ConcurrentActionSequenceQueue();
+    result.pushAll(Lists.reverse(queue.asList()));
+    return result;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head.get() == null;
+  }
+
+  /**
+   * @return the number of queued sequences. Only a hint while other threads
+   *     are pushing and popping.
+   */
+  @Override
+  public int size() {
+    return Math.max(0, size.get());
+  }
+
+  @Override
+  public ActionSequence pop() {
+    ActionSequence sequence = poll();
+    if (sequence == null) {
+      throw new NoSuchElementException();
+    }
+    return sequence;
+  }
+
+  @Override
+  public ActionSequence poll() {
+    while (true) {
+      Node top = head.get();
+      if (top == null) {
+        return null;
+      }
+      if (head.compareAndSet(top, top.next)) {
+        size.decrementAndGet();
+        return top.sequence;
+      }
+    }
+  }
+
+  @Override
+  public void push(ActionSequence sequence) {
+    Node node = new Node(sequence, null);
+    while (true) {
+      Node top = head.get();
+      node.next = top;
+      if (head.compareAndSet(top, node)) {
+        size.incrementAndGet();
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void pushAll(Iterable<ActionSequence> sequences) {
+    // Link up the batch privately, then splice it onto the top in one go.
+    Node bottom = null;
+    Node top = null;
+    int count = 0;
+    for (ActionSequence sequence : sequences) {
+      top = new Node(sequence, top);
+      if (bottom == null) {
+        bottom = top;
+      }
+      ++count;
+    }
+    if (top == null) {
+      return;
+    }
+    while (true) {
+      Node oldTop = head.get();
+      bottom.next = oldTop;
+      if (head.compareAndSet(oldTop, top)) {
+        size.addAndGet(count);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Atomically removes everything from the queue.
+   *
+   * @return the removed sequences, in the order they would have been popped.
+   */
+  public List<ActionSequence> drain() {
+    Node node = head.getAndSet(null);
+    List<ActionSequence> result = Lists.newArrayList();
+    for (; node != null; node = node.next) {
+      result.add(node.sequence);
+    }
+    size.addAndGet(-result.size());
+    return result;
+  }
+
+  @Override
+  public Iterator<ActionSequence> iterator() {
+    final Node start = head.get();
+    return new Iterator<ActionSequence>() {
+      private Node next = start;
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public ActionSequence next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        ActionSequence sequence = next.sequence;
+        next = next.next;
+        return sequence;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public List<ActionSequence> asList() {
+    return Lists.newArrayList(iterator());
+  }
+
+  /**
+   * Writes XML as a plain {@link ActionSequenceQueue}, so that any kind of
+   * queue can read it back.
+   */
+  @Override
+  void writeSnapshot(File file, SerializationFormat format) throws IOException {
+    if (format == SerializationFormat.XML) {
+      new ActionSequenceQueue(Lists.reverse(asList())).writeSnapshot(file, format);
+    } else {
+      super.writeSnapshot(file, format);
+    }
+  }
+}
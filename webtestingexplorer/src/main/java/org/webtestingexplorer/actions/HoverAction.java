@@ -46,6 +46,10 @@ public class HoverAction extends Action {
     this.hoverDelayMillis = hoverDelay;
   }
   
+  public long getHoverDelayMillis() {
+    return hoverDelayMillis;
+  }
+  
   @Override
   public void perform(WebDriverWrapper driver) {
     WebElement element = identifier.findElement(driver);
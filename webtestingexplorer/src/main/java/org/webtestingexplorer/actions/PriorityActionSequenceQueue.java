@@ -0,0 +1,191 @@
+package org.webtestingexplorer.actions;
+
+import com.google.common.collect.Lists;
+
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * An {@link ActionSequenceQueue} that keeps its sequences in priority order
+ * as they are pushed, so it never needs re-sorting: push and pop are
+ * O(log n). The order comes from either a {@link Comparator} or a
+ * {@link Scorer}; sequences that tie are popped newest first, like the plain
+ * queue. All methods are synchronized, so the queue can be shared by
+ * multiple threads.
+ *
+ * <p>
+ * When written with {@link ActionSequenceQueue#writeToFile}, the contents are
+ * saved in pop order as a plain {@link ActionSequenceQueue}.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class PriorityActionSequenceQueue extends ActionSequenceQueue {
+
+  /**
+   * Gives each action sequence a priority. Higher scores are popped first.
+   */
+  public interface Scorer {
+    /**
+     * Called once for each sequence, when it is pushed.
+     */
+    double score(ActionSequence sequence);
+  }
+
+  private static class Entry {
+    private final ActionSequence sequence;
+    private final double score;
+    private final long order;
+
+    public Entry(ActionSequence sequence, double score, long order) {
+      this.sequence = sequence;
+      this.score = score;
+      this.order = order;
+    }
+  }
+
+  /**
+   * Either the comparator or the scorer we were created with.
+   */
+  private final transient Object ordering;
+  private final transient Scorer scorer;
+  private final transient PriorityQueue<Entry> heap;
+  private transient long nextOrder;
+
+  /**
+   * Creates a queue that pops the sequence that sorts first according to the
+   * given comparator.
+   */
+  public PriorityActionSequenceQueue(final Comparator<? super ActionSequence> comparator) {
+    super(false);
+    ordering = comparator;
+    scorer = null;
+    heap = new PriorityQueue<Entry>(11, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry first, Entry second) {
+        int result = comparator.compare(first.sequence, second.sequence);
+        if (result != 0) {
+          return result;
+        }
+        return compareOrder(first, second);
+      }
+    });
+  }
+
+  /**
+   * Creates a queue that pops the sequence with the highest score according
+   * to the given scorer.
+   */
+  public PriorityActionSequenceQueue(Scorer scorer) {
+    super(false);
+    ordering = scorer;
+    this.scorer = scorer;
+    heap = new PriorityQueue<Entry>(11, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry first, Entry second) {
+        int result = Double.compare(second.score, first.score);
+        if (result != 0) {
+          return result;
+        }
+        return compareOrder(first, second);
+      }
+    });
+  }
+
+  private static int compareOrder(Entry first, Entry second) {
+    // Newest first.
+    return first.order > second.order ? -1 : (first.order < second.order ? 1 : 0);
+  }
+
+  /**
+   * @return whether this queue was created with the given comparator or scorer,
+   *     in which case it is already in the order they would give it.
+   */
+  public boolean isOrderedBy(Object comparatorOrScorer) {
+    return ordering == comparatorOrScorer;
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  @Override
+  public synchronized int size() {
+    return heap.size();
+  }
+
+  @Override
+  public synchronized ActionSequence pop() {
+    Entry entry = heap.poll();
+    if (entry == null) {
+      throw new NoSuchElementException();
+    }
+    return entry.sequence;
+  }
+
+  @Override
+  public synchronized ActionSequence poll() {
+    Entry entry = heap.poll();
+    return entry == null ? null : entry.sequence;
+  }
+
+  @Override
+  public synchronized void push(ActionSequence sequence) {
+    double score = scorer == null ? 0 : scorer.score(sequence);
+    heap.add(new Entry(sequence, score, nextOrder++));
+  }
+
+  @Override
+  public synchronized void pushAll(Iterable<ActionSequence> sequences) {
+    for (ActionSequence sequence : sequences) {
+      push(sequence);
+    }
+  }
+
+  /**
+   * Iterates over a snapshot of the queue, in the order the sequences would
+   * be popped.
+   */
+  @Override
+  public Iterator<ActionSequence> iterator() {
+    return asList().iterator();
+  }
+
+  /**
+   * Sorts a copy of the heap, so this is O(n log n).
+   */
+  @Override
+  public List<ActionSequence> asList() {
+    List<Entry> entries;
+    synchronized (this) {
+      entries = Lists.newArrayList(heap);
+    }
+    Collections.sort(entries, heap.comparator());
+    List<ActionSequence> sequences = Lists.newArrayListWithCapacity(entries.size());
+    for (Entry entry : entries) {
+      sequences.add(entry.sequence);
+    }
+    return sequences;
+  }
+
+  /**
+   * Writes XML as a plain {@link ActionSequenceQueue}, so that any kind of
+   * queue can read it back.
+   */
+  @Override
+  void writeSnapshot(File file, SerializationFormat format) throws IOException {
+    if (format == SerializationFormat.XML) {
+      new ActionSequenceQueue(Lists.reverse(asList())).writeSnapshot(file, format);
+    } else {
+      super.writeSnapshot(file, format);
+    }
+  }
+}
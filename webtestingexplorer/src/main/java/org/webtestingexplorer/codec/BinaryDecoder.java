@@ -0,0 +1,140 @@
+/*
+Copyright 2011 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.codec;
+
+import com.thoughtworks.xstream.XStream;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads what a {@link BinaryEncoder} wrote.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class BinaryDecoder {
+
+  private final DataInputStream in;
+  private final List<String> dictionary = new ArrayList<String>();
+  private final List<Object> references = new ArrayList<Object>();
+  
+  public BinaryDecoder(InputStream in) {
+    this.in = new DataInputStream(in);
+  }
+  
+  /**
+   * Reads and checks the file header.
+   * 
+   * @return the format version the data was written with.
+   */
+  public int readHeader(int expectedKind) throws IOException {
+    for (byte b : BinaryFormat.MAGIC) {
+      if (in.readByte() != b) {
+        throw new IOException("Not in the binary format");
+      }
+    }
+    int version = readVarInt();
+    if (version > BinaryFormat.VERSION) {
+      throw new IOException("Unsupported binary format version: " + version);
+    }
+    int kind = readVarInt();
+    if (kind != expectedKind) {
+      throw new IOException("Expected content of kind " + expectedKind + " but found " + kind);
+    }
+    return version;
+  }
+  
+  public int readVarInt() throws IOException {
+    long value = readVarLong();
+    if (value > Integer.MAX_VALUE) {
+      throw new IOException("Varint out of range: " + value);
+    }
+    return (int) value;
+  }
+  
+  public long readVarLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+  
+  public long readSignedVarLong() throws IOException {
+    long value = readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+  
+  public boolean readBoolean() throws IOException {
+    return in.readByte() != 0;
+  }
+  
+  public String readString() throws IOException {
+    int code = readVarInt();
+    if (code == 0) {
+      return null;
+    }
+    if (code == 1) {
+      String value = new String(readBytes(), "UTF-8");
+      dictionary.add(value);
+      return value;
+    }
+    int index = code - 2;
+    if (index >= dictionary.size()) {
+      throw new IOException("Bad string dictionary index: " + index);
+    }
+    return dictionary.get(index);
+  }
+  
+  public byte[] readBytes() throws IOException {
+    int length = readVarInt();
+    byte[] value = new byte[length];
+    in.readFully(value);
+    return value;
+  }
+  
+  public Object readXStream(XStream xstream) throws IOException {
+    return xstream.fromXML(new String(readBytes(), "UTF-8"));
+  }
+  
+  /**
+   * Reads what {@link BinaryEncoder#writeReference} wrote.
+   * 
+   * @return the referenced object, or null if the object itself follows,
+   *     in which case the caller reads it and calls {@link #addReference(Object)}.
+   */
+  public Object readReference() throws IOException {
+    int code = readVarInt();
+    if (code == 0) {
+      return null;
+    }
+    if (code - 1 >= references.size()) {
+      throw new IOException("Bad object reference: " + (code - 1));
+    }
+    return references.get(code - 1);
+  }
+  
+  public void addReference(Object value) {
+    references.add(value);
+  }
+}
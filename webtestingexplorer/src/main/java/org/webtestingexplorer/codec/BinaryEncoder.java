@@ -0,0 +1,157 @@
+/*
+Copyright 2011 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.codec;
+
+import com.thoughtworks.xstream.XStream;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes the primitives of our binary format: varints, dictionary-encoded
+ * strings, and back-references to objects already written. One encoder
+ * covers one file (or journal record), since the dictionary and references
+ * only mean something to a {@link BinaryDecoder} that has read everything
+ * before them.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class BinaryEncoder {
+  
+  private final DataOutputStream out;
+  
+  /**
+   * Strings we have written, by their position in the dictionary.
+   */
+  private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+  
+  /**
+   * Objects we have written, by their reference number.
+   */
+  private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+  
+  public BinaryEncoder(OutputStream out) {
+    this.out = new DataOutputStream(out);
+  }
+  
+  /**
+   * Writes the file header for the given kind of content.
+   */
+  public void writeHeader(int kind) throws IOException {
+    out.write(BinaryFormat.MAGIC);
+    writeVarInt(BinaryFormat.VERSION);
+    writeVarInt(kind);
+  }
+  
+  /**
+   * Writes a non-negative int in one to five bytes.
+   */
+  public void writeVarInt(int value) throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative varint: " + value);
+    }
+    writeVarLong(value);
+  }
+  
+  /**
+   * Writes a non-negative long, seven bits per byte.
+   */
+  public void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+  
+  /**
+   * Writes a long that may be negative, zig-zag encoded so that small
+   * magnitudes stay small.
+   */
+  public void writeSignedVarLong(long value) throws IOException {
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+  
+  public void writeBoolean(boolean value) throws IOException {
+    out.writeByte(value ? 1 : 0);
+  }
+  
+  /**
+   * Writes a string, which may be null. The first time we see a string it
+   * goes into the dictionary, and after that we just write its index.
+   */
+  public void writeString(String value) throws IOException {
+    if (value == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = dictionary.get(value);
+    if (index != null) {
+      writeVarInt(index + 2);
+      return;
+    }
+    dictionary.put(value, dictionary.size());
+    writeVarInt(1);
+    writeBytes(value.getBytes("UTF-8"));
+  }
+  
+  /**
+   * Writes length-prefixed bytes.
+   */
+  public void writeBytes(byte[] value) throws IOException {
+    writeVarInt(value.length);
+    out.write(value);
+  }
+  
+  /**
+   * Writes an object we have no binary encoding for as XStream XML.
+   */
+  public void writeXStream(XStream xstream, Object value) throws IOException {
+    writeBytes(xstream.toXML(value).getBytes("UTF-8"));
+  }
+  
+  /**
+   * Writes a back-reference if we have already written the given object.
+   * Otherwise writes a marker saying the object itself follows; the caller
+   * writes it and then calls {@link #addReference(Object)}.
+   * 
+   * @return true if we wrote a reference, false if the caller needs to write the object.
+   */
+  public boolean writeReference(Object value) throws IOException {
+    Integer reference = references.get(value);
+    if (reference != null) {
+      writeVarInt(reference + 1);
+      return true;
+    }
+    writeVarInt(0);
+    return false;
+  }
+  
+  /**
+   * Makes the given (just-written) object available to {@link #writeReference}.
+   */
+  public void addReference(Object value) {
+    references.put(value, references.size());
+  }
+  
+  public void flush() throws IOException {
+    out.flush();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+Copyright 2011 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Header constants for the binary format. Every binary file (or journal
+ * record) starts with the magic bytes, a format version, and the kind of
+ * object it holds.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class BinaryFormat {
+  
+  static final byte[] MAGIC = {'W', 'T', 'E', 'B'};
+  
+  /**
+   * Bumped on incompatible changes. Readers reject versions newer than this.
+   */
+  public static final int VERSION = 1;
+
+  public static final int KIND_ACTION_SEQUENCE_QUEUE = 1;
+  public static final int KIND_ACTION_SEQUENCE = 2;
+  public static final int KIND_TEST_CASE = 3;
+  public static final int KIND_STATE_EXPLORER_STATE_GRAPH = 4;
+  
+  /**
+   * Checks whether the given stream holds binary data rather than XML,
+   * without consuming anything from it.
+   * 
+   * @param in a stream that supports mark/reset.
+   */
+  public static boolean isBinary(InputStream in) throws IOException {
+    in.mark(MAGIC.length);
+    try {
+      for (byte b : MAGIC) {
+        if (in.read() != b) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      in.reset();
+    }
+  }
+  
+  /**
+   * Checks whether the given data is binary rather than XML.
+   */
+  public static boolean isBinary(byte[] data) {
+    if (data.length < MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; ++i) {
+      if (data[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
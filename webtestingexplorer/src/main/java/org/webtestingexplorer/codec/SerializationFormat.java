@@ -0,0 +1,35 @@
+/*
+Copyright 2011 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.codec;
+
+/**
+ * The formats we can write queues, state graphs and test cases in.
+ * Readers work out which one a file is in by looking at its header
+ * (see {@link BinaryFormat#isBinary}).
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public enum SerializationFormat {
+  /**
+   * Human-readable XStream XML. The default.
+   */
+  XML,
+  
+  /**
+   * The compact binary format written by {@link BinaryEncoder}.
+   */
+  BINARY
+}
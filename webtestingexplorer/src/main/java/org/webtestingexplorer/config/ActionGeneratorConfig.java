@@ -24,6 +24,12 @@ import java.util.Set;
 /**
  * Customizations to the action generation process.
  * 
+ * <p>
+ * The elements passed in come from a snapshot taken when the state's elements
+ * were found, so their tag name, visibility, enabled flag and id, name, class,
+ * type, href, role, aria-disabled and (for selects) length attributes don't
+ * need a call to the browser. Anything else, e.g. getText(), does.
+ * 
  * @author smcmaster@google.com (Scott McMaster)
  */
 public interface ActionGeneratorConfig {
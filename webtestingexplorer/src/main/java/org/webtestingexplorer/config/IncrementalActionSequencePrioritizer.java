@@ -0,0 +1,36 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.webtestingexplorer.config;
+
+import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.actions.PriorityActionSequenceQueue;
+
+/**
+ * An {@link ActionSequencePrioritizer} whose order can be kept up as sequences
+ * are pushed, rather than by reordering the whole queue after every action
+ * sequence. The explorer runs with the queue from {@link #createQueue()} and
+ * never calls {@link #prioritize(ActionSequenceQueue)}.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public interface IncrementalActionSequencePrioritizer extends ActionSequencePrioritizer {
+
+  /**
+   * Creates an empty queue that pops sequences in this prioritizer's order.
+   */
+  PriorityActionSequenceQueue createQueue();
+}
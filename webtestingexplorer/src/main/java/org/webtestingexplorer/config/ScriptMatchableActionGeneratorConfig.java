@@ -0,0 +1,38 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.config;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An {@link ActionGeneratorConfig} whose matching can be done in the browser,
+ * for all the elements in a state at once, instead of element by element in
+ * Java. See {@link org.webtestingexplorer.actions.ActionGeneratorMatcher}.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public interface ScriptMatchableActionGeneratorConfig extends ActionGeneratorConfig {
+
+  /**
+   * Gets the patterns an element has to fully match to match this config,
+   * keyed by what they are matched against: "tag", "id", "name", "class",
+   * "text" or "type". An element with no value for one of them doesn't match.
+   * 
+   * @return the patterns, or null if this config can't be matched that way.
+   */
+  Map<String, Pattern> getMatchPatterns();
+}
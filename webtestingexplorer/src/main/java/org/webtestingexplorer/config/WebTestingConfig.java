@@ -19,8 +19,10 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.codec.SerializationFormat;
 import org.webtestingexplorer.config.waitcondition.WaitConditionConfig;
 import org.webtestingexplorer.config.waitcondition.WaitConditionConfigFactory;
+import org.webtestingexplorer.distributed.ExplorationCoordinator;
 import org.webtestingexplorer.driver.FirefoxWebDriverFactory;
 import org.webtestingexplorer.driver.WebDriverFactory;
 import org.webtestingexplorer.state.StateChecker;
@@ -63,9 +65,71 @@ public class WebTestingConfig {
   private int numPartitions;
   
   /**
-   * Whether or not to try to use cached elements in the driver wrapper.
+   * A directory shared by several explorer processes, through which idle ones
+   * take unexplored action sequences from busy ones (see
+   * {@link org.webtestingexplorer.distributed.DirectoryWorkStore}). Use this
+   * instead of partitioning. Null or empty for none.
+   */
+  private String workStoreDirectory;
+  
+  /**
+   * Coordinates exploring with other explorers, possibly on other hosts. When
+   * set, the queue lives in the coordinator, so the queue file, work store and
+   * partitioning settings are ignored. Null for none.
+   */
+  private ExplorationCoordinator coordinator;
+  
+  /**
+   * Whether or not to try to use cached elements in the driver wrapper. They
+   * are cached per frame and selector, and reused until the page's DOM changes.
    */
   private boolean useElementsCache;
+  
+  /**
+   * How many action sequences we explore in parallel, each in its own browser.
+   * Defaults to 1. When the driver factory uses a proxy, each worker gets its
+   * own proxy on a free port, from a
+   * {@link org.webtestingexplorer.driver.WebDriverProxyPool}.
+   */
+  private int numWorkers = 1;
+  
+  /**
+   * Whether to keep the browser open after an action sequence and, if the next
+   * one just adds an action to it, perform only that action instead of
+   * replaying from the start. Note that final oracles then only see the new action.
+   */
+  private boolean usePrefixContinuation;
+  
+  /**
+   * How many action sequences (or tries of one) a browser is used for before
+   * we quit it and start a new one. In between, it is reset by clearing its
+   * cookies and web storage and going to about:blank. Defaults to 1, a new
+   * browser every time.
+   */
+  private int maxBrowserUses = 1;
+  
+  /**
+   * Whether to checkpoint the queue to the queue file by appending to a journal
+   * (see {@link org.webtestingexplorer.actions.ActionSequenceQueueJournal}),
+   * rather than rewriting the whole file after every action sequence.
+   */
+  private boolean useQueueJournal;
+  
+  /**
+   * Whether to snapshot the browser state (url, cookies and web storage) after
+   * each initial action sequence, e.g. logging in, and restore that instead of
+   * running the initial actions again for every action sequence. Snapshots
+   * expire after half an hour, and are thrown away if restoring one doesn't
+   * land on the same url. Note that oracles don't see the initial actions of
+   * restored sequences.
+   */
+  private boolean useStateSnapshots;
+  
+  /**
+   * The format for the queue and state files. Either format can be read back
+   * regardless of this setting.
+   */
+  private SerializationFormat serializationFormat = SerializationFormat.XML;
 
   /**
    * Map of selector description to a {@link WebElementSelector} the selected elements of
@@ -300,6 +364,33 @@ public class WebTestingConfig {
     return queueFilename;
   }
   
+  public WebTestingConfig setUseQueueJournal(boolean useQueueJournal) {
+    this.useQueueJournal = useQueueJournal;
+    return this;
+  }
+  
+  public boolean isUseQueueJournal() {
+    return useQueueJournal;
+  }
+
+  public WebTestingConfig setUseStateSnapshots(boolean useStateSnapshots) {
+    this.useStateSnapshots = useStateSnapshots;
+    return this;
+  }
+
+  public boolean isUseStateSnapshots() {
+    return useStateSnapshots;
+  }
+  
+  public WebTestingConfig setSerializationFormat(SerializationFormat serializationFormat) {
+    this.serializationFormat = serializationFormat;
+    return this;
+  }
+  
+  public SerializationFormat getSerializationFormat() {
+    return serializationFormat;
+  }
+  
   public WebTestingConfig setStateFilename(String stateFileName) {
     this.stateFilename = stateFileName;
     return this;
@@ -344,6 +435,51 @@ public class WebTestingConfig {
     this.numPartitions = numPartitions;
     return this;
   }
+  
+  public String getWorkStoreDirectory() {
+    return workStoreDirectory;
+  }
+  
+  public WebTestingConfig setWorkStoreDirectory(String workStoreDirectory) {
+    this.workStoreDirectory = workStoreDirectory;
+    return this;
+  }
+  
+  public ExplorationCoordinator getCoordinator() {
+    return coordinator;
+  }
+  
+  public WebTestingConfig setCoordinator(ExplorationCoordinator coordinator) {
+    this.coordinator = coordinator;
+    return this;
+  }
+
+  public int getNumWorkers() {
+    return numWorkers;
+  }
+  
+  public WebTestingConfig setNumWorkers(int numWorkers) {
+    this.numWorkers = numWorkers;
+    return this;
+  }
+
+  public boolean isUsePrefixContinuation() {
+    return usePrefixContinuation;
+  }
+  
+  public WebTestingConfig setUsePrefixContinuation(boolean usePrefixContinuation) {
+    this.usePrefixContinuation = usePrefixContinuation;
+    return this;
+  }
+
+  public int getMaxBrowserUses() {
+    return maxBrowserUses;
+  }
+  
+  public WebTestingConfig setMaxBrowserUses(int maxBrowserUses) {
+    this.maxBrowserUses = maxBrowserUses;
+    return this;
+  }
 
   public boolean isCaptureScreenshots() {
     return captureScreenshots;
@@ -16,9 +16,13 @@ limitations under the License.
 
 package org.webtestingexplorer.config.actiongenerator;
 
+import com.google.common.collect.Maps;
+
+import org.webtestingexplorer.config.ScriptMatchableActionGeneratorConfig;
 import org.webtestingexplorer.driver.WebDriverWrapper;
 import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
 
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -28,7 +32,8 @@ import java.util.regex.Pattern;
  * 
  * @author scott.d.mcmaster@gmail.com (Scott McMaster)
  */
-public abstract class MultiCriterionActionGeneratorConfig extends AbstractActionGeneratorConfig {
+public abstract class MultiCriterionActionGeneratorConfig extends AbstractActionGeneratorConfig
+    implements ScriptMatchableActionGeneratorConfig {
 
   private final Pattern tagPattern;
   private final Pattern idPattern;
@@ -75,6 +80,24 @@ public abstract class MultiCriterionActionGeneratorConfig extends AbstractAction
     }
   }
 
+  @Override
+  public Map<String, Pattern> getMatchPatterns() {
+    Map<String, Pattern> patterns = Maps.newHashMap();
+    putIfNotNull(patterns, "tag", tagPattern);
+    putIfNotNull(patterns, "id", idPattern);
+    putIfNotNull(patterns, "name", namePattern);
+    putIfNotNull(patterns, "class", classNamePattern);
+    putIfNotNull(patterns, "text", textPattern);
+    putIfNotNull(patterns, "type", typePattern);
+    return patterns;
+  }
+  
+  private static void putIfNotNull(Map<String, Pattern> patterns, String key, Pattern pattern) {
+    if (pattern != null) {
+      patterns.put(key, pattern);
+    }
+  }
+
   @Override
   public boolean matches(WebDriverWrapper driver,
       WebElementWithIdentifier elementWithId) {
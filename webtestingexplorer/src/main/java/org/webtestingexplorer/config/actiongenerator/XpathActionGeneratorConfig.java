@@ -17,12 +17,19 @@ limitations under the License.
 package org.webtestingexplorer.config.actiongenerator;
 
 
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.webtestingexplorer.driver.WebDriverWrapper;
+import org.webtestingexplorer.driver.WebElementWrapper;
 import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Action generator config picks out elements based on an xpath expression.
@@ -31,8 +38,27 @@ import java.util.List;
  */
 public abstract class XpathActionGeneratorConfig extends AbstractActionGeneratorConfig {
 
+  /**
+   * The elements matching the xpath expression in a frame, as of a given
+   * version of its DOM.
+   */
+  private static class FrameMatches {
+    private final String domVersion;
+    private final Set<WebElement> elements;
+    
+    public FrameMatches(String domVersion, Set<WebElement> elements) {
+      this.domVersion = domVersion;
+      this.elements = elements;
+    }
+  }
+  
   private final String xpath;
   
+  /**
+   * The last elements we found by frame identifier.
+   */
+  private final Map<String, FrameMatches> matchesCache = Maps.newHashMap();
+  
   /**
    * Creates the action generator configuration given the xpath expression
    * to evaluate when matching elements.
@@ -40,24 +66,48 @@ public abstract class XpathActionGeneratorConfig extends AbstractActionGenerator
    * already there.
    */
   public XpathActionGeneratorConfig(String xpath) {
-    this.xpath = xpath;
+    if (xpath.startsWith("/") || xpath.startsWith("(")) {
+      this.xpath = xpath;
+    } else {
+      this.xpath = "//" + xpath;
+    }
   }
   
   /**
-   * This works by looking at all the elements in the document matching
-   * the xpath expression and comparing them to the one given.
+   * This works by finding all the elements in the element's frame matching the
+   * xpath expression, once per version of the frame's DOM, and checking
+   * whether the given one is among them. WebDriver elements are equal when
+   * they have the same id, so that is a hash lookup. If we don't know the DOM
+   * version (see {@link WebDriverWrapper#getLastDomVersionForFrame}), the
+   * xpath expression is evaluated for every element.
    */
   @Override
   public boolean matches(WebDriverWrapper driver,
       WebElementWithIdentifier elementWithId) {
-    List<WebElement> matchingElements = elementWithId.getElement().findElements(By.xpath(xpath));
-    for (WebElement matchingElement : matchingElements) {
-      // This doesn't work -- it seems that a different object reference is returned
-      // by the findElementsBy call than what we got before.
-      if (matchingElement == elementWithId.getElement()) {
-        return true;
-      }
+    Set<WebElement> matchingElements = getMatchingElements(driver,
+        elementWithId.getIdentifier().getFrameIdentifier());
+    WebElement element = elementWithId.getElement();
+    if (element instanceof WebElementWrapper) {
+      element = ((WebElementWrapper) element).getWrappedElement();
+    }
+    return matchingElements.contains(element);
+  }
+  
+  private synchronized Set<WebElement> getMatchingElements(WebDriverWrapper driver,
+      String frameIdentifier) {
+    String domVersion = driver.getLastDomVersionForFrame(frameIdentifier);
+    FrameMatches frameMatches = matchesCache.get(frameIdentifier);
+    if (domVersion != null && frameMatches != null &&
+        Objects.equal(domVersion, frameMatches.domVersion)) {
+      return frameMatches.elements;
+    }
+    
+    Set<WebElement> elements = Sets.newHashSet();
+    List<WebElement> foundElements = driver.findElementsInFrame(By.xpath(xpath), frameIdentifier);
+    if (foundElements != null) {
+      elements.addAll(foundElements);
     }
-    return false;
+    matchesCache.put(frameIdentifier, new FrameMatches(domVersion, elements));
+    return elements;
   }
 }
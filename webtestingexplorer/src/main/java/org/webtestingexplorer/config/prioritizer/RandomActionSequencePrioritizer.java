@@ -16,26 +16,46 @@ limitations under the License.
 
 package org.webtestingexplorer.config.prioritizer;
 
-import com.google.common.collect.Lists;
-
 import org.webtestingexplorer.actions.ActionSequence;
 import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.actions.PriorityActionSequenceQueue;
 import org.webtestingexplorer.config.ActionSequencePrioritizer;
+import org.webtestingexplorer.config.IncrementalActionSequencePrioritizer;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.Random;
 
 /**
  * {@link ActionSequencePrioritizer} that chooses the next action sequence at random.
+ * Each sequence gets a random priority when it is queued, which comes to
+ * the same thing as reshuffling the queue before every pop.
  * 
  * @author scott.d.mcmaster@gmail.com (Scott McMaster)
  */
-public class RandomActionSequencePrioritizer implements ActionSequencePrioritizer {
+public class RandomActionSequencePrioritizer implements IncrementalActionSequencePrioritizer {
+
+  private final Random random = new Random();
+
+  private final PriorityActionSequenceQueue.Scorer randomScorer =
+      new PriorityActionSequenceQueue.Scorer() {
+        @Override
+        public double score(ActionSequence sequence) {
+          return random.nextDouble();
+        }
+      };
+
+  @Override
+  public PriorityActionSequenceQueue createQueue() {
+    return new PriorityActionSequenceQueue(randomScorer);
+  }
 
   @Override
   public ActionSequenceQueue prioritize(ActionSequenceQueue actionSequences) {
-    List<ActionSequence> allSequences = Lists.newArrayList(actionSequences);
-    Collections.shuffle(allSequences);
-    return new ActionSequenceQueue(allSequences);
+    if (actionSequences instanceof PriorityActionSequenceQueue &&
+        ((PriorityActionSequenceQueue) actionSequences).isOrderedBy(randomScorer)) {
+      return actionSequences;
+    }
+    PriorityActionSequenceQueue queue = createQueue();
+    queue.pushAll(actionSequences);
+    return queue;
   }
 }
@@ -16,32 +16,43 @@ limitations under the License.
 
 package org.webtestingexplorer.config.prioritizer;
 
-import com.google.common.collect.Lists;
-
 import org.webtestingexplorer.actions.ActionSequence;
 import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.actions.PriorityActionSequenceQueue;
 import org.webtestingexplorer.config.ActionSequencePrioritizer;
-
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import org.webtestingexplorer.config.IncrementalActionSequencePrioritizer;
 
 /**
  * {@link ActionSequencePrioritizer} that runs the shortest action sequences
- * first.
+ * first; sequences of the same length run newest first. (It used to sort the
+ * sequences into a plain queue, which popped the longest ones first, the same
+ * as not prioritizing at all.)
  * 
  * @author scott.d.mcmaster@gmail.com (Scott McMaster)
  */
-public class ShortestActionSequencePrioritizer implements ActionSequencePrioritizer {
+public class ShortestActionSequencePrioritizer implements IncrementalActionSequencePrioritizer {
+
+  private static final PriorityActionSequenceQueue.Scorer SHORTEST_FIRST =
+      new PriorityActionSequenceQueue.Scorer() {
+        @Override
+        public double score(ActionSequence sequence) {
+          return -sequence.getLength();
+        }
+      };
+
+  @Override
+  public PriorityActionSequenceQueue createQueue() {
+    return new PriorityActionSequenceQueue(SHORTEST_FIRST);
+  }
 
   @Override
   public ActionSequenceQueue prioritize(ActionSequenceQueue actionSequences) {
-    List<ActionSequence> allSequences = Lists.newArrayList(actionSequences);
-    Collections.sort(allSequences, new Comparator<ActionSequence>() {
-      @Override
-      public int compare(ActionSequence first, ActionSequence second) {
-        return first.getLength() - second.getLength();
-      }});
-    return new ActionSequenceQueue(allSequences);
+    if (actionSequences instanceof PriorityActionSequenceQueue &&
+        ((PriorityActionSequenceQueue) actionSequences).isOrderedBy(SHORTEST_FIRST)) {
+      return actionSequences;
+    }
+    PriorityActionSequenceQueue queue = createQueue();
+    queue.pushAll(actionSequences);
+    return queue;
   }
 }
@@ -20,6 +20,7 @@ import org.webtestingexplorer.wait.WaitCondition;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * A collection of different types of {@link WaitCondition}s.
@@ -53,6 +54,12 @@ public class WaitConditionConfig {
    */
   private List<WaitCondition> afterActionWaitConditions = new ArrayList<WaitCondition>();
   
+  /**
+   * Regular expressions for the urls of requests that we don't wait for
+   * responses to, e.g. long polls.
+   */
+  private List<Pattern> ignoredRequestUrlPatterns = new ArrayList<Pattern>();
+  
   public List<WaitCondition> getInitialWaitConditions() {
     return initialWaitConditions;
   }
@@ -71,6 +78,15 @@ public class WaitConditionConfig {
     return this;
   }  
   
+  public List<Pattern> getIgnoredRequestUrlPatterns() {
+    return ignoredRequestUrlPatterns;
+  }
+  
+  public WaitConditionConfig addIgnoredRequestUrlPattern(String urlRegex) {
+    ignoredRequestUrlPatterns.add(Pattern.compile(urlRegex));
+    return this;
+  }
+  
   public long getWaitIntervalMillis() {
     return waitIntervalMillis;
   }
@@ -0,0 +1,44 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import org.webtestingexplorer.actions.ActionSequence;
+
+import java.util.List;
+
+/**
+ * A batch of action sequences leased from an {@link ExplorationCoordinator}.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionSequenceLease {
+
+  private final long id;
+  private final List<ActionSequence> actionSequences;
+
+  public ActionSequenceLease(long id, List<ActionSequence> actionSequences) {
+    this.id = id;
+    this.actionSequences = actionSequences;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public List<ActionSequence> getActionSequences() {
+    return actionSequences;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import com.google.common.collect.Lists;
+
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * {@link WorkStore} in a directory that all the explorer processes can see,
+ * e.g. on a shared disk. It relies only on creating, renaming and deleting
+ * files being atomic:
+ * <ul>
+ * <li>pending/ holds the offered batches, one queue file each.</li>
+ * <li>A batch is stolen by renaming it into claimed/, which only one worker
+ * can do, then reading and deleting it.</li>
+ * <li>workers/ has a file per registered worker, touched now and then as a
+ * heartbeat. Workers that stop touching theirs (i.e. crashed) stop counting.</li>
+ * <li>idle/ has a file per idle worker.</li>
+ * </ul>
+ * Clear out the directory before starting a new exploration.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class DirectoryWorkStore implements WorkStore {
+
+  private final static Logger LOGGER =
+      Logger.getLogger(DirectoryWorkStore.class.getName());
+
+  public static final long DEFAULT_WORKER_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private final File pendingDirectory;
+  private final File claimedDirectory;
+  private final File workersDirectory;
+  private final File idleDirectory;
+  private final File initialSequencesFile;
+  private final SerializationFormat format;
+  private final long workerTimeoutMillis;
+
+  private final String workerId = UUID.randomUUID().toString();
+  private final File workerFile;
+  private final File idleFile;
+  private long lastHeartbeatMillis;
+  private int batchCount;
+
+  public DirectoryWorkStore(String directory, SerializationFormat format) {
+    this(directory, format, DEFAULT_WORKER_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param workerTimeoutMillis how long a worker can go without a heartbeat
+   *     before we assume it is gone. This should be comfortably longer than it
+   *     takes to run an action sequence.
+   */
+  public DirectoryWorkStore(String directory, SerializationFormat format,
+      long workerTimeoutMillis) {
+    pendingDirectory = new File(directory, "pending");
+    claimedDirectory = new File(directory, "claimed");
+    workersDirectory = new File(directory, "workers");
+    idleDirectory = new File(directory, "idle");
+    initialSequencesFile = new File(directory, "initial");
+    this.format = format;
+    this.workerTimeoutMillis = workerTimeoutMillis;
+    workerFile = new File(workersDirectory, workerId);
+    idleFile = new File(idleDirectory, workerId);
+  }
+
+  @Override
+  public synchronized void register() throws IOException {
+    for (File subdirectory : Arrays.asList(
+        pendingDirectory, claimedDirectory, workersDirectory, idleDirectory)) {
+      if (!subdirectory.isDirectory() && !subdirectory.mkdirs()) {
+        throw new IOException("Failed to create " + subdirectory);
+      }
+    }
+    // Busy until we say otherwise.
+    idleFile.delete();
+    createFile(workerFile);
+    lastHeartbeatMillis = System.currentTimeMillis();
+    LOGGER.info("Registered worker " + workerId + " in " + workersDirectory.getParent());
+  }
+
+  @Override
+  public boolean claimInitialSequences() throws IOException {
+    // We registered first, so whoever sees this file knows there is a busy worker.
+    return initialSequencesFile.createNewFile();
+  }
+
+  @Override
+  public synchronized boolean hasIdleWorkers() throws IOException {
+    heartbeat();
+    for (String idleWorker : list(idleDirectory)) {
+      if (!idleWorker.equals(workerId) && isLive(idleWorker)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public synchronized void offer(List<ActionSequence> sequences) throws IOException {
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.pushAll(Lists.reverse(sequences));
+    File batchFile = new File(pendingDirectory, String.format("batch-%013d-%s-%d",
+        System.currentTimeMillis(), workerId, batchCount++));
+    ActionSequenceQueue.writeToFile(queue, batchFile.getPath(), format);
+    if (!batchFile.exists()) {
+      throw new IOException("Failed to write " + batchFile);
+    }
+    LOGGER.info("Offered " + sequences.size() + " action sequences as " + batchFile.getName());
+  }
+
+  @Override
+  public synchronized void setIdle() throws IOException {
+    heartbeat();
+    createFile(idleFile);
+  }
+
+  @Override
+  public synchronized void setBusy() {
+    idleFile.delete();
+  }
+
+  @Override
+  public synchronized List<ActionSequence> steal() throws IOException {
+    heartbeat();
+    List<String> batches = getPendingBatches();
+    if (batches.isEmpty()) {
+      return null;
+    }
+    // Stop being idle first, so that nobody sees us idle while we hold work.
+    boolean wasIdle = idleFile.delete();
+    for (String batch : batches) {
+      File claimedFile = new File(claimedDirectory, batch);
+      if (!new File(pendingDirectory, batch).renameTo(claimedFile)) {
+        // Somebody else got it.
+        continue;
+      }
+      ActionSequenceQueue queue = ActionSequenceQueue.readFromFile(claimedFile.getPath());
+      claimedFile.delete();
+      if (queue == null) {
+        throw new IOException("Failed to read " + claimedFile);
+      }
+      LOGGER.info("Stole " + queue.size() + " action sequences from " + batch);
+      return queue.asList();
+    }
+    if (wasIdle) {
+      createFile(idleFile);
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized boolean tryFinish() throws IOException {
+    heartbeat();
+    if (!getPendingBatches().isEmpty() || hasBusyWorkers()) {
+      return false;
+    }
+    unregister();
+    // Somebody may have offered work just as we left. Since everybody checks
+    // this after unregistering, the last one to leave can't miss any.
+    if (!getPendingBatches().isEmpty()) {
+      register();
+      setIdle();
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized void unregister() {
+    workerFile.delete();
+    idleFile.delete();
+  }
+
+  private boolean hasBusyWorkers() {
+    for (String worker : list(workersDirectory)) {
+      if (!worker.equals(workerId) && isLive(worker) &&
+          !new File(idleDirectory, worker).exists()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isLive(String worker) {
+    long lastModified = new File(workersDirectory, worker).lastModified();
+    // Zero if the file is gone.
+    return lastModified != 0 &&
+        System.currentTimeMillis() - lastModified < workerTimeoutMillis;
+  }
+
+  private List<String> getPendingBatches() {
+    List<String> batches = Lists.newArrayList();
+    for (String name : list(pendingDirectory)) {
+      if (!name.endsWith(TMP_SUFFIX)) {
+        batches.add(name);
+      }
+    }
+    // Oldest first.
+    Collections.sort(batches);
+    return batches;
+  }
+
+  /**
+   * Touches our worker file, if it is getting old.
+   */
+  @Override
+  public synchronized void heartbeat() throws IOException {
+    long now = System.currentTimeMillis();
+    if (now - lastHeartbeatMillis < workerTimeoutMillis / 4) {
+      return;
+    }
+    if (!workerFile.setLastModified(now)) {
+      createFile(workerFile);
+    }
+    lastHeartbeatMillis = now;
+  }
+
+  private static List<String> list(File directory) {
+    String[] names = directory.list();
+    return names == null ? Lists.<String>newArrayList() : Arrays.asList(names);
+  }
+
+  private static void createFile(File file) throws IOException {
+    if (!file.exists() && !file.createNewFile() && !file.exists()) {
+      throw new IOException("Failed to create " + file);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import org.webtestingexplorer.actions.ActionSequence;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Owns the queue of action sequences, the set of visited states and the
+ * test case count for explorers that may be running on many hosts (see
+ * {@link org.webtestingexplorer.config.WebTestingConfig#setCoordinator}).
+ * Explorers lease batches of sequences, run them, and then complete the lease
+ * with the extended sequences. If an explorer doesn't complete a lease in
+ * time (e.g. it crashed), the batch goes back in the queue for somebody else.
+ * 
+ * <p>
+ * {@link LocalExplorationCoordinator} works in-process, and
+ * {@link HttpExplorationCoordinatorServer} makes one available to
+ * {@link HttpExplorationCoordinatorClient}s on other hosts.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public interface ExplorationCoordinator {
+
+  /**
+   * Exactly one explorer gets true from this, and should build the initial
+   * action sequences and {@link #addActionSequences add} them.
+   */
+  boolean claimInitialSequences() throws IOException;
+
+  /**
+   * Queues the given sequences, in order (so the last one will be leased first).
+   */
+  void addActionSequences(List<ActionSequence> actionSequences) throws IOException;
+
+  /**
+   * Leases up to the given number of sequences from the queue.
+   * 
+   * @return the lease, or null if the queue is empty right now.
+   */
+  ActionSequenceLease lease(int maxActionSequences) throws IOException;
+
+  /**
+   * Finishes a lease, queueing the extended sequences the explorer found.
+   * 
+   * @return false if the lease had already expired, in which case the
+   *     extended sequences are dropped, since the batch is being run again.
+   */
+  boolean complete(long leaseId, List<ActionSequence> extendedActionSequences)
+      throws IOException;
+
+  /**
+   * Gives back a lease without running it, e.g. because the explorer is
+   * stopping, so that the batch goes back in the queue now rather than when
+   * the lease expires. Does nothing if the lease has already expired.
+   */
+  void release(long leaseId) throws IOException;
+
+  /**
+   * Records that some explorer has reached the state with the given key.
+   * 
+   * @return true if no explorer has reached it before.
+   */
+  boolean markStateVisited(String stateKey) throws IOException;
+
+  /**
+   * @return a number for a new test case, unique across all the explorers.
+   */
+  int nextTestCaseNumber() throws IOException;
+
+  /**
+   * @return whether the exploration is over: the initial sequences have been
+   *     added, and everything has been leased and completed.
+   */
+  boolean isFinished() throws IOException;
+}
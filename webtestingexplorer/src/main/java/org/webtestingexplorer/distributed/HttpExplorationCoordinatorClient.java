@@ -0,0 +1,161 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import org.webtestingexplorer.actions.ActionSequence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+
+/**
+ * {@link ExplorationCoordinator} that talks to an
+ * {@link HttpExplorationCoordinatorServer}.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class HttpExplorationCoordinatorClient implements ExplorationCoordinator {
+
+  private static final int TIMEOUT_MILLIS = 60 * 1000;
+
+  private final String baseUrl;
+
+  /**
+   * @param baseUrl e.g. http://coordinator-host:8090
+   */
+  public HttpExplorationCoordinatorClient(String baseUrl) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+  }
+
+  @Override
+  public boolean claimInitialSequences() throws IOException {
+    return Boolean.parseBoolean(postForText(HttpExplorationCoordinatorServer.CLAIM_PATH, null));
+  }
+
+  @Override
+  public void addActionSequences(List<ActionSequence> actionSequences) throws IOException {
+    postForText(HttpExplorationCoordinatorServer.ADD_PATH, actionSequences);
+  }
+
+  @Override
+  public ActionSequenceLease lease(int maxActionSequences) throws IOException {
+    HttpURLConnection connection =
+        post(HttpExplorationCoordinatorServer.LEASE_PATH + "?max=" + maxActionSequences, null);
+    try {
+      if (connection.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+        return null;
+      }
+      checkResponse(connection);
+      long leaseId = Long.parseLong(
+          connection.getHeaderField(HttpExplorationCoordinatorServer.LEASE_ID_HEADER));
+      InputStream in = connection.getInputStream();
+      try {
+        return new ActionSequenceLease(leaseId,
+            HttpExplorationCoordinatorServer.readActionSequences(in));
+      } finally {
+        try { in.close(); } catch (Exception e) {}
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Override
+  public boolean complete(long leaseId, List<ActionSequence> extendedActionSequences)
+      throws IOException {
+    return Boolean.parseBoolean(postForText(
+        HttpExplorationCoordinatorServer.COMPLETE_PATH + "?lease=" + leaseId,
+        extendedActionSequences));
+  }
+
+  @Override
+  public void release(long leaseId) throws IOException {
+    postForText(HttpExplorationCoordinatorServer.RELEASE_PATH + "?lease=" + leaseId, null);
+  }
+
+  @Override
+  public boolean markStateVisited(String stateKey) throws IOException {
+    return Boolean.parseBoolean(postForText(HttpExplorationCoordinatorServer.VISITED_PATH
+        + "?state=" + URLEncoder.encode(stateKey, "UTF-8"), null));
+  }
+
+  @Override
+  public int nextTestCaseNumber() throws IOException {
+    return Integer.parseInt(postForText(HttpExplorationCoordinatorServer.TEST_CASE_PATH, null));
+  }
+
+  @Override
+  public boolean isFinished() throws IOException {
+    return Boolean.parseBoolean(postForText(HttpExplorationCoordinatorServer.FINISHED_PATH, null));
+  }
+
+  /**
+   * Posts the given sequences (if any) to the given path and returns the response text.
+   */
+  private String postForText(String pathAndQuery, List<ActionSequence> actionSequences)
+      throws IOException {
+    HttpURLConnection connection = post(pathAndQuery, actionSequences);
+    try {
+      checkResponse(connection);
+      InputStream in = connection.getInputStream();
+      try {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+          text.write(buffer, 0, count);
+        }
+        return text.toString("UTF-8");
+      } finally {
+        try { in.close(); } catch (Exception e) {}
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private HttpURLConnection post(String pathAndQuery, List<ActionSequence> actionSequences)
+      throws IOException {
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL(baseUrl + pathAndQuery).openConnection();
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    OutputStream out = connection.getOutputStream();
+    try {
+      if (actionSequences != null) {
+        HttpExplorationCoordinatorServer.writeActionSequences(out, actionSequences);
+      }
+    } finally {
+      try { out.close(); } catch (Exception e) {}
+    }
+    return connection;
+  }
+
+  private static void checkResponse(HttpURLConnection connection) throws IOException {
+    int responseCode = connection.getResponseCode();
+    if (responseCode != HttpURLConnection.HTTP_OK) {
+      throw new IOException("Coordinator returned " + responseCode + " for "
+          + connection.getURL());
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.ActionSequenceCodec;
+import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves an {@link ExplorationCoordinator} over HTTP to
+ * {@link HttpExplorationCoordinatorClient}s, using the JDK's built-in server.
+ * Action sequences go over the wire in the binary format (see
+ * {@link ActionSequenceCodec}). To run a standalone coordinator:
+ * 
+ * <pre>
+ * java org.webtestingexplorer.distributed.HttpExplorationCoordinatorServer port [queue-file]
+ * </pre>
+ * 
+ * where the optional queue file holds the initial action sequences.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class HttpExplorationCoordinatorServer {
+
+  private final static Logger LOGGER =
+      Logger.getLogger(HttpExplorationCoordinatorServer.class.getName());
+
+  static final String CLAIM_PATH = "/claim";
+  static final String ADD_PATH = "/add";
+  static final String LEASE_PATH = "/lease";
+  static final String COMPLETE_PATH = "/complete";
+  static final String RELEASE_PATH = "/release";
+  static final String VISITED_PATH = "/visited";
+  static final String TEST_CASE_PATH = "/testcase";
+  static final String FINISHED_PATH = "/finished";
+
+  static final String LEASE_ID_HEADER = "X-Lease-Id";
+
+  private final ExplorationCoordinator coordinator;
+  private final HttpServer server;
+
+  public HttpExplorationCoordinatorServer(ExplorationCoordinator coordinator, int port)
+      throws IOException {
+    this.coordinator = coordinator;
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/", new CoordinatorHandler());
+  }
+
+  public void start() {
+    server.start();
+    LOGGER.info("Exploration coordinator listening on port " + server.getAddress().getPort());
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+
+  /**
+   * @return the port we're listening on, which is useful if we were asked for port 0.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: HttpExplorationCoordinatorServer port [queue-file]");
+      System.exit(1);
+    }
+    LocalExplorationCoordinator coordinator = new LocalExplorationCoordinator();
+    if (args.length > 1) {
+      ActionSequenceQueue queue = ActionSequenceQueue.readFromFile(args[1]);
+      if (queue == null) {
+        System.err.println("Can't read " + args[1]);
+        System.exit(1);
+      }
+      coordinator.addActionSequences(Lists.reverse(queue.asList()));
+    }
+    new HttpExplorationCoordinatorServer(coordinator, Integer.parseInt(args[0])).start();
+  }
+
+  private class CoordinatorHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (path.equals(CLAIM_PATH)) {
+          sendText(exchange, Boolean.toString(coordinator.claimInitialSequences()));
+        } else if (path.equals(ADD_PATH)) {
+          coordinator.addActionSequences(readActionSequences(exchange.getRequestBody()));
+          sendText(exchange, "");
+        } else if (path.equals(LEASE_PATH)) {
+          ActionSequenceLease lease =
+              coordinator.lease(Integer.parseInt(parameters.get("max")));
+          if (lease == null) {
+            exchange.sendResponseHeaders(204, -1);
+          } else {
+            exchange.getResponseHeaders().set(LEASE_ID_HEADER, Long.toString(lease.getId()));
+            sendActionSequences(exchange, lease.getActionSequences());
+          }
+        } else if (path.equals(COMPLETE_PATH)) {
+          boolean completed = coordinator.complete(Long.parseLong(parameters.get("lease")),
+              readActionSequences(exchange.getRequestBody()));
+          sendText(exchange, Boolean.toString(completed));
+        } else if (path.equals(RELEASE_PATH)) {
+          coordinator.release(Long.parseLong(parameters.get("lease")));
+          sendText(exchange, "");
+        } else if (path.equals(VISITED_PATH)) {
+          sendText(exchange,
+              Boolean.toString(coordinator.markStateVisited(parameters.get("state"))));
+        } else if (path.equals(TEST_CASE_PATH)) {
+          sendText(exchange, Integer.toString(coordinator.nextTestCaseNumber()));
+        } else if (path.equals(FINISHED_PATH)) {
+          sendText(exchange, Boolean.toString(coordinator.isFinished()));
+        } else {
+          exchange.sendResponseHeaders(404, -1);
+        }
+      } catch (Exception e) {
+        LOGGER.log(Level.SEVERE, "Failed to handle " + exchange.getRequestURI(), e);
+        exchange.sendResponseHeaders(500, -1);
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) throws IOException {
+    Map<String, String> parameters = Maps.newHashMap();
+    if (query == null) {
+      return parameters;
+    }
+    for (String parameter : query.split("&")) {
+      int equals = parameter.indexOf('=');
+      if (equals > 0) {
+        parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+      }
+    }
+    return parameters;
+  }
+
+  private static void sendText(HttpExchange exchange, String text) throws IOException {
+    byte[] body = text.getBytes("UTF-8");
+    exchange.sendResponseHeaders(200, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private static void sendActionSequences(HttpExchange exchange,
+      List<ActionSequence> actionSequences) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    writeActionSequences(body, actionSequences);
+    exchange.sendResponseHeaders(200, body.size());
+    body.writeTo(exchange.getResponseBody());
+  }
+
+  /**
+   * Writes a list of sequences as a queue that pops them in list order.
+   */
+  static void writeActionSequences(OutputStream out, List<ActionSequence> actionSequences)
+      throws IOException {
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.pushAll(Lists.reverse(actionSequences));
+    OutputStream bufferedOut = new BufferedOutputStream(out);
+    new ActionSequenceCodec().writeQueue(new BinaryEncoder(bufferedOut), queue);
+    bufferedOut.flush();
+  }
+
+  static List<ActionSequence> readActionSequences(InputStream in) throws IOException {
+    return new ActionSequenceCodec().readQueue(
+        new BinaryDecoder(new BufferedInputStream(in))).asList();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.ActionSequenceQueue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * In-process {@link ExplorationCoordinator}. Several explorers in the same JVM
+ * can share one directly, or it can be served to other hosts by
+ * {@link HttpExplorationCoordinatorServer}.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class LocalExplorationCoordinator implements ExplorationCoordinator {
+
+  private final static Logger LOGGER =
+      Logger.getLogger(LocalExplorationCoordinator.class.getName());
+
+  public static final long DEFAULT_LEASE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+  private static class Lease {
+    private final List<ActionSequence> actionSequences;
+    private final long expiryMillis;
+
+    public Lease(List<ActionSequence> actionSequences, long expiryMillis) {
+      this.actionSequences = actionSequences;
+      this.expiryMillis = expiryMillis;
+    }
+  }
+
+  private final ActionSequenceQueue queue;
+  private final long leaseTimeoutMillis;
+
+  /**
+   * Outstanding leases, oldest first.
+   */
+  private final Map<Long, Lease> leases = Maps.newLinkedHashMap();
+  private long nextLeaseId;
+
+  private final Set<String> visitedStates = Sets.newHashSet();
+  private int testCaseCount;
+  private boolean initialSequencesClaimed;
+  private boolean initialSequencesAdded;
+
+  public LocalExplorationCoordinator() {
+    this(new ActionSequenceQueue(), DEFAULT_LEASE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param queue the queue to keep the sequences in, e.g. a prioritizer's
+   *     {@link org.webtestingexplorer.actions.PriorityActionSequenceQueue}.
+   * @param leaseTimeoutMillis how long an explorer has to complete a lease.
+   *     This should be comfortably longer than it takes to run a batch.
+   */
+  public LocalExplorationCoordinator(ActionSequenceQueue queue, long leaseTimeoutMillis) {
+    this.queue = queue;
+    this.leaseTimeoutMillis = leaseTimeoutMillis;
+  }
+
+  @Override
+  public synchronized boolean claimInitialSequences() {
+    if (initialSequencesClaimed) {
+      return false;
+    }
+    initialSequencesClaimed = true;
+    return true;
+  }
+
+  @Override
+  public synchronized void addActionSequences(List<ActionSequence> actionSequences) {
+    queue.pushAll(actionSequences);
+    initialSequencesClaimed = true;
+    initialSequencesAdded = true;
+  }
+
+  @Override
+  public synchronized ActionSequenceLease lease(int maxActionSequences) {
+    requeueExpiredLeases();
+    if (queue.isEmpty()) {
+      return null;
+    }
+    List<ActionSequence> actionSequences = Lists.newArrayList();
+    while (actionSequences.size() < maxActionSequences && !queue.isEmpty()) {
+      actionSequences.add(queue.pop());
+    }
+    long leaseId = nextLeaseId++;
+    leases.put(leaseId,
+        new Lease(actionSequences, System.currentTimeMillis() + leaseTimeoutMillis));
+    return new ActionSequenceLease(leaseId, actionSequences);
+  }
+
+  @Override
+  public synchronized boolean complete(long leaseId,
+      List<ActionSequence> extendedActionSequences) {
+    if (leases.remove(leaseId) == null) {
+      LOGGER.warning("Dropping results for expired lease " + leaseId);
+      return false;
+    }
+    queue.pushAll(extendedActionSequences);
+    return true;
+  }
+
+  @Override
+  public synchronized void release(long leaseId) {
+    Lease lease = leases.remove(leaseId);
+    if (lease != null) {
+      LOGGER.info("Lease " + leaseId + " released, requeueing "
+          + lease.actionSequences.size() + " action sequences");
+      queue.pushAll(Lists.reverse(lease.actionSequences));
+    }
+  }
+
+  @Override
+  public synchronized boolean markStateVisited(String stateKey) {
+    return visitedStates.add(stateKey);
+  }
+
+  @Override
+  public synchronized int nextTestCaseNumber() {
+    return ++testCaseCount;
+  }
+
+  @Override
+  public synchronized boolean isFinished() {
+    requeueExpiredLeases();
+    return initialSequencesAdded && queue.isEmpty() && leases.isEmpty();
+  }
+
+  /**
+   * @return the number of sequences waiting to be leased.
+   */
+  public synchronized int getQueueSize() {
+    return queue.size();
+  }
+
+  private void requeueExpiredLeases() {
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<Long, Lease>> iterator = leases.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, Lease> entry = iterator.next();
+      Lease lease = entry.getValue();
+      if (lease.expiryMillis > now) {
+        // Leases are in the order they were handed out, and they all last as long.
+        break;
+      }
+      LOGGER.warning("Lease " + entry.getKey() + " expired, requeueing "
+          + lease.actionSequences.size() + " action sequences");
+      queue.pushAll(Lists.reverse(lease.actionSequences));
+      iterator.remove();
+    }
+  }
+}
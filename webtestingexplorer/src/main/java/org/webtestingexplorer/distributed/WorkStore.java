@@ -0,0 +1,97 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import org.webtestingexplorer.actions.ActionSequence;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Shares unexplored action sequences between explorer processes, so that
+ * processes that run out of work can take some from the ones that still
+ * have plenty. This replaces fixed partitioning of the initial sequences
+ * (see {@link org.webtestingexplorer.config.WebTestingConfig#setNumPartitions(int)}).
+ * 
+ * <p>
+ * Each process registers, and is either busy or idle. Busy processes
+ * {@link #offer} some of their queue when {@link #hasIdleWorkers()} says
+ * someone could use it; idle processes {@link #steal} it. The exploration
+ * is over when no work is on offer and every process is idle.
+ * 
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public interface WorkStore {
+
+  /**
+   * Joins the exploration as a busy worker.
+   */
+  void register() throws IOException;
+
+  /**
+   * Exactly one worker gets true from this, and should build the initial
+   * action sequences. Everyone else starts out empty-handed.
+   */
+  boolean claimInitialSequences() throws IOException;
+
+  /**
+   * @return whether any other worker is waiting for work.
+   */
+  boolean hasIdleWorkers() throws IOException;
+
+  /**
+   * Makes the given sequences available to other workers.
+   */
+  void offer(List<ActionSequence> sequences) throws IOException;
+
+  /**
+   * Marks this worker idle, until it next steals something.
+   */
+  void setIdle() throws IOException;
+
+  /**
+   * Marks this worker busy again, e.g. because another of its threads found
+   * more to do.
+   */
+  void setBusy() throws IOException;
+
+  /**
+   * Lets the other workers know that this one is still alive. Busy workers
+   * should call this now and then; it is cheap to call often.
+   */
+  void heartbeat() throws IOException;
+
+  /**
+   * Takes a batch of sequences offered by some worker, which makes this
+   * worker busy again.
+   * 
+   * @return the sequences, or null if none are on offer.
+   */
+  List<ActionSequence> steal() throws IOException;
+
+  /**
+   * Checks whether the whole exploration is over and, if so, leaves it.
+   * Call this only when idle.
+   * 
+   * @return true if this worker is done and has unregistered.
+   */
+  boolean tryFinish() throws IOException;
+
+  /**
+   * Leaves the exploration, whether or not it's over.
+   */
+  void unregister();
+}
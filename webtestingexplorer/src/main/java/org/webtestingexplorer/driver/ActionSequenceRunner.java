@@ -27,10 +27,12 @@ import org.webtestingexplorer.oracles.FailureReason;
 import org.webtestingexplorer.oracles.Oracle;
 import org.webtestingexplorer.wait.WaitCondition;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * Contains the logic for running an {@link ActionSequence}.
@@ -60,11 +62,12 @@ public class ActionSequenceRunner {
     
     /**
      * The screenshots that were captured action-by-action while running the action sequence.
-     * May be null if we're not configured to capture screenshots.
+     * May be null if we're not configured to capture screenshots. The result holds them
+     * until {@link #deleteScreenshots()}.
      */
-    private final List<Byte[]> screenshots;
+    private final List<Screenshot> screenshots;
     
-    public ActionSequenceResult(List<FailureReason> failures, List<Byte[]> screenshots) {
+    public ActionSequenceResult(List<FailureReason> failures, List<Screenshot> screenshots) {
       this.failures = failures;
       this.screenshots = screenshots;
     }
@@ -76,10 +79,18 @@ public class ActionSequenceRunner {
     /**
      * @return the screenshots
      */
-    public List<Byte[]> getScreenshots() {
+    public List<Screenshot> getScreenshots() {
       return screenshots;
     }
 
+    /**
+     * Lets go of the screenshots, once they have been written out or aren't
+     * wanted.
+     */
+    public void deleteScreenshots() {
+      Screenshot.deleteAll(screenshots);
+    }
+
     /**
      * @return whether or not we have failures.
      */
@@ -101,24 +112,124 @@ public class ActionSequenceRunner {
   }
   
   private WebDriverProxy proxy;
+  
+  /**
+   * Where the proxy came from, if anywhere. If set, the proxy goes back there
+   * on shutdown instead of being stopped.
+   */
+  private WebDriverProxyPool proxyPool;
+  
   private WebDriverWrapper driver;
   private WebDriverFactory driverFactory;
   
+  /**
+   * Where we get warm browsers from, if anywhere. Otherwise we start a new
+   * one for every try.
+   */
+  private WebDriverPool driverPool;
+  
+  /**
+   * Whether this runner initialized the driver factory and so is responsible
+   * for terminating it.
+   */
+  private boolean ownsDriverFactory;
+  
+  /**
+   * In prefix continuation mode, the url and actions that the open driver has
+   * run, and the screenshots captured along the way (which we hold). Null when
+   * there is no driver we can continue from.
+   */
+  private String liveUrl;
+  private List<Action> liveActions;
+  private List<Screenshot> liveScreenshots;
+  
+  /**
+   * Where we keep the browser state after each sequence's initial actions,
+   * in state snapshot mode.
+   */
+  private BrowserStateSnapshotCache stateSnapshotCache = new BrowserStateSnapshotCache();
+  
+  /**
+   * Where screenshots go, created when we take the first one.
+   */
+  private ScreenshotSpool screenshotSpool;
+  
   public ActionSequenceRunner(WebDriverFactory driverFactory)
       throws Exception {
     if (driverFactory.shouldUseProxy()) {
-      this.proxy = new WebDriverProxy();
+      this.proxy = WebDriverProxyPool.startProxy();
     }
     this.driverFactory = driverFactory;
     this.driverFactory.init();
+    this.ownsDriverFactory = true;
+  }
+  
+  /**
+   * Creates a runner that shares a driver factory which has already been
+   * initialized by another runner, e.g. so that several runners can each drive
+   * their own browser in parallel. This runner does not terminate the factory
+   * on shutdown, but it does stop the given proxy, which may be null.
+   */
+  public ActionSequenceRunner(WebDriverFactory driverFactory, WebDriverProxy proxy) {
+    this(driverFactory, proxy, null);
+  }
+  
+  /**
+   * Like {@link #ActionSequenceRunner(WebDriverFactory, WebDriverProxy)}, but
+   * on shutdown the proxy is released back to the given pool for the next
+   * runner instead of being stopped.
+   */
+  public ActionSequenceRunner(WebDriverFactory driverFactory, WebDriverProxy proxy,
+      WebDriverProxyPool proxyPool) {
+    this.driverFactory = driverFactory;
+    this.proxy = proxy;
+    this.proxyPool = proxyPool;
+    this.ownsDriverFactory = false;
   }
   
   public WebDriverWrapper getDriver() {
     return driver;
   }
   
+  /**
+   * Sets where we keep state snapshots, e.g. so that several runners can
+   * share them.
+   */
+  public void setStateSnapshotCache(BrowserStateSnapshotCache stateSnapshotCache) {
+    this.stateSnapshotCache = stateSnapshotCache;
+  }
+  
+  /**
+   * Sets where we get browsers from, e.g. so that several runners can share
+   * them. The pool's factory should be ours.
+   */
+  public void setWebDriverPool(WebDriverPool driverPool) {
+    this.driverPool = driverPool;
+  }
+  
+  /**
+   * Closes the current driver, if any. Callers using prefix continuation
+   * must use this (rather than closing the driver directly) so that we
+   * don't try to continue from it.
+   */
+  public void closeDriver() {
+    liveUrl = null;
+    liveActions = null;
+    Screenshot.deleteAll(liveScreenshots);
+    liveScreenshots = null;
+    if (driver != null) {
+      try { driver.close(); } catch (Exception e) {}
+    }
+  }
+  
   /**
    * Executes the given action sequence using the given driver.
+   * In prefix continuation mode, if the action sequence is the one we last
+   * ran plus one more action, we just perform that action in the still-open
+   * driver. Otherwise we close the driver and run the sequence from the start.
+   * In state snapshot mode, starting from the start means restoring the
+   * browser state snapshot taken after the sequence's initial actions, if we
+   * have a good one, and running the rest.
    * @param config TODO(smcmaster):
    * @throws Exception 
    */
@@ -128,14 +239,30 @@ public class ActionSequenceRunner {
   	// Set up the proxy per the config.
     long waitIntervalMillis = WaitConditionConfig.DEFAULT_WAIT_INTERVAL_MILLIS;
     long waitTimeoutMillis = WaitConditionConfig.DEFAULT_WAIT_TIMEOUT_MILLIS;
+    List<Pattern> ignoredRequestUrlPatterns = Lists.newArrayList();
     if (config.getWaitConditionConfig() != null) {
       waitIntervalMillis = config.getWaitConditionConfig().getWaitIntervalMillis();
       waitTimeoutMillis = config.getWaitConditionConfig().getWaitTimeoutMillis();
+      ignoredRequestUrlPatterns = config.getWaitConditionConfig().getIgnoredRequestUrlPatterns();
     }
-    updateProxyResponseWaitTimes(waitIntervalMillis, waitTimeoutMillis);
+    updateProxyWaitSettings(waitTimeoutMillis, ignoredRequestUrlPatterns);
 
+    if (config.isUsePrefixContinuation() && isContinuation(config)) {
+      try {
+        return continueActionSequence(config);
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Exception continuing action sequence, replaying from the start: "
+            + config.getActionSequence(), e);
+        closeDriver();
+      }
+    } else if (liveActions != null) {
+      // Nobody else closes the driver we left open for continuation.
+      closeDriver();
+    }
+    
     int tryNumber = 1;
     while (tryNumber <= config.getNumRetries()) {
+      List<Screenshot> screenshots = null;
       try {
         LOGGER.info("Try #" + tryNumber + ", at url: " + config.getUrl() + " Run action sequence: "
             + config.getActionSequence().toString());
@@ -151,60 +278,243 @@ public class ActionSequenceRunner {
         // straightforward because we need to provide the driver to callers while
         // it is still open so that they can do things like examine state.
         // Probably need to add more callbacks.
-        driver = new WebDriverWrapper(driverFactory, proxy, waitIntervalMillis, waitTimeoutMillis,
-            config.isUseElementsCache());
+        driver = createDriver(waitIntervalMillis, waitTimeoutMillis, config.isUseElementsCache());
     
         loadUrl(driver, config.getUrl(), config.getWaitConditionConfig());
         
-        List<Byte[]> screenshots = null;
         if (config.isCaptureScreenshots()) {
           screenshots = Lists.newArrayList();
         }
         
-        for (int i = 0; i < config.getActionSequence().getActions().size(); ++i) {
-          if (config.getOracleConfig() != null) {
-          	resetOracles(config.getOracleConfig().getAfterActionOracles());
-          }
-
-          Action action = config.getActionSequence().getActions().get(i);
-          if (config.getBeforeActionCallback() != null) {
-            config.getBeforeActionCallback().onBeforeAction(action);
-          }
-          try {
-            performAction(driver, action, config.getWaitConditionConfig(), screenshots);
-          } catch (Exception e) {
-            String message = "Exception running action: " + action
-                + ", element outerHTML=" + action.getIdentifier().getOuterHtml();
-            LOGGER.log(Level.SEVERE, message, e);
-            throw new RuntimeException(message, e);
+        List<Action> actions = config.getActionSequence().getActions();
+        List<Action> initialActions = getInitialActions(actions);
+        int firstAction = 0;
+        if (config.isUseStateSnapshots() && !initialActions.isEmpty() &&
+            initialActions.size() < actions.size()) {
+          // (If the sequence is all initial actions, we need to run the last
+          // one for the before action callback.)
+          BrowserStateSnapshot snapshot = getStateSnapshot(config, initialActions);
+          // Hold on to its screenshots before somebody else evicts it.
+          List<Screenshot> snapshotScreenshots = null;
+          if (snapshot != null && screenshots != null) {
+            snapshotScreenshots = snapshot.retainScreenshots();
+            if (snapshotScreenshots == null) {
+              snapshot = null;
+            }
           }
-          
-          if (config.getOracleConfig() != null) {
-            // Check for failures.
-            checkForFailures(config.getOracleConfig().getAfterActionOracles(), driver,
-                config.getActionSequence(), action);
+          if (snapshot != null) {
+            if (restoreStateSnapshot(config, initialActions, snapshot)) {
+              firstAction = initialActions.size();
+              if (screenshots != null) {
+                screenshots.addAll(snapshotScreenshots);
+              }
+            } else {
+              Screenshot.deleteAll(snapshotScreenshots);
+              // Start over in a clean browser.
+              driver.close();
+              driver = createDriver(waitIntervalMillis, waitTimeoutMillis,
+                  config.isUseElementsCache());
+              loadUrl(driver, config.getUrl(), config.getWaitConditionConfig());
+            }
           }
         }
         
-        List<FailureReason> failures = null;
-        if (config.getOracleConfig() != null) {
-          // Check for failures.
-          failures = checkForFailures(config.getOracleConfig().getFinalOracles(), driver,
-              config.getActionSequence(), config.getActionSequence().getLastAction());
+        for (int i = firstAction; i < actions.size(); ++i) {
+          runAction(config, actions.get(i), screenshots);
+          if (config.isUseStateSnapshots() && i + 1 == initialActions.size()) {
+            BrowserStateSnapshot snapshot = driver.captureStateSnapshot();
+            if (screenshots != null) {
+              snapshot.setScreenshots(Screenshot.retainAll(screenshots));
+            }
+            stateSnapshotCache.put(config.getUrl(), initialActions, snapshot);
+          }
         }
         
-        return new ActionSequenceResult(failures, screenshots);
+        if (config.isUsePrefixContinuation()) {
+          liveUrl = config.getUrl();
+          liveActions = Lists.newArrayList(actions);
+          // (From an earlier try, if its final oracles threw.)
+          Screenshot.deleteAll(liveScreenshots);
+          liveScreenshots = Screenshot.retainAll(screenshots);
+        }
+        return createResult(config, screenshots);
       } catch (Exception e) {
       	// Page source is sometimes useful for debugging.
         //String source = driver.getDriver().getPageSource();
         LOGGER.log(Level.SEVERE, "Exception running action sequence: " + config.getActionSequence(), e);
-        try { driver.close(); } catch (Exception e2) {}
+        Screenshot.deleteAll(screenshots);
+        // Don't reuse a browser that may be in a bad way.
+        try { driver.discard(); } catch (Exception e2) {}
         ++tryNumber;
       }
     }
     throw new RuntimeException("Out of retries");
   }
 
+  private ScreenshotSpool getScreenshotSpool() throws IOException {
+    if (screenshotSpool == null) {
+      screenshotSpool = new ScreenshotSpool();
+    }
+    return screenshotSpool;
+  }
+  
+  /**
+   * Opens a browser, from the pool if we have one.
+   */
+  private WebDriverWrapper createDriver(long waitIntervalMillis, long waitTimeoutMillis,
+      boolean useElementsCache) throws Exception {
+    if (driverPool != null) {
+      return new WebDriverWrapper(driverPool, proxy, waitIntervalMillis, waitTimeoutMillis,
+          useElementsCache);
+    }
+    return new WebDriverWrapper(driverFactory, proxy, waitIntervalMillis, waitTimeoutMillis,
+        useElementsCache);
+  }
+  
+  /**
+   * @return the leading initial actions of the given actions.
+   */
+  private static List<Action> getInitialActions(List<Action> actions) {
+    int numInitialActions = 0;
+    while (numInitialActions < actions.size() && actions.get(numInitialActions).isInitial()) {
+      ++numInitialActions;
+    }
+    return actions.subList(0, numInitialActions);
+  }
+  
+  /**
+   * @return the state snapshot for the given initial actions, or null if we
+   *     don't have one we can use.
+   */
+  private BrowserStateSnapshot getStateSnapshot(ActionSequenceRunnerConfig config,
+      List<Action> initialActions) {
+    BrowserStateSnapshot snapshot = stateSnapshotCache.get(config.getUrl(), initialActions);
+    if (snapshot == null || (config.isCaptureScreenshots() && snapshot.getScreenshots() == null)) {
+      return null;
+    }
+    return snapshot;
+  }
+  
+  /**
+   * Restores the given snapshot in the current driver, which has loaded the
+   * start url, in place of running the given initial actions.
+   * 
+   * @return whether it worked. If not, we forget the snapshot, and the caller
+   *     should run the initial actions in a clean browser.
+   */
+  private boolean restoreStateSnapshot(ActionSequenceRunnerConfig config,
+      List<Action> initialActions, BrowserStateSnapshot snapshot) {
+    List<WaitCondition> initialWaitConditions = null;
+    if (config.getWaitConditionConfig() != null) {
+      initialWaitConditions = config.getWaitConditionConfig().getInitialWaitConditions();
+    }
+    try {
+      driver.restoreStateSnapshot(snapshot, initialWaitConditions);
+      // If the session has gone away, the app probably sent us somewhere else,
+      // e.g. back to the login page.
+      if (snapshot.getUrl().equals(driver.getDriver().getCurrentUrl())) {
+        return true;
+      }
+      LOGGER.info("Browser state snapshot of " + snapshot.getUrl()
+          + " is no longer valid, ended up at " + driver.getDriver().getCurrentUrl());
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, "Exception restoring browser state snapshot of "
+          + snapshot.getUrl(), e);
+    }
+    stateSnapshotCache.remove(config.getUrl(), initialActions, snapshot);
+    return false;
+  }
+  
+  /**
+   * @return whether the given action sequence is the live one plus one action.
+   */
+  private boolean isContinuation(ActionSequenceRunnerConfig config) {
+    if (liveActions == null || !config.getUrl().equals(liveUrl)) {
+      return false;
+    }
+    if (config.isCaptureScreenshots() && liveScreenshots == null) {
+      return false;
+    }
+    List<Action> actions = config.getActionSequence().getActions();
+    return actions.size() == liveActions.size() + 1 &&
+        actions.subList(0, liveActions.size()).equals(liveActions);
+  }
+  
+  /**
+   * Runs just the last action of the given action sequence in the live driver.
+   */
+  private ActionSequenceResult continueActionSequence(ActionSequenceRunnerConfig config) {
+    LOGGER.info("Continuing from live action sequence, at url: " + config.getUrl()
+        + " Run action sequence: " + config.getActionSequence().toString());
+    
+    if (config.getOracleConfig() != null) {
+      // Note that final oracles only see what happens from here on.
+      resetOracles(config.getOracleConfig().getFinalOracles());
+    }
+    
+    List<Screenshot> screenshots = null;
+    if (config.isCaptureScreenshots()) {
+      screenshots = Screenshot.retainAll(liveScreenshots);
+    }
+    
+    try {
+      Action action = config.getActionSequence().getLastAction();
+      liveActions = null;
+      runAction(config, action, screenshots);
+      liveActions = Lists.newArrayList(config.getActionSequence().getActions());
+      Screenshot.deleteAll(liveScreenshots);
+      liveScreenshots = Screenshot.retainAll(screenshots);
+      return createResult(config, screenshots);
+    } catch (RuntimeException e) {
+      Screenshot.deleteAll(screenshots);
+      throw e;
+    }
+  }
+  
+  /**
+   * Runs one action from the configured action sequence, checking the
+   * after-action oracles.
+   */
+  private void runAction(ActionSequenceRunnerConfig config, Action action,
+      List<Screenshot> screenshots) {
+    if (config.getOracleConfig() != null) {
+      resetOracles(config.getOracleConfig().getAfterActionOracles());
+    }
+
+    if (config.getBeforeActionCallback() != null) {
+      config.getBeforeActionCallback().onBeforeAction(action);
+    }
+    try {
+      performAction(driver, action, config.getWaitConditionConfig(), screenshots);
+    } catch (Exception e) {
+      String message = "Exception running action: " + action
+          + ", element outerHTML=" + action.getIdentifier().getOuterHtml();
+      LOGGER.log(Level.SEVERE, message, e);
+      throw new RuntimeException(message, e);
+    }
+    
+    if (config.getOracleConfig() != null) {
+      // Check for failures.
+      checkForFailures(config.getOracleConfig().getAfterActionOracles(), driver,
+          config.getActionSequence(), action);
+    }
+  }
+  
+  /**
+   * Checks the final oracles and packages up the result.
+   */
+  private ActionSequenceResult createResult(ActionSequenceRunnerConfig config,
+      List<Screenshot> screenshots) {
+    List<FailureReason> failures = null;
+    if (config.getOracleConfig() != null) {
+      // Check for failures.
+      failures = checkForFailures(config.getOracleConfig().getFinalOracles(), driver,
+          config.getActionSequence(), config.getActionSequence().getLastAction());
+    }
+    
+    return new ActionSequenceResult(failures, screenshots);
+  }
+
   /**
    * Sends the reset message to all of the given oracles.
    */
@@ -218,19 +528,32 @@ public class ActionSequenceRunner {
    * Cleans up nicely.
    */
   public void shutdown() throws Exception {
+    if (liveActions != null) {
+      closeDriver();
+    }
     if (proxy != null) {
-      proxy.stop();
+      if (proxyPool != null) {
+        proxyPool.release(proxy);
+      } else {
+        proxy.stop();
+      }
+    }
+    if (screenshotSpool != null) {
+      screenshotSpool.shutdown();
+    }
+    if (ownsDriverFactory) {
+      driverFactory.term();
     }
-    driverFactory.term();
   }
 
   /**
-   * Pushes the wait time values into the proxy.
+   * Pushes the wait timeout and the requests not to wait for into the proxy.
    */
-  private void updateProxyResponseWaitTimes(long waitIntervalMillis, long waitTimeoutMillis) {
+  private void updateProxyWaitSettings(long waitTimeoutMillis,
+      List<Pattern> ignoredRequestUrlPatterns) {
     if (proxy != null) {
-      proxy.setResponseWaitIntervalMillis(waitTimeoutMillis);
       proxy.setResponseWaitTimeoutMillis(waitTimeoutMillis);
+      proxy.getRequestTracker().setIgnoredUrlPatterns(ignoredRequestUrlPatterns);
     }
   }
   
@@ -268,7 +591,7 @@ public class ActionSequenceRunner {
   }
 
   private void performAction(WebDriverWrapper driver, Action action,
-      WaitConditionConfig waitConditionConfig, List<Byte[]> screenshots) {
+      WaitConditionConfig waitConditionConfig, List<Screenshot> screenshots) throws IOException {
     if (proxy != null) {
       // We should reset the proxy on each action (keeping in mind that we
       // don't really know which actions will actually trigger http
@@ -284,11 +607,7 @@ public class ActionSequenceRunner {
     
     if (screenshots != null) {
       byte[] screenshotBytes = ((TakesScreenshot) driver.getDriver()).getScreenshotAs(OutputType.BYTES);
-      Byte[] screenshotBytesWithAB = new Byte[screenshotBytes.length];
-      for(int i = 0; i < screenshotBytes.length; i++) {
-        screenshotBytesWithAB[i] = new Byte(screenshotBytes[i]);
-      }
-      screenshots.add(screenshotBytesWithAB);
+      screenshots.add(getScreenshotSpool().add(screenshotBytes));
     }
   }
 }
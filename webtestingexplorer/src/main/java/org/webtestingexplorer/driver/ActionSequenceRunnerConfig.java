@@ -68,6 +68,18 @@ public class ActionSequenceRunnerConfig {
    */
   private boolean captureScreenshots;
   
+  /**
+   * Whether to continue from the driver left open by the previous action
+   * sequence when this one just adds an action to it.
+   */
+  private boolean usePrefixContinuation;
+  
+  /**
+   * Whether to restore a {@link BrowserStateSnapshot} taken after the
+   * sequence's initial actions, rather than running them again.
+   */
+  private boolean useStateSnapshots;
+  
   /**
    * Constructor.
    */
@@ -116,4 +128,22 @@ public class ActionSequenceRunnerConfig {
   public boolean isCaptureScreenshots() {
     return captureScreenshots;
   }
-}
\ No newline at end of file
+
+  public boolean isUsePrefixContinuation() {
+    return usePrefixContinuation;
+  }
+
+  public ActionSequenceRunnerConfig setUsePrefixContinuation(boolean usePrefixContinuation) {
+    this.usePrefixContinuation = usePrefixContinuation;
+    return this;
+  }
+
+  public boolean isUseStateSnapshots() {
+    return useStateSnapshots;
+  }
+
+  public ActionSequenceRunnerConfig setUseStateSnapshots(boolean useStateSnapshots) {
+    this.useStateSnapshots = useStateSnapshots;
+    return this;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import org.openqa.selenium.Cookie;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parts of the browser state that a web app usually keeps a session in:
+ * the url, cookies, localStorage and sessionStorage. Captured with
+ * {@link WebDriverWrapper#captureStateSnapshot()} after the initial actions
+ * (e.g. logging in) have run, and put back into a fresh browser with
+ * {@link WebDriverWrapper#restoreStateSnapshot} so that we don't have to run
+ * them again.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class BrowserStateSnapshot {
+
+  private final String url;
+  private final Set<Cookie> cookies;
+  private final Map<String, String> localStorage;
+  private final Map<String, String> sessionStorage;
+  private final long createdMillis;
+
+  /**
+   * The screenshots taken while running the actions that got the browser
+   * into this state, or null if there weren't any or they have been deleted.
+   */
+  private List<Screenshot> screenshots;
+
+  public BrowserStateSnapshot(String url, Set<Cookie> cookies,
+      Map<String, String> localStorage, Map<String, String> sessionStorage) {
+    this.url = url;
+    this.cookies = Collections.unmodifiableSet(cookies);
+    this.localStorage = Collections.unmodifiableMap(localStorage);
+    this.sessionStorage = Collections.unmodifiableMap(sessionStorage);
+    this.createdMillis = System.currentTimeMillis();
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public Set<Cookie> getCookies() {
+    return cookies;
+  }
+
+  public Map<String, String> getLocalStorage() {
+    return localStorage;
+  }
+
+  public Map<String, String> getSessionStorage() {
+    return sessionStorage;
+  }
+
+  public long getCreatedMillis() {
+    return createdMillis;
+  }
+
+  public synchronized List<Screenshot> getScreenshots() {
+    return screenshots;
+  }
+
+  /**
+   * @param screenshots screenshots the snapshot now holds, which it deletes
+   *     in {@link #deleteScreenshots()}.
+   */
+  public synchronized void setScreenshots(List<Screenshot> screenshots) {
+    this.screenshots = screenshots;
+  }
+
+  /**
+   * @return our screenshots, retained for the caller to delete when done
+   *     with them, or null if there aren't any (anymore).
+   */
+  public synchronized List<Screenshot> retainScreenshots() {
+    if (screenshots == null) {
+      return null;
+    }
+    return Screenshot.retainAll(screenshots);
+  }
+
+  /**
+   * Lets go of our screenshots, e.g. because the snapshot has been evicted.
+   */
+  public synchronized void deleteScreenshots() {
+    Screenshot.deleteAll(screenshots);
+    screenshots = null;
+  }
+
+  /**
+   * @return whether the given url has the same scheme, host and port as ours,
+   *     i.e. whether a page loaded from it can see our storage.
+   */
+  public boolean isSameOrigin(String otherUrl) {
+    return getOrigin(url).equals(getOrigin(otherUrl));
+  }
+
+  private static String getOrigin(String url) {
+    try {
+      URI uri = new URI(url);
+      return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    } catch (Exception e) {
+      return url;
+    }
+  }
+}
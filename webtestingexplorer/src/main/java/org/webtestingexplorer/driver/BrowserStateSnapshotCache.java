@@ -0,0 +1,116 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import org.webtestingexplorer.actions.Action;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link BrowserStateSnapshot}s taken after running each list of initial
+ * actions from a start url. Snapshots expire after a while, since the
+ * sessions they hold on the server do too. Thread-safe, so runners in
+ * different workers can share one. Snapshots that are evicted or replaced
+ * delete their screenshots.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class BrowserStateSnapshotCache {
+
+  public static final long DEFAULT_MAX_AGE_MILLIS = 30 * 60 * 1000;
+
+  private static class Key {
+    private final String startUrl;
+    private final List<Action> initialActions;
+
+    public Key(String startUrl, List<Action> initialActions) {
+      this.startUrl = startUrl;
+      this.initialActions = ImmutableList.copyOf(initialActions);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return Objects.equal(startUrl, other.startUrl) &&
+          initialActions.equals(other.initialActions);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(startUrl, initialActions);
+    }
+  }
+
+  private final Map<Key, BrowserStateSnapshot> snapshots = Maps.newHashMap();
+  private final long maxAgeMillis;
+
+  public BrowserStateSnapshotCache() {
+    this(DEFAULT_MAX_AGE_MILLIS);
+  }
+
+  /**
+   * @param maxAgeMillis how long a snapshot is good for. This should be less
+   *     than the app's session timeout.
+   */
+  public BrowserStateSnapshotCache(long maxAgeMillis) {
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  /**
+   * @return the snapshot taken after running the given initial actions from
+   *     the given start url, or null if there isn't one or it has expired.
+   */
+  public synchronized BrowserStateSnapshot get(String startUrl, List<Action> initialActions) {
+    Key key = new Key(startUrl, initialActions);
+    BrowserStateSnapshot snapshot = snapshots.get(key);
+    if (snapshot != null &&
+        System.currentTimeMillis() - snapshot.getCreatedMillis() > maxAgeMillis) {
+      snapshots.remove(key);
+      snapshot.deleteScreenshots();
+      return null;
+    }
+    return snapshot;
+  }
+
+  public synchronized void put(String startUrl, List<Action> initialActions,
+      BrowserStateSnapshot snapshot) {
+    BrowserStateSnapshot oldSnapshot = snapshots.put(new Key(startUrl, initialActions), snapshot);
+    if (oldSnapshot != null && oldSnapshot != snapshot) {
+      oldSnapshot.deleteScreenshots();
+    }
+  }
+
+  /**
+   * Forgets the given snapshot, e.g. because restoring it didn't work. Does
+   * nothing if another snapshot has replaced it in the meantime.
+   */
+  public synchronized void remove(String startUrl, List<Action> initialActions,
+      BrowserStateSnapshot snapshot) {
+    Key key = new Key(startUrl, initialActions);
+    if (snapshots.get(key) == snapshot) {
+      snapshots.remove(key);
+      snapshot.deleteScreenshots();
+    }
+  }
+}
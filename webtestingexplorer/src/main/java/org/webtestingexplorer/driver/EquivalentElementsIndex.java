@@ -0,0 +1,113 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.openqa.selenium.WebElement;
+import org.webtestingexplorer.config.WebElementSelector;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The names of the equivalent element selectors that select each element in a
+ * state. Elements are keyed by the element WebDriver gave the selector, whose
+ * equality and hash code come from its WebDriver element id, so looking one
+ * up doesn't go to the browser. Get one from
+ * {@link WebDriverWrapper#getEquivalentElementsIndex}.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class EquivalentElementsIndex {
+
+  private final static Logger LOGGER = Logger.getLogger(EquivalentElementsIndex.class.getName());
+
+  private final String domVersion;
+  private final Map<String, WebElementSelector> selectors;
+  private final Map<WebElement, List<String>> selectorNamesByElement = Maps.newHashMap();
+
+  /**
+   * @param domVersion the version of the DOM the selected elements came from,
+   *     or null if we don't know it.
+   * @param selectors the equivalent element selectors by name.
+   * @param selectedElements the elements each selector selected, by name.
+   */
+  public EquivalentElementsIndex(String domVersion, Map<String, WebElementSelector> selectors,
+      Map<String, List<WebElement>> selectedElements) {
+    this.domVersion = domVersion;
+    this.selectors = selectors;
+    for (Map.Entry<String, List<WebElement>> entry : selectedElements.entrySet()) {
+      for (WebElement element : entry.getValue()) {
+        List<String> selectorNames = selectorNamesByElement.get(element);
+        if (selectorNames == null) {
+          selectorNames = Lists.newArrayList();
+          selectorNamesByElement.put(element, selectorNames);
+        }
+        selectorNames.add(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * @return whether this index is still good for the given selectors at the
+   *     given DOM version.
+   */
+  boolean isCurrent(String domVersion, Map<String, WebElementSelector> selectors) {
+    return this.domVersion != null && this.domVersion.equals(domVersion) &&
+        this.selectors.equals(selectors);
+  }
+
+  /**
+   * @return the names of the selectors that select the given element.
+   */
+  public List<String> getSelectorNames(WebElement element) {
+    if (element instanceof WebElementWrapper) {
+      element = ((WebElementWrapper) element).getWrappedElement();
+    }
+    List<String> selectorNames = selectorNamesByElement.get(element);
+    if (selectorNames == null) {
+      return Collections.emptyList();
+    }
+    return selectorNames;
+  }
+
+  /**
+   * Checks to see if a given element is equivalent to one we have already
+   * added actions for, and marks its selectors so that we won't add actions
+   * for any more elements equivalent to it.
+   *
+   * @param element the element to check.
+   * @param markedSelectorNames the selectors we have already added actions for
+   *     an element of.
+   * @return true if we should add actions for the element, false if we should
+   *     skip it.
+   */
+  public boolean shouldAddActions(WebElement element, Set<String> markedSelectorNames) {
+    boolean shouldAddActions = true;
+    for (String selectorName : getSelectorNames(element)) {
+      if (!markedSelectorNames.add(selectorName)) {
+        LOGGER.info("Filtering an element from equivalent selector: " + selectorName);
+        shouldAddActions = false;
+      }
+    }
+    return shouldAddActions;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import org.webtestingexplorer.driver.RequestCaptureStore.CapturedRequest;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the requests going through a {@link WebDriverProxy} that
+ * haven't had a response yet, so that we can wait for the network to go
+ * quiet instead of polling for it. Requests to urls matching one of the
+ * ignored patterns, e.g. long polls that never finish, aren't tracked. The
+ * {@link RequestCaptureStore} the requests are captured in tells us about
+ * them. Thread-safe, since the proxy captures from its own threads.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class InFlightRequestTracker {
+
+  private volatile List<Pattern> ignoredUrlPatterns = ImmutableList.of();
+  private final Set<CapturedRequest> inFlightRequests = Sets.newHashSet();
+  private long lastActivityMillis = System.currentTimeMillis();
+
+  /**
+   * Stops tracking requests to urls that fully match any of the given
+   * patterns, instead of the ones we were ignoring before.
+   */
+  public void setIgnoredUrlPatterns(List<Pattern> ignoredUrlPatterns) {
+    this.ignoredUrlPatterns = ImmutableList.copyOf(ignoredUrlPatterns);
+  }
+
+  /**
+   * Records that the given request went out.
+   *
+   * @return whether we are tracking it, i.e. not ignoring its url.
+   */
+  public boolean requestStarted(CapturedRequest request) {
+    String url = request.getUri().toString();
+    for (Pattern pattern : ignoredUrlPatterns) {
+      if (pattern.matcher(url).matches()) {
+        return false;
+      }
+    }
+    synchronized (this) {
+      inFlightRequests.add(request);
+      lastActivityMillis = System.currentTimeMillis();
+      notifyAll();
+      return true;
+    }
+  }
+
+  /**
+   * Records that the response for the given request came back. Does nothing
+   * for requests we aren't tracking or from before the last {@link #reset()}.
+   */
+  public synchronized void requestFinished(CapturedRequest request) {
+    if (inFlightRequests.remove(request)) {
+      lastActivityMillis = System.currentTimeMillis();
+      notifyAll();
+    }
+  }
+
+  /**
+   * Forgets about any requests still in flight, e.g. because the page that
+   * made them has gone away.
+   */
+  public synchronized void reset() {
+    inFlightRequests.clear();
+    lastActivityMillis = System.currentTimeMillis();
+    notifyAll();
+  }
+
+  public synchronized int getInFlightCount() {
+    return inFlightRequests.size();
+  }
+
+  /**
+   * @return how long it has been since a request went out or came back, or
+   *     -1 if there is one in flight.
+   */
+  public synchronized long getIdleMillis() {
+    if (!inFlightRequests.isEmpty()) {
+      return -1;
+    }
+    return System.currentTimeMillis() - lastActivityMillis;
+  }
+
+  /**
+   * Blocks until there have been no requests in flight for the given time.
+   *
+   * @return whether that happened before the timeout.
+   */
+  public synchronized boolean awaitIdle(long idleMillis, long timeoutMillis)
+      throws InterruptedException {
+    long endMillis = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      long nowMillis = System.currentTimeMillis();
+      long waitMillis = endMillis - nowMillis;
+      if (inFlightRequests.isEmpty()) {
+        long remainingIdleMillis = idleMillis - (nowMillis - lastActivityMillis);
+        if (remainingIdleMillis <= 0) {
+          return true;
+        }
+        waitMillis = Math.min(waitMillis, remainingIdleMillis);
+      }
+      if (endMillis - nowMillis <= 0) {
+        return false;
+      }
+      wait(waitMillis);
+    }
+  }
+}
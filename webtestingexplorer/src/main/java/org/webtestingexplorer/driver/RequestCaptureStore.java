@@ -0,0 +1,215 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.Lists;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The requests that went through a {@link WebDriverProxy} and their responses.
+ * The proxy's threads add to it concurrently, and each response is matched to
+ * its request by the request's id rather than by the order they come in.
+ * Resetting starts a new epoch instead of replacing anything, so a request
+ * from before the reset whose response comes in afterwards just doesn't show
+ * up. If there is an {@link InFlightRequestTracker}, the store tells it about
+ * each request and response too, so that they are only recorded here.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class RequestCaptureStore {
+
+  /**
+   * A request, and its response once it has come back.
+   */
+  public static class CapturedRequest {
+    private final long id;
+    private final Epoch epoch;
+    private final URI uri;
+    private final long requestBytes;
+    private final long startMillis;
+    private volatile Integer statusCode;
+    private volatile long responseBytes = -1;
+    private volatile long endMillis = -1;
+
+    CapturedRequest(long id, Epoch epoch, URI uri, long requestBytes) {
+      this.id = id;
+      this.epoch = epoch;
+      this.uri = uri;
+      this.requestBytes = requestBytes;
+      this.startMillis = System.currentTimeMillis();
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    public URI getUri() {
+      return uri;
+    }
+
+    /**
+     * @return the length of the request body, or -1 if it has none or we
+     *     don't know it.
+     */
+    public long getRequestBytes() {
+      return requestBytes;
+    }
+
+    public long getStartMillis() {
+      return startMillis;
+    }
+
+    /**
+     * @return the response's status code, or null if it hasn't come back.
+     */
+    public Integer getStatusCode() {
+      return statusCode;
+    }
+
+    /**
+     * @return the length of the response body, or -1 if we don't know it.
+     */
+    public long getResponseBytes() {
+      return responseBytes;
+    }
+
+    /**
+     * @return how long the response took, or -1 if it hasn't come back.
+     */
+    public long getDurationMillis() {
+      return (endMillis < 0) ? -1 : endMillis - startMillis;
+    }
+
+    public boolean hasResponse() {
+      return endMillis >= 0;
+    }
+  }
+
+  /**
+   * The time between resets, with its requests counted as they come in so
+   * that getting the counts doesn't mean going through them all.
+   */
+  private static class Epoch {
+    private final long number;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger responseCount = new AtomicInteger();
+
+    Epoch(long number) {
+      this.number = number;
+    }
+  }
+
+  private final InFlightRequestTracker requestTracker;
+  private final AtomicLong nextId = new AtomicLong();
+  private volatile Epoch epoch = new Epoch(0);
+
+  /**
+   * The captured requests by id, and so in the order they went out.
+   */
+  private final ConcurrentSkipListMap<Long, CapturedRequest> requests =
+      new ConcurrentSkipListMap<Long, CapturedRequest>();
+
+  public RequestCaptureStore() {
+    this(null);
+  }
+
+  /**
+   * @param requestTracker the tracker to tell about requests and responses,
+   *     or null.
+   */
+  public RequestCaptureStore(InFlightRequestTracker requestTracker) {
+    this.requestTracker = requestTracker;
+  }
+
+  /**
+   * Records a request that is going out.
+   *
+   * @return the captured request, to pass to {@link #responseReceived}.
+   */
+  public CapturedRequest requestStarted(URI uri, long requestBytes) {
+    Epoch currentEpoch = epoch;
+    CapturedRequest request = new CapturedRequest(nextId.getAndIncrement(), currentEpoch, uri,
+        requestBytes);
+    requests.put(request.id, request);
+    currentEpoch.requestCount.incrementAndGet();
+    if (requestTracker != null) {
+      requestTracker.requestStarted(request);
+    }
+    return request;
+  }
+
+  /**
+   * Records the response to the given request.
+   */
+  public void responseReceived(CapturedRequest request, int statusCode, long responseBytes) {
+    request.statusCode = statusCode;
+    request.responseBytes = responseBytes;
+    // Last, so that a request with an end time has the rest filled in.
+    request.endMillis = System.currentTimeMillis();
+    // Counts for the request's epoch, which may be over.
+    request.epoch.responseCount.incrementAndGet();
+    if (requestTracker != null) {
+      requestTracker.requestFinished(request);
+    }
+  }
+
+  /**
+   * Starts a new epoch, so that only requests from now on are reported and
+   * counted, and resets the tracker.
+   */
+  public synchronized void reset() {
+    Epoch oldEpoch = epoch;
+    epoch = new Epoch(oldEpoch.number + 1);
+    // The old requests can't be reported any more, so let them go.
+    Iterator<CapturedRequest> iterator = requests.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().epoch.number <= oldEpoch.number) {
+        iterator.remove();
+      }
+    }
+    if (requestTracker != null) {
+      requestTracker.reset();
+    }
+  }
+
+  /**
+   * @return the requests since the last reset, in the order they went out.
+   */
+  public List<CapturedRequest> getRequests() {
+    Epoch currentEpoch = epoch;
+    List<CapturedRequest> currentRequests = Lists.newArrayList();
+    for (CapturedRequest request : requests.values()) {
+      if (request.epoch == currentEpoch) {
+        currentRequests.add(request);
+      }
+    }
+    return currentRequests;
+  }
+
+  public int getRequestCount() {
+    return epoch.requestCount.get();
+  }
+
+  public int getResponseCount() {
+    return epoch.responseCount.get();
+  }
+}
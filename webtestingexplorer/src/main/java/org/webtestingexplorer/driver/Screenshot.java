@@ -0,0 +1,168 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A PNG screenshot taken after an action. It starts out in memory and is
+ * moved to a temporary file by a {@link ScreenshotSpool} in the background,
+ * so that long action sequences don't keep all their screenshots on the
+ * heap. The same screenshot can be in several results and state snapshots
+ * at once, so each of them retains it and deletes it when done with it, and
+ * the file goes away when the last one does.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class Screenshot {
+
+  private final static Logger LOGGER = Logger.getLogger(Screenshot.class.getName());
+
+  /**
+   * The PNG, until it is in the file.
+   */
+  private byte[] bytes;
+  private File file;
+
+  /**
+   * How many results and snapshots are holding the screenshot.
+   */
+  private int holdCount = 1;
+
+  Screenshot(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Retains each of the given screenshots, which may be null.
+   *
+   * @return a new list of them, for the caller to delete when done with it.
+   */
+  public static List<Screenshot> retainAll(List<Screenshot> screenshots) {
+    if (screenshots == null) {
+      return null;
+    }
+    for (Screenshot screenshot : screenshots) {
+      screenshot.retain();
+    }
+    return Lists.newArrayList(screenshots);
+  }
+
+  /**
+   * Deletes each of the given screenshots, which may be null.
+   */
+  public static void deleteAll(List<Screenshot> screenshots) {
+    if (screenshots == null) {
+      return;
+    }
+    for (Screenshot screenshot : screenshots) {
+      screenshot.delete();
+    }
+  }
+
+  /**
+   * Holds on to the screenshot for one more result or snapshot, which must
+   * {@link #delete()} it when done with it.
+   */
+  public synchronized void retain() {
+    if (isDeleted()) {
+      throw new IllegalStateException("Screenshot has already been deleted");
+    }
+    ++holdCount;
+  }
+
+  /**
+   * Lets go of the screenshot. Once everybody holding it has, its file is
+   * deleted and it can't be read anymore.
+   */
+  public synchronized void delete() {
+    if (isDeleted() || --holdCount > 0) {
+      return;
+    }
+    bytes = null;
+    if (file != null && !file.delete()) {
+      LOGGER.warning("Failed to delete screenshot " + file.getAbsolutePath());
+    }
+    file = null;
+  }
+
+  private boolean isDeleted() {
+    return holdCount == 0;
+  }
+
+  /**
+   * Moves the PNG from memory to the given file. If that fails, it stays
+   * in memory.
+   */
+  synchronized void spill(File file) {
+    if (isDeleted()) {
+      // Nobody wants it anymore.
+      return;
+    }
+    try {
+      FileUtils.writeByteArrayToFile(file, bytes);
+      this.file = file;
+      bytes = null;
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Failed to write screenshot to " + file.getAbsolutePath(), e);
+      file.delete();
+    }
+  }
+
+  /**
+   * @return whether the PNG is in a file rather than in memory.
+   */
+  public synchronized boolean isSpilled() {
+    return file != null;
+  }
+
+  /**
+   * @return the PNG, which may be read back from its file. Don't modify it.
+   */
+  public synchronized byte[] getBytes() throws IOException {
+    checkNotDeleted();
+    if (bytes != null) {
+      return bytes;
+    }
+    return FileUtils.readFileToByteArray(file);
+  }
+
+  /**
+   * Writes the PNG to the given file.
+   */
+  public synchronized void writeTo(File destination) throws IOException {
+    checkNotDeleted();
+    if (bytes != null) {
+      FileUtils.writeByteArrayToFile(destination, bytes);
+    } else {
+      FileUtils.copyFile(file, destination);
+    }
+  }
+
+  private void checkNotDeleted() throws IOException {
+    if (isDeleted()) {
+      throw new IOException("Screenshot has been deleted");
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves {@link Screenshot}s to temporary files on a background thread, so
+ * that taking one doesn't hold up the next action. If the writes fall
+ * behind, whoever is taking screenshots writes the next one themselves
+ * rather than letting them pile up in memory. Each file is deleted when its
+ * {@link Screenshot} is.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ScreenshotSpool {
+
+  /**
+   * How many screenshots can be waiting to be written.
+   */
+  private static final int MAX_PENDING_WRITES = 16;
+
+  private final File directory;
+  private final AtomicLong nextFileNumber = new AtomicLong();
+  private final ThreadPoolExecutor executor;
+
+  public ScreenshotSpool() throws IOException {
+    directory = File.createTempFile("screenshots", "");
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("Failed to create screenshot directory: "
+          + directory.getAbsolutePath());
+    }
+    // Empty by then, as long as every screenshot was deleted.
+    directory.deleteOnExit();
+    executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_PENDING_WRITES),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "screenshot-spool");
+            thread.setDaemon(true);
+            return thread;
+          }
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Takes the given PNG, which the caller must not modify afterwards, and
+   * starts writing it to a file.
+   */
+  public Screenshot add(byte[] png) {
+    final Screenshot screenshot = new Screenshot(png);
+    final File file = new File(directory, nextFileNumber.getAndIncrement() + ".png");
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        screenshot.spill(file);
+      }
+    });
+    return screenshot;
+  }
+
+  /**
+   * Finishes the writes that are waiting, in the background, and stops.
+   * Screenshots added afterwards stay in memory.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,299 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.WildcardFileFilter;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cleans up the temporary profile directories that WebDriver leaves behind,
+ * working around http://code.google.com/p/selenium/issues/detail?id=1934.
+ * WebDriver makes its temporary directories in one of our own, so we can
+ * tell which are ours without listing everything in the system temporary
+ * directory. When a browser quits, its directories are deleted on a
+ * background thread. If browsers were started at the same time, we can't
+ * tell whose directories are whose, so we delete them all once every one of
+ * those browsers has quit. At startup and shutdown we also sweep the
+ * system temporary directory for profile directories that other runs left
+ * behind, once they are old enough that nobody can be using them.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class TempProfileJanitor {
+
+  private final static Logger LOGGER = Logger.getLogger(TempProfileJanitor.class.getName());
+
+  private static final String PROFILE_DIRECTORY_PREFIX = "webtestingexplorer-profiles-";
+
+  /**
+   * What profile directories look like, including our own directories from
+   * other runs and the ones that WebDriver and the proxy put straight in the
+   * system temporary directory.
+   */
+  private static final List<String> PROFILE_DIRECTORY_PATTERNS = Lists.newArrayList(
+      PROFILE_DIRECTORY_PREFIX + "*", "anonymous*webdriver-profile", "userprofile*copy",
+      "seleniumSslSupport*");
+
+  /**
+   * How old a profile directory that isn't ours must be before we sweep it up.
+   */
+  private static final long STALE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+  /**
+   * How many deletions can be waiting. Any more are left for the shutdown
+   * sweep rather than holding up whoever quit the browser.
+   */
+  private static final int MAX_PENDING_DELETIONS = 100;
+
+  private static TempProfileJanitor INSTANCE;
+
+  /**
+   * Gets the janitor, starting it the first time: pointing WebDriver at our
+   * profile directory, sweeping in the background, and sweeping again at
+   * shutdown.
+   */
+  public static synchronized TempProfileJanitor getInstance() {
+    if (INSTANCE == null) {
+      final TempProfileJanitor janitor =
+          new TempProfileJanitor(new File(System.getProperty("java.io.tmpdir")));
+      TemporaryFilesystem.setTemporaryDirectory(janitor.getProfileDirectory());
+      janitor.submit(new Runnable() {
+        @Override
+        public void run() {
+          janitor.sweep();
+        }
+      });
+      Runtime.getRuntime().addShutdownHook(new Thread("temp-profile-janitor-shutdown") {
+        @Override
+        public void run() {
+          janitor.shutdown();
+        }
+      });
+      INSTANCE = janitor;
+    }
+    return INSTANCE;
+  }
+
+  /**
+   * Browsers whose starts overlapped, so that we can only tell which profile
+   * directories they made between them.
+   */
+  private static class StartGroup {
+    /**
+     * The profile directories that were there before the first start.
+     */
+    private final Set<File> dirsBefore;
+    private int startsInProgress;
+    private final Set<WebDriver> drivers = Sets.newHashSet();
+
+    /**
+     * The profile directories the browsers made, once they have all started.
+     */
+    private Set<File> dirs;
+
+    StartGroup(Set<File> dirsBefore) {
+      this.dirsBefore = dirsBefore;
+    }
+  }
+
+  private final File tmpDir;
+  private final File profileDir;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * The group that new starts join, while any browser is starting.
+   */
+  private StartGroup startingGroup;
+  private final Map<WebDriver, StartGroup> driverGroups = Maps.newHashMap();
+
+  TempProfileJanitor(File tmpDir) {
+    this.tmpDir = tmpDir;
+    this.profileDir = new File(tmpDir, PROFILE_DIRECTORY_PREFIX + UUID.randomUUID());
+    if (!profileDir.mkdirs()) {
+      LOGGER.warning("Failed to create profile directory: " + profileDir.getAbsolutePath());
+    }
+    executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_PENDING_DELETIONS),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "temp-profile-janitor");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * @return the directory that WebDriver makes its temporary directories in.
+   */
+  public File getProfileDirectory() {
+    return profileDir;
+  }
+
+  /**
+   * Creates a browser with the given factory, keeping track of the profile
+   * directories it makes so that we can delete them when it quits.
+   */
+  public WebDriver createWebDriver(WebDriverFactory driverFactory, WebDriverProxy proxy)
+      throws Exception {
+    StartGroup group;
+    synchronized (this) {
+      if (startingGroup == null) {
+        startingGroup = new StartGroup(listProfileDirectory());
+      }
+      group = startingGroup;
+      ++group.startsInProgress;
+    }
+    WebDriver driver = null;
+    try {
+      driver = driverFactory.createWebDriver(proxy);
+      return driver;
+    } finally {
+      synchronized (this) {
+        if (driver != null) {
+          group.drivers.add(driver);
+          driverGroups.put(driver, group);
+        }
+        if (--group.startsInProgress == 0) {
+          // Nobody else is starting, so everything new is the group's.
+          startingGroup = null;
+          group.dirs = listProfileDirectory();
+          group.dirs.removeAll(group.dirsBefore);
+          deleteIfAllQuit(group);
+        }
+      }
+    }
+  }
+
+  /**
+   * Quits the given browser and notes that it has quit, even if quitting
+   * throws, e.g. because the browser has crashed.
+   */
+  public void quit(WebDriver driver) {
+    try {
+      for (String windowHandle : driver.getWindowHandles()) {
+        driver.switchTo().window(windowHandle);
+        driver.quit();
+      }
+    } finally {
+      browserQuit(driver);
+    }
+  }
+
+  /**
+   * Notes that a browser has quit, and deletes the profile directories of
+   * its group in the background if it was the last one running.
+   */
+  public synchronized void browserQuit(WebDriver driver) {
+    StartGroup group = driverGroups.remove(driver);
+    if (group != null) {
+      group.drivers.remove(driver);
+      deleteIfAllQuit(group);
+    }
+  }
+
+  private void deleteIfAllQuit(StartGroup group) {
+    if (group.dirs == null || !group.drivers.isEmpty() || group.dirs.isEmpty()) {
+      return;
+    }
+    final Set<File> dirs = group.dirs;
+    group.dirs = Sets.newHashSet();
+    submit(new Runnable() {
+      @Override
+      public void run() {
+        for (File dir : dirs) {
+          deleteDirectory(dir);
+        }
+      }
+    });
+  }
+
+  /**
+   * Deletes the profile directories that other runs left behind.
+   */
+  void sweep() {
+    FilenameFilter profileDirsFilter = new WildcardFileFilter(PROFILE_DIRECTORY_PATTERNS);
+    File[] files = tmpDir.listFiles(profileDirsFilter);
+    if (files == null) {
+      return;
+    }
+    long staleBeforeMillis = System.currentTimeMillis() - STALE_MILLIS;
+    for (File dir : files) {
+      if (dir.isDirectory() && !dir.equals(profileDir) && dir.lastModified() < staleBeforeMillis) {
+        deleteDirectory(dir);
+      }
+    }
+  }
+
+  /**
+   * Stops deleting in the background, and deletes our profile directory and
+   * anything else that needs sweeping.
+   */
+  void shutdown() {
+    executor.shutdownNow();
+    deleteDirectory(profileDir);
+    sweep();
+  }
+
+  private void submit(Runnable task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      LOGGER.info("Leaving temp profile cleanup for shutdown");
+    }
+  }
+
+  private Set<File> listProfileDirectory() {
+    File[] files = profileDir.listFiles();
+    if (files == null) {
+      return Sets.newHashSet();
+    }
+    return Sets.newHashSet(Arrays.asList(files));
+  }
+
+  private static void deleteDirectory(File dir) {
+    LOGGER.info("Cleaning up tmp profile directory: " + dir.getAbsolutePath());
+    try {
+      FileUtils.deleteDirectory(dir);
+    } catch (IOException e) {
+      // The directory was probably cleaned up correctly by the library in this case.
+      LOGGER.log(Level.WARNING, "Failed to delete tmp profile directory: " + dir.getAbsolutePath());
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warm browsers from a {@link WebDriverFactory}, so that we don't have to wait
+ * for a new one to start up for every action sequence. A browser that is
+ * released is reset by clearing the cookies and web storage of the page it is
+ * on and going to about:blank, and is then kept for the next caller using the
+ * same proxy. It is quit instead after the maximum number of uses, or if it
+ * can't be reset. Note that the reset only clears the cookies of the page the
+ * browser ends up on.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebDriverPool {
+
+  private final static Logger LOGGER = Logger.getLogger(WebDriverPool.class.getName());
+
+  private static final String CLEAR_STORAGE_SCRIPT =
+      "try { window.localStorage.clear(); } catch (e) {}"
+      + " try { window.sessionStorage.clear(); } catch (e) {}";
+
+  private final WebDriverFactory driverFactory;
+  private final int maxUses;
+
+  /**
+   * The idle browsers, by the proxy they were created with (which may be
+   * null), since a browser can't be moved to another proxy.
+   */
+  private final Map<WebDriverProxy, List<WebDriver>> idleDrivers = Maps.newHashMap();
+
+  /**
+   * How many times each browser we have handed out has been used.
+   */
+  private final Map<WebDriver, Integer> useCounts = Maps.newHashMap();
+
+  private boolean isShutdown;
+
+  /**
+   * @param maxUses how many action sequences a browser is used for before we
+   *     quit it. 1 means a new browser every time.
+   */
+  public WebDriverPool(WebDriverFactory driverFactory, int maxUses) {
+    this.driverFactory = driverFactory;
+    this.maxUses = maxUses;
+  }
+
+  /**
+   * Gets an idle browser that uses the given proxy, or starts a new one.
+   */
+  public WebDriver acquire(WebDriverProxy proxy) throws Exception {
+    synchronized (this) {
+      List<WebDriver> drivers = idleDrivers.get(proxy);
+      if (drivers != null && !drivers.isEmpty()) {
+        return drivers.remove(drivers.size() - 1);
+      }
+    }
+    WebDriver driver = TempProfileJanitor.getInstance().createWebDriver(driverFactory, proxy);
+    synchronized (this) {
+      useCounts.put(driver, 0);
+    }
+    return driver;
+  }
+
+  /**
+   * Gives back a browser that was used without errors, for the next caller
+   * using the same proxy.
+   *
+   * @return whether the browser was kept. If not, the caller should quit it.
+   */
+  public boolean release(WebDriver driver, WebDriverProxy proxy) {
+    int uses;
+    synchronized (this) {
+      Integer useCount = useCounts.get(driver);
+      if (useCount == null) {
+        return false;
+      }
+      uses = useCount + 1;
+      if (isShutdown || uses >= maxUses) {
+        useCounts.remove(driver);
+        return false;
+      }
+      useCounts.put(driver, uses);
+    }
+    if (!reset(driver)) {
+      discard(driver);
+      return false;
+    }
+    synchronized (this) {
+      if (isShutdown) {
+        useCounts.remove(driver);
+        return false;
+      }
+      List<WebDriver> drivers = idleDrivers.get(proxy);
+      if (drivers == null) {
+        drivers = Lists.newArrayList();
+        idleDrivers.put(proxy, drivers);
+      }
+      drivers.add(driver);
+    }
+    return true;
+  }
+
+  /**
+   * Forgets about a browser, e.g. because something went wrong with it. The
+   * caller should quit it.
+   */
+  public synchronized void discard(WebDriver driver) {
+    useCounts.remove(driver);
+  }
+
+  /**
+   * @return whether the browser is fit for the next caller.
+   */
+  private boolean reset(WebDriver driver) {
+    try {
+      if (driver.getWindowHandles().size() != 1) {
+        // Popups we would have to close and track down.
+        return false;
+      }
+      driver.switchTo().defaultContent();
+      driver.manage().deleteAllCookies();
+      ((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE_SCRIPT);
+      driver.get("about:blank");
+      return true;
+    } catch (WebDriverException e) {
+      LOGGER.log(Level.WARNING, "Failed to reset browser, not reusing it", e);
+      return false;
+    }
+  }
+
+  /**
+   * Quits the idle browsers, and stops keeping the ones released from now on.
+   */
+  public void shutdown() {
+    List<WebDriver> driversToQuit = Lists.newArrayList();
+    synchronized (this) {
+      isShutdown = true;
+      for (List<WebDriver> drivers : idleDrivers.values()) {
+        driversToQuit.addAll(drivers);
+        for (WebDriver driver : drivers) {
+          useCounts.remove(driver);
+        }
+      }
+      idleDrivers.clear();
+    }
+    for (WebDriver driver : driversToQuit) {
+      try {
+        driver.quit();
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Failed to quit idle browser", e);
+      }
+      TempProfileJanitor.getInstance().browserQuit(driver);
+    }
+  }
+}
@@ -15,6 +15,7 @@ limitations under the License.
 */
 package org.webtestingexplorer.driver;
 
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
@@ -25,13 +26,14 @@ import org.apache.http.impl.client.RequestWrapper;
 import org.apache.http.protocol.HttpContext;
 import org.browsermob.proxy.ProxyServer;
 import org.openqa.selenium.Proxy;
+import org.webtestingexplorer.driver.RequestCaptureStore.CapturedRequest;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,24 +48,48 @@ public class WebDriverProxy {
   private final static Logger LOGGER = Logger.getLogger(WebDriverProxy.class.getName());
 
   /**
-   * The amount of time we wait between checks that each request has a matching
-   * response.
+   * The port the proxy listens on unless told otherwise.
    */
-  private long responseWaitIntervalMillis = 1000;
+  public static final int DEFAULT_PORT = 4444;
+
+  /**
+   * The attribute of the http context that the captured request goes in, for
+   * the response interceptor.
+   */
+  private static final String CAPTURED_REQUEST_ATTRIBUTE = "webtestingexplorer.capturedRequest";
 
   /**
    * The amount of time we wait in total for all responses to come back.
    */
   private long responseWaitTimeoutMillis = 30000;
   
+  /**
+   * Gets told about each request and response that goes through the proxy, on
+   * the proxy's threads.
+   */
+  public interface TrafficListener {
+    void onTraffic();
+  }
+  
   private Proxy proxy;
-  private List<URI> requestURIs = new ArrayList<URI>();
-  private List<Integer> statusCodes = new ArrayList<Integer>();
-
   private ProxyServer proxyServer;
   
+  private final InFlightRequestTracker requestTracker = new InFlightRequestTracker();
+  private final RequestCaptureStore captureStore = new RequestCaptureStore(requestTracker);
+  
+  private final List<TrafficListener> trafficListeners =
+      new CopyOnWriteArrayList<TrafficListener>();
+  
   public WebDriverProxy() throws Exception {
-    proxyServer = new ProxyServer(4444);
+    this(DEFAULT_PORT);
+  }
+
+  /**
+   * Starts a proxy listening on the given port. Each concurrently-running
+   * browser needs a proxy on its own port.
+   */
+  public WebDriverProxy(int port) throws Exception {
+    proxyServer = new ProxyServer(port);
     proxyServer.start();
 
     proxyServer.addRequestInterceptor(new HttpRequestInterceptor() {
@@ -72,12 +98,22 @@ public class WebDriverProxy {
       public void process(HttpRequest request, HttpContext context)
           throws HttpException, IOException {
         RequestWrapper wrapper = (RequestWrapper) request;
+        URI uri;
         if (wrapper.getOriginal() instanceof HttpGet) {
           HttpGet getRequest = (HttpGet) wrapper.getOriginal();
-          requestURIs.add(getRequest.getURI());
+          uri = getRequest.getURI();
         } else {
-          requestURIs.add(wrapper.getURI());
+          uri = wrapper.getURI();
+        }
+        long requestBytes = -1;
+        if (request instanceof HttpEntityEnclosingRequest &&
+            ((HttpEntityEnclosingRequest) request).getEntity() != null) {
+          requestBytes = ((HttpEntityEnclosingRequest) request).getEntity().getContentLength();
         }
+        // The response interceptor gets the same context.
+        context.setAttribute(CAPTURED_REQUEST_ATTRIBUTE,
+            captureStore.requestStarted(uri, requestBytes));
+        notifyTrafficListeners();
       }
     });
     
@@ -86,7 +122,15 @@ public class WebDriverProxy {
       @Override
       public void process(HttpResponse response, HttpContext context)
           throws HttpException, IOException {
-        statusCodes.add(response.getStatusLine().getStatusCode());
+        CapturedRequest capturedRequest =
+            (CapturedRequest) context.getAttribute(CAPTURED_REQUEST_ATTRIBUTE);
+        if (capturedRequest != null) {
+          long responseBytes = (response.getEntity() == null) ?
+              -1 : response.getEntity().getContentLength();
+          captureStore.responseReceived(capturedRequest,
+              response.getStatusLine().getStatusCode(), responseBytes);
+        }
+        notifyTrafficListeners();
       }
     });
     
@@ -94,6 +138,20 @@ public class WebDriverProxy {
     proxy = proxyServer.seleniumProxy();
   }
 
+  public void addTrafficListener(TrafficListener listener) {
+    trafficListeners.add(listener);
+  }
+  
+  public void removeTrafficListener(TrafficListener listener) {
+    trafficListeners.remove(listener);
+  }
+  
+  private void notifyTrafficListeners() {
+    for (TrafficListener listener : trafficListeners) {
+      listener.onTraffic();
+    }
+  }
+
   /**
    * Shuts down the proxy we started, thereby freeing up the port.
    */
@@ -105,8 +163,8 @@ public class WebDriverProxy {
     }
   }
 
-  public void setResponseWaitIntervalMillis(long responseWaitIntervalMillis) {
-    this.responseWaitIntervalMillis = responseWaitIntervalMillis;
+  public int getPort() {
+    return proxyServer.getPort();
   }
 
   public void setResponseWaitTimeoutMillis(long responseWaitTimeoutMillis) {
@@ -121,40 +179,44 @@ public class WebDriverProxy {
   }
   
   public int getRequestCount() {
-    return requestURIs.size();
+    return captureStore.getRequestCount();
   }
   
   public int getResponseCount() {
-    return statusCodes.size();
+    return captureStore.getResponseCount();
   }
   
   public void resetForRequest() {
-    requestURIs = new ArrayList<URI>();
-    statusCodes = new ArrayList<Integer>();
+    captureStore.reset();
+  }
+
+  /**
+   * Gets the requests since the last reset, with their responses, timing and
+   * sizes.
+   */
+  public RequestCaptureStore getCaptureStore() {
+    return captureStore;
+  }
+
+  /**
+   * Gets the tracker of the requests that haven't had a response yet, e.g.
+   * to ignore long polls or to wait for the network to go quiet.
+   */
+  public InFlightRequestTracker getRequestTracker() {
+    return requestTracker;
   }
 
   public Map<URI, Integer> getLastRequestStatusMap() {
     Map<URI, Integer> statusMap = new HashMap<URI, Integer>();
     // If something isn't back yet, wait a short time for it.
-    long startMillis = System.currentTimeMillis();
-    while (requestURIs.size() != statusCodes.size()) {
-      try {
-        LOGGER.log(Level.INFO, "Waiting for all requests to return");
-        Thread.sleep(responseWaitIntervalMillis);
-      } catch (InterruptedException useless) { }
-      
-      if (System.currentTimeMillis() - startMillis > responseWaitTimeoutMillis) {
+    try {
+      if (!requestTracker.awaitIdle(0, responseWaitTimeoutMillis)) {
         LOGGER.log(Level.WARNING, "Timeout waiting for responses");
-        break;
       }
-    }
+    } catch (InterruptedException useless) { }
     
-    for (int i = 0; i < requestURIs.size(); i++) {
-      Integer statusCode = null;
-      if (i < statusCodes.size()) {
-        statusCode = statusCodes.get(i);
-      }
-      statusMap.put(requestURIs.get(i), statusCode);
+    for (CapturedRequest request : captureStore.getRequests()) {
+      statusMap.put(request.getUri(), request.getStatusCode());
     }
     return statusMap;
   }
@@ -0,0 +1,162 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link WebDriverProxy}s for runners to use one each, on whatever ports are
+ * free so that several explorers can run on one machine. A proxy that is
+ * released is kept running for the next runner that needs one, since
+ * starting one takes a while.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebDriverProxyPool {
+
+  private final static Logger LOGGER = Logger.getLogger(WebDriverProxyPool.class.getName());
+
+  /**
+   * How many times we try to start a proxy, since somebody else may take the
+   * free port we found before we get to it.
+   */
+  private static final int MAX_START_ATTEMPTS = 5;
+
+  private final List<WebDriverProxy> idleProxies = Lists.newArrayList();
+  private boolean isShutdown;
+
+  /**
+   * Starts a proxy on a free port.
+   */
+  public static WebDriverProxy startProxy() throws Exception {
+    Exception lastException = null;
+    for (int attempt = 0; attempt < MAX_START_ATTEMPTS; ++attempt) {
+      int port = findFreePort();
+      try {
+        return new WebDriverProxy(port);
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Failed to start a proxy on port " + port, e);
+        lastException = e;
+      }
+    }
+    throw lastException;
+  }
+
+  private static int findFreePort() throws IOException {
+    ServerSocket socket = new ServerSocket(0);
+    try {
+      return socket.getLocalPort();
+    } finally {
+      socket.close();
+    }
+  }
+
+  public WebDriverProxy acquire() throws Exception {
+    return acquire(1).get(0);
+  }
+
+  /**
+   * Gets the given number of proxies, reusing idle ones first and starting
+   * the rest in parallel.
+   */
+  public List<WebDriverProxy> acquire(int count) throws Exception {
+    final List<WebDriverProxy> proxies = Lists.newArrayList();
+    synchronized (this) {
+      if (isShutdown) {
+        throw new IllegalStateException("Proxy pool has been shut down");
+      }
+      while (proxies.size() < count && !idleProxies.isEmpty()) {
+        proxies.add(idleProxies.remove(idleProxies.size() - 1));
+      }
+    }
+    int numToStart = count - proxies.size();
+    if (numToStart == 0) {
+      return proxies;
+    }
+
+    LOGGER.info("Starting " + numToStart + " proxies");
+    ExecutorService executor = Executors.newFixedThreadPool(numToStart);
+    try {
+      List<Future<WebDriverProxy>> futures = Lists.newArrayList();
+      for (int i = 0; i < numToStart; ++i) {
+        futures.add(executor.submit(new Callable<WebDriverProxy>() {
+          @Override
+          public WebDriverProxy call() throws Exception {
+            return startProxy();
+          }
+        }));
+      }
+      Exception failure = null;
+      for (Future<WebDriverProxy> future : futures) {
+        try {
+          proxies.add(future.get());
+        } catch (ExecutionException e) {
+          failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+      }
+      if (failure != null) {
+        for (WebDriverProxy proxy : proxies) {
+          release(proxy);
+        }
+        throw failure;
+      }
+      return proxies;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Gives back a proxy for somebody else to use. If the pool has been shut
+   * down, stops it instead.
+   */
+  public void release(WebDriverProxy proxy) {
+    proxy.resetForRequest();
+    synchronized (this) {
+      if (!isShutdown) {
+        idleProxies.add(proxy);
+        return;
+      }
+    }
+    proxy.stop();
+  }
+
+  /**
+   * Stops the idle proxies, and any that are released from now on.
+   */
+  public void shutdown() {
+    List<WebDriverProxy> proxiesToStop;
+    synchronized (this) {
+      isShutdown = true;
+      proxiesToStop = Lists.newArrayList(idleProxies);
+      idleProxies.clear();
+    }
+    for (WebDriverProxy proxy : proxiesToStop) {
+      proxy.stop();
+    }
+  }
+}
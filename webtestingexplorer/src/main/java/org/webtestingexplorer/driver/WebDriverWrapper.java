@@ -15,22 +15,19 @@ limitations under the License.
 */
 package org.webtestingexplorer.driver;
 
-import java.io.File;
-import java.io.FilenameFilter;
-import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
-import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.webtestingexplorer.config.WebElementSelector;
 import org.webtestingexplorer.config.WebElementSelectorRegistry;
@@ -38,11 +35,14 @@ import org.webtestingexplorer.identifiers.IndexWebElementIdentifier.IndexBasis;
 import org.webtestingexplorer.identifiers.WebElementIdentifier;
 import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
 import org.webtestingexplorer.javascript.JavaScriptUtil;
+import org.webtestingexplorer.wait.EventWaitCondition;
 import org.webtestingexplorer.wait.WaitCondition;
+import org.webtestingexplorer.wait.WaitSignal;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * Custom wrapper for WebDriver that adds functionality that we find
@@ -54,20 +54,84 @@ public class WebDriverWrapper {
 	
   private final static Logger LOGGER = Logger.getLogger(WebDriverWrapper.class.getName());
 
+  private static final String GET_STORAGE_SCRIPT =
+      "var storage = window[arguments[0]]; var keys = []; var values = [];"
+      + " for (var i = 0; i < storage.length; ++i) {"
+      + " keys.push(storage.key(i)); values.push(storage.getItem(storage.key(i))); }"
+      + " return [keys, values];";
+
+  private static final String SET_STORAGE_SCRIPT =
+      "var storage = window[arguments[0]]; storage.clear();"
+      + " for (var i = 0; i < arguments[1].length; ++i) {"
+      + " storage.setItem(arguments[1][i], arguments[2][i]); }";
+
+  private static final String GET_ELEMENT_SNAPSHOTS_SCRIPT =
+      JavaScriptUtil.getJavaScriptFromFile("/isInterestingTag.js")
+      + JavaScriptUtil.getJavaScriptFromFile("/getElementSnapshots.js");
+
+  private static final String FIND_ELEMENT_BY_INDEX_SCRIPT =
+      JavaScriptUtil.getJavaScriptFromFile("/isInterestingTag.js")
+      + JavaScriptUtil.getJavaScriptFromFile("/findElementByIndex.js");
+
+  private static final String GET_DOM_VERSION_SCRIPT =
+      JavaScriptUtil.getJavaScriptFromFile("/getDomVersion.js");
+
   private WebDriver driver;
   private WebDriverProxy proxy;
+  
+  /**
+   * Where the browser came from, if it is pooled, and so where it goes back
+   * to on close.
+   */
+  private WebDriverPool driverPool;
+  private boolean isClosed;
+  
   private long waitIntervalMillis;
   private long waitTimeoutMillis;  
   private boolean useElementsCache;
   private WebElementIdGenerator idGenerator;
   
   /**
-   * A cache of the results of getAllElements(ForFrame).
+   * The elements found in one frame by one selector, as of a DOM version.
+   */
+  private static class FrameElements {
+    private final String domVersion;
+    private final List<WebElementWithIdentifier> elements;
+    private final List<String> childFrameIdentifiers;
+    private final WebElementIndex index;
+    
+    public FrameElements(String domVersion, List<WebElementWithIdentifier> elements,
+        List<String> childFrameIdentifiers) {
+      this.domVersion = domVersion;
+      this.elements = elements;
+      this.childFrameIdentifiers = childFrameIdentifiers;
+      this.index = new WebElementIndex(elements);
+    }
+  }
+  
+  /**
+   * Cached elements by selector and then frame identifier (null for the
+   * default content). An entry is good until a MutationObserver that
+   * getDomVersion.js puts in the frame's page sees the DOM change, or the
+   * page goes away.
+   */
+  private final Map<WebElementSelector, Map<String, FrameElements>> elementsCache =
+      Maps.newHashMap();
+  
+  /**
+   * The DOM version that we last found elements at, by frame identifier.
    */
-  private List<WebElementWithIdentifier> elementsCache;
+  private final Map<String, String> lastDomVersions = Maps.newHashMap();
   
   /**
-   * The last frame we loaded elements for; used for caching.
+   * The last equivalent elements index we built, which is good until the
+   * default content's DOM changes.
+   */
+  private EquivalentElementsIndex equivalentElementsIndex;
+  
+  /**
+   * The last frame we loaded elements for, which {@link #switchToFrame} assumes
+   * we are still in.
    */
   private String lastFrameIdentifier;
   
@@ -86,7 +150,25 @@ public class WebDriverWrapper {
   public WebDriverWrapper(WebDriverFactory driverFactory, WebDriverProxy proxy,
       long waitIntervalMillis, long waitTimeoutMillis, boolean useElementsCache)
           throws Exception {
-    driver = driverFactory.createWebDriver(proxy);
+    this(TempProfileJanitor.getInstance().createWebDriver(driverFactory, proxy), proxy,
+        waitIntervalMillis, waitTimeoutMillis, useElementsCache);
+  }
+  
+  /**
+   * Creates a wrapper around a browser from the given pool, which it goes
+   * back to on {@link #close()}.
+   */
+  public WebDriverWrapper(WebDriverPool driverPool, WebDriverProxy proxy,
+      long waitIntervalMillis, long waitTimeoutMillis, boolean useElementsCache)
+          throws Exception {
+    this(driverPool.acquire(proxy), proxy, waitIntervalMillis, waitTimeoutMillis,
+        useElementsCache);
+    this.driverPool = driverPool;
+  }
+  
+  private WebDriverWrapper(WebDriver driver, WebDriverProxy proxy,
+      long waitIntervalMillis, long waitTimeoutMillis, boolean useElementsCache) {
+    this.driver = driver;
     idGenerator = new WebElementIdGenerator();
     
     actionableWebElementSelector = WebElementSelectorRegistry.getInstance().getActionable();
@@ -125,7 +207,8 @@ public class WebDriverWrapper {
    */
   public void get(String url, List<WaitCondition> waitConditions) {
     LOGGER.log(Level.INFO, "Getting " + url);
-    invalidateElementsCache();
+    // No need to invalidate the elements cache, the new page has a new DOM version.
+    lastFrameIdentifier = null;
     if (proxy != null) {
       proxy.resetForRequest();
     }
@@ -134,6 +217,81 @@ public class WebDriverWrapper {
     waitOnConditions(waitConditions);
   }
 
+  /**
+   * Captures the url, cookies and web storage of the current page.
+   */
+  public BrowserStateSnapshot captureStateSnapshot() {
+    driver.switchTo().defaultContent();
+    return new BrowserStateSnapshot(driver.getCurrentUrl(),
+        Sets.newHashSet(driver.manage().getCookies()),
+        getStorage("localStorage"), getStorage("sessionStorage"));
+  }
+
+  /**
+   * Puts the given snapshot's cookies and web storage into the browser and
+   * then gets its url, waiting for the wait conditions to be satisfied. We can
+   * only set them for the page we're on, so that should already be from the
+   * same site, e.g. the start url.
+   */
+  public void restoreStateSnapshot(BrowserStateSnapshot snapshot,
+      List<WaitCondition> waitConditions) {
+    LOGGER.log(Level.INFO, "Restoring browser state snapshot of " + snapshot.getUrl());
+    driver.switchTo().defaultContent();
+    driver.manage().deleteAllCookies();
+    for (Cookie cookie : snapshot.getCookies()) {
+      try {
+        driver.manage().addCookie(cookie);
+      } catch (WebDriverException e) {
+        // Probably for another domain, and the snapshot may work without it.
+        LOGGER.log(Level.WARNING, "Failed to restore cookie " + cookie.getName()
+            + " for domain " + cookie.getDomain());
+      }
+    }
+    if (snapshot.isSameOrigin(driver.getCurrentUrl())) {
+      setStorage("localStorage", snapshot.getLocalStorage());
+      setStorage("sessionStorage", snapshot.getSessionStorage());
+    } else if (!snapshot.getLocalStorage().isEmpty() ||
+        !snapshot.getSessionStorage().isEmpty()) {
+      LOGGER.log(Level.WARNING, "Can't restore web storage for " + snapshot.getUrl()
+          + " from " + driver.getCurrentUrl());
+    }
+    get(snapshot.getUrl(), waitConditions);
+  }
+
+  /**
+   * @param storageName either "localStorage" or "sessionStorage".
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, String> getStorage(String storageName) {
+    Map<String, String> storage = Maps.newHashMap();
+    JavascriptExecutor js = (JavascriptExecutor) driver;
+    List<List<Object>> keysAndValues;
+    try {
+      keysAndValues = (List<List<Object>>) js.executeScript(GET_STORAGE_SCRIPT, storageName);
+    } catch (WebDriverException e) {
+      // E.g. storage is disabled for this page.
+      LOGGER.log(Level.WARNING, "Failed to read " + storageName + " from "
+          + driver.getCurrentUrl());
+      return storage;
+    }
+    List<Object> keys = keysAndValues.get(0);
+    List<Object> values = keysAndValues.get(1);
+    for (int i = 0; i < keys.size(); ++i) {
+      storage.put((String) keys.get(i), (String) values.get(i));
+    }
+    return storage;
+  }
+
+  private void setStorage(String storageName, Map<String, String> storage) {
+    List<String> keys = Lists.newArrayList(storage.keySet());
+    List<String> values = Lists.newArrayList();
+    for (String key : keys) {
+      values.add(storage.get(key));
+    }
+    JavascriptExecutor js = (JavascriptExecutor) driver;
+    js.executeScript(SET_STORAGE_SCRIPT, storageName, keys, values);
+  }
+
   /**
    * Find an element in the default frame.
    */
@@ -205,7 +363,9 @@ public class WebDriverWrapper {
    * Clears out any cached lists of {@link WebElementIdentifier}s.
    */
   public void invalidateElementsCache() {
-    elementsCache = null;
+    elementsCache.clear();
+    lastDomVersions.clear();
+    equivalentElementsIndex = null;
     lastFrameIdentifier = null;
   }
   
@@ -228,21 +388,79 @@ public class WebDriverWrapper {
    */
   private List<WebElementWithIdentifier> getFrameElementsForSelector(String frameIdentifier,
       WebElementSelector selector) {
-    if (Objects.equal(frameIdentifier, lastFrameIdentifier) && validateElementsCache()) {
-      LOGGER.log(Level.FINE, "Using cached elements for frame " + frameIdentifier);
-      return elementsCache;
-    }
     LOGGER.log(Level.FINE, "Getting all elements for frame " + frameIdentifier);
 
     List<WebElementWithIdentifier> allElements = Lists.newArrayList();
     getAllElementsForFrameHelper(frameIdentifier, allElements, selector);
     lastFrameIdentifier = frameIdentifier;
-    if (useElementsCache) {
-      elementsCache = allElements;
-    }
     return allElements;
   }
 
+  /**
+   * Gets an index of the elements found in the given frame (and not its child
+   * frames) with the given basis' selector, and leaves us in that frame so that
+   * we can work with them.
+   */
+  public WebElementIndex getElementIndexForFrame(String frameIdentifier, IndexBasis basis) {
+    switchToFrame(frameIdentifier);
+    WebElementIndex index = getCachedFrameElements(frameIdentifier, getSelector(basis)).index;
+    lastFrameIdentifier = frameIdentifier;
+    return index;
+  }
+  
+  /**
+   * Finds the element with the given index among those that the given basis'
+   * selector finds in the given frame, as long as it has the given tag name
+   * and class (either of which may be null to accept any), and leaves us in
+   * that frame. For the default selector itself (not a subclass) we know
+   * which elements it finds, so we look for the element with one script call;
+   * for other selectors we have to go through the element index.
+   * 
+   * @return the element, or null if it isn't there.
+   */
+  public WebElement findElementByIndex(String frameIdentifier, IndexBasis basis, int index,
+      String tagName, String className) {
+    WebElementSelector selector = getSelector(basis);
+    if (selector.getClass() == DefaultWebElementSelector.class) {
+      switchToFrame(frameIdentifier);
+      lastFrameIdentifier = frameIdentifier;
+      JavascriptExecutor js = (JavascriptExecutor) driver;
+      try {
+        return (WebElement) js.executeScript(FIND_ELEMENT_BY_INDEX_SCRIPT, index, tagName,
+            className);
+      } catch (WebDriverException e) {
+        LOGGER.log(Level.WARNING, "Failed to find element by index in the browser", e);
+      }
+    }
+    
+    WebElementWithIdentifier elementWithId =
+        getElementIndexForFrame(frameIdentifier, basis).get(index);
+    if (elementWithId == null) {
+      return null;
+    }
+    WebElement element = elementWithId.getElement();
+    if ((tagName != null && !tagName.equals(element.getTagName())) ||
+        (className != null && !className.equals(element.getAttribute("class")))) {
+      return null;
+    }
+    return element;
+  }
+  
+  /**
+   * Runs the given script in the given frame and leaves us in that frame, so
+   * that elements from it can be passed to the script.
+   */
+  public Object executeScriptInFrame(String frameIdentifier, String script, Object... args) {
+    switchToFrame(frameIdentifier);
+    lastFrameIdentifier = frameIdentifier;
+    return ((JavascriptExecutor) driver).executeScript(script, args);
+  }
+  
+  private WebElementSelector getSelector(IndexBasis basis) {
+    return (basis == IndexBasis.ACTIONABLE) ?
+        actionableWebElementSelector : statefulWebElementSelector;
+  }
+
   /**
    * Gets all actionable elements in the current browser, across frames.
    */
@@ -261,34 +479,48 @@ public class WebDriverWrapper {
    * Gets all the elements based on the given {@link WebElementSelector}
    */
   public List<WebElementWithIdentifier> getElementsForSelector(WebElementSelector selector) {
-    if (lastFrameIdentifier == null && validateElementsCache()) {
-      LOGGER.log(Level.FINE, "Using cached elements");
-      return elementsCache;
-    }
     LOGGER.log(Level.FINE, "Getting all elements");
     
     List<WebElementWithIdentifier> allElements = Lists.newArrayList();
     getAllElementsForFrameHelper(null, allElements, selector);
     lastFrameIdentifier = null;
-    if (useElementsCache) {
-      elementsCache = allElements;
-    }
     getDriver().switchTo().defaultContent();
     return allElements;
   }
   
-  private boolean validateElementsCache() {
-    if (elementsCache == null || elementsCache.size() == 0) {
-      return false;
+  /**
+   * Gets an index of which of the given equivalent element selectors select
+   * each element in the current state. The selectors are run against the
+   * default content, and only again once its DOM has changed.
+   */
+  public EquivalentElementsIndex getEquivalentElementsIndex(
+      Map<String, WebElementSelector> equivalentSelectors) {
+    if (equivalentSelectors.isEmpty()) {
+      return new EquivalentElementsIndex(null, equivalentSelectors,
+          Maps.<String, List<WebElement>>newHashMap());
     }
-    try {
-      // The next call will trigger stale-element if we are stale.
-      elementsCache.get(0).getElement().getTagName();
-      return true;
-    } catch (StaleElementReferenceException e) {
-      return false;
+    driver.switchTo().defaultContent();
+    lastFrameIdentifier = null;
+    String domVersion = useElementsCache ? getDomVersion() : null;
+    if (equivalentElementsIndex != null &&
+        equivalentElementsIndex.isCurrent(domVersion, equivalentSelectors)) {
+      LOGGER.log(Level.FINE, "Using cached equivalent elements");
+      return equivalentElementsIndex;
+    }
+    
+    Map<String, List<WebElement>> selectedElements = Maps.newLinkedHashMap();
+    for (Map.Entry<String, WebElementSelector> entry : equivalentSelectors.entrySet()) {
+      List<WebElement> elements = entry.getValue().select(driver);
+      if (elements == null) {
+        elements = Lists.newArrayList();
+      }
+      selectedElements.put(entry.getKey(), elements);
     }
+    equivalentElementsIndex = new EquivalentElementsIndex(domVersion, equivalentSelectors,
+        selectedElements);
+    return equivalentElementsIndex;
   }
+  
   /**
    * Recursive-helper to go across frames for getAllElements. Adds to the 
    * given list of elements.
@@ -299,15 +531,87 @@ public class WebDriverWrapper {
     
     switchToFrame(frameIdentifier);
     
+    FrameElements frameElements = getCachedFrameElements(frameIdentifier, selector);
+    allElements.addAll(frameElements.elements);
+    
+    // Now do all the child frames.
+    for (String childFrameIdentifier : frameElements.childFrameIdentifiers) {
+      getAllElementsForFrameHelper(childFrameIdentifier, allElements, selector);
+      // Switch back so that the next frame id is resolved relative to the correct location.
+      switchToFrame(frameIdentifier);
+    }
+  }
+  
+  /**
+   * Gets the elements of the current frame matching the given selector, from
+   * the cache if the frame's DOM hasn't changed since we cached them. We note
+   * the DOM version even when the cache is off, so that callers can still
+   * cache what they find out about the elements (see
+   * {@link #getLastDomVersionForFrame}).
+   */
+  private FrameElements getCachedFrameElements(String frameIdentifier,
+      WebElementSelector selector) {
+    String domVersion = getDomVersion();
+    lastDomVersions.put(frameIdentifier, domVersion);
+    if (!useElementsCache) {
+      return getFrameElements(frameIdentifier, selector, null);
+    }
+    
+    Map<String, FrameElements> selectorCache = elementsCache.get(selector);
+    if (selectorCache == null) {
+      selectorCache = Maps.newHashMap();
+      elementsCache.put(selector, selectorCache);
+    }
+    FrameElements frameElements = selectorCache.get(frameIdentifier);
+    if (domVersion != null && frameElements != null &&
+        domVersion.equals(frameElements.domVersion)) {
+      LOGGER.log(Level.FINE, "Using cached elements for frame " + frameIdentifier);
+      return frameElements;
+    }
+    frameElements = getFrameElements(frameIdentifier, selector, domVersion);
+    selectorCache.put(frameIdentifier, frameElements);
+    return frameElements;
+  }
+  
+  /**
+   * Gets the version of the given frame's DOM that the elements we last found
+   * in it came from, without going to the browser. Lets callers cache what
+   * they find out about those elements until the DOM changes.
+   * 
+   * @return the version, or null if we don't know it, e.g. because we
+   *     haven't found elements in the frame yet or the browser can't tell us
+   *     when the DOM changes.
+   */
+  public String getLastDomVersionForFrame(String frameIdentifier) {
+    return lastDomVersions.get(frameIdentifier);
+  }
+  
+  /**
+   * @return an identifier for the current frame's DOM that changes whenever
+   *     the DOM does, or null if the browser can't tell us when it changes.
+   */
+  private String getDomVersion() {
+    JavascriptExecutor js = (JavascriptExecutor) driver;
+    try {
+      return (String) js.executeScript(GET_DOM_VERSION_SCRIPT);
+    } catch (WebDriverException e) {
+      LOGGER.log(Level.WARNING, "Failed to get DOM version, not caching elements", e);
+      return null;
+    }
+  }
+  
+  /**
+   * Gets the elements of the current frame matching the given selector.
+   */
+  private FrameElements getFrameElements(String frameIdentifier, WebElementSelector selector,
+      String domVersion) {
     int startElementIndex = 0;
-    List<WebElement> frameElements = selector.select(driver);
+    List<WebElementWrapper> frameElements = getElementSnapshots(selector);
     List<WebElementWithIdentifier> frameElementsWithIds = Lists.newArrayList();
     List<WebElement> childFrames = Lists.newArrayList();
     
-    for (WebElement element : frameElements) {
+    for (WebElementWrapper elementWrapper : frameElements) {
       try {
-        WebElementWrapper elementWrapper = new WebElementWrapper(element);
-        
         // Filter out some elements we never consider for actions or state.
         if (!isInteresting(elementWrapper)) {
           continue;
@@ -326,15 +630,13 @@ public class WebDriverWrapper {
         	elementIndexBasis = IndexBasis.STATEFUL;
         }
         frameElementsWithIds.add(new WebElementWithIdentifier(elementWrapper,
-            idGenerator.generateIdentifier(startElementIndex++, element, frameIdentifier,
+            idGenerator.generateIdentifier(startElementIndex++, elementWrapper, frameIdentifier,
             		elementIndexBasis)));
       } catch (Exception e) {
         LOGGER.log(Level.SEVERE, "Exception evaluating element, selector=" + selector, e);
         throw new RuntimeException(e);
       }
     }
-    allElements.addAll(frameElementsWithIds);
-    
 
     // Iterate over the child frames.
     List<String> childFrameIdentifiers = Lists.newArrayList();
@@ -345,12 +647,34 @@ public class WebDriverWrapper {
       }
     }
     
-    // Now do all the child frames.
-    for (String childFrameIdentifier : childFrameIdentifiers) {
-      getAllElementsForFrameHelper(childFrameIdentifier, allElements, selector);
-      // Switch back so that the next frame id is resolved relative to the correct location.
-      switchToFrame(frameIdentifier);
+    return new FrameElements(domVersion, frameElementsWithIds, childFrameIdentifiers);
+  }
+
+  /**
+   * Gets the elements in the current frame matching the given selector,
+   * along with the properties we need to identify them, in one script call
+   * rather than several WebDriver calls per element.
+   */
+  @SuppressWarnings("unchecked")
+  private List<WebElementWrapper> getElementSnapshots(WebElementSelector selector) {
+    // The script finds all the elements itself if we don't give it any, which
+    // saves a round trip for the default selector (but not subclasses, which
+    // may select something else).
+    List<WebElement> elements = null;
+    if (selector.getClass() != DefaultWebElementSelector.class) {
+      elements = selector.select(driver);
     }
+    // Actionable elements also get the attributes that action generation
+    // looks at, so generating actions doesn't need more WebDriver calls.
+    boolean actionable = (selector == actionableWebElementSelector);
+    JavascriptExecutor js = (JavascriptExecutor) driver;
+    List<List<Object>> snapshots = (List<List<Object>>) js.executeScript(
+        GET_ELEMENT_SNAPSHOTS_SCRIPT, elements, actionable);
+    List<WebElementWrapper> elementWrappers = Lists.newArrayListWithCapacity(snapshots.size());
+    for (List<Object> snapshot : snapshots) {
+      elementWrappers.add(WebElementWrapper.fromSnapshot(snapshot));
+    }
+    return elementWrappers;
   }
 
   /**
@@ -423,66 +747,114 @@ public class WebDriverWrapper {
   
   /**
    * Waits for the given list of conditions to be true before returning.
+   * {@link EventWaitCondition}s are checked again as soon as they signal that
+   * something has changed, other conditions every wait interval.
    */
   public void waitOnConditions(List<WaitCondition> waitConditions) {
     if (waitConditions == null) {
       return;
     }
     
+    WaitSignal signal = new WaitSignal();
     for (WaitCondition waitCondition : waitConditions) {
       waitCondition.reset();
+      if (waitCondition instanceof EventWaitCondition) {
+        ((EventWaitCondition) waitCondition).register(this, signal);
+      }
     }
-    long startMillis = System.currentTimeMillis();
-    while (true) {
-      boolean allCanContinue = true;
-      String conditionDescription = "";
-      for (WaitCondition waitCondition : waitConditions) {
-        if (!waitCondition.canContinue(this)) {
-          allCanContinue = false;
-          conditionDescription = waitCondition.getDescription();
+    try {
+      long startMillis = System.currentTimeMillis();
+      while (true) {
+        // Signals that come in while we check will cut the next wait short.
+        long signalCount = signal.getCount();
+        WaitCondition unsatisfiedCondition = null;
+        for (WaitCondition waitCondition : waitConditions) {
+          if (!waitCondition.canContinue(this)) {
+            unsatisfiedCondition = waitCondition;
+            break;
+          }
+        }
+        
+        if (unsatisfiedCondition == null) {
           break;
         }
+        
+        long remainingMillis = waitTimeoutMillis - (System.currentTimeMillis() - startMillis);
+        if (remainingMillis <= 0) {
+          LOGGER.log(Level.WARNING, "Timeout waiting for wait conditions");
+          break;
+        }
+        
+        LOGGER.log(Level.INFO, "Waiting for " + unsatisfiedCondition.getDescription());
+        try {
+          signal.await(signalCount,
+              Math.min(remainingMillis, getRecheckDelayMillis(unsatisfiedCondition)));
+        } catch (InterruptedException useless) {
+        }
       }
-      
-      if (allCanContinue) {
-        break;
-      }
-      
-      if (System.currentTimeMillis() - startMillis > waitTimeoutMillis) {
-        LOGGER.log(Level.WARNING, "Timeout waiting for wait conditions");
-        break;
-      }
-      
-      LOGGER.log(Level.INFO, "Waiting for " + conditionDescription);
-      try {
-        Thread.sleep(waitIntervalMillis);
-      } catch (InterruptedException useless) {
+    } finally {
+      for (WaitCondition waitCondition : waitConditions) {
+        if (waitCondition instanceof EventWaitCondition) {
+          ((EventWaitCondition) waitCondition).unregister(this);
+        }
       }
     }
   }
 
+  /**
+   * @return how long to wait before checking the given condition again if
+   *     nothing signals us first.
+   */
+  private long getRecheckDelayMillis(WaitCondition waitCondition) {
+    if (!(waitCondition instanceof EventWaitCondition)) {
+      return waitIntervalMillis;
+    }
+    long delayMillis = ((EventWaitCondition) waitCondition).getRecheckDelayMillis();
+    return (delayMillis < 0) ? Long.MAX_VALUE : delayMillis;
+  }
+  
+  /**
+   * Runs the given asynchronous script in the default content, giving it
+   * the given time to call back.
+   */
+  public Object executeAsyncScript(String script, long timeoutMillis, Object... args) {
+    driver.switchTo().defaultContent();
+    lastFrameIdentifier = null;
+    driver.manage().timeouts().setScriptTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    return ((JavascriptExecutor) driver).executeAsyncScript(script, args);
+  }
+
+  /**
+   * Closes the browser, or gives it back to its pool for the next action
+   * sequence. Does nothing if it is already closed, so that a pooled browser
+   * can't be given back twice.
+   */
   public void close() {
-    for (String windowHandle : driver.getWindowHandles()) {
-      driver.switchTo().window(windowHandle);
-      driver.quit();
+    if (isClosed) {
+      return;
     }
-    
-    // Work around crazy WebDriver bug described here:
-    // http://code.google.com/p/selenium/issues/detail?id=1934.
-    List<String> profileDirs = Lists.newArrayList("anonymous*webdriver-profile",
-        "userprofile*copy", "seleniumSslSupport*");
-    File tmpDir = new File(System.getProperty("java.io.tmpdir"));
-    FilenameFilter profileDirsFilter = new WildcardFileFilter(profileDirs);
-    File[] files = tmpDir.listFiles(profileDirsFilter);
-    for (File profileDir : files) {
-      LOGGER.info("Cleaning up tmp profile directory: " + profileDir.getAbsolutePath());
-      try {
-        FileUtils.deleteDirectory(profileDir);
-      } catch (IOException e) {
-        // The directory was probably cleaned up correctly by the library in this case.
-        LOGGER.log(Level.WARNING,
-            "Failed to delete tmp profile directory: " + profileDir.getAbsolutePath());
-      }
+    isClosed = true;
+    if (driverPool != null && driverPool.release(driver, proxy)) {
+      return;
     }
+    quit();
+  }
+  
+  /**
+   * Closes the browser for good, e.g. because something went wrong with it.
+   */
+  public void discard() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    if (driverPool != null) {
+      driverPool.discard(driver);
+    }
+    quit();
+  }
+  
+  private void quit() {
+    TempProfileJanitor.getInstance().quit(driver);
   }
 }
@@ -18,7 +18,9 @@ import org.webtestingexplorer.identifiers.WebElementIdentifier;
 public class WebElementIdGenerator {
 
 	/**
-   * Generate identifier for a WebElement.
+   * Generate identifier for a WebElement. This looks at several attributes, so
+   * pass a {@link WebElementWrapper} from an element snapshot to save going
+   * back to the browser for each one.
    */
   public WebElementIdentifier generateIdentifier(int elementIndex, WebElement element,
       String frameIdentifier, IndexBasis elementIndexBasis) {
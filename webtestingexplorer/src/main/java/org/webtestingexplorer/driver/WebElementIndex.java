@@ -0,0 +1,54 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import org.webtestingexplorer.identifiers.IndexWebElementIdentifier;
+import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
+
+import java.util.List;
+
+/**
+ * Looks up the elements found in one frame by one selector by the index that
+ * {@link IndexWebElementIdentifier}s (and their tag and class subclasses)
+ * use, so that resolving one of them doesn't mean finding all the elements
+ * again. {@link WebDriverWrapper} keeps these with its cached elements, so one
+ * is shared by all the resolutions until the frame's DOM changes.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebElementIndex {
+
+  private final List<WebElementWithIdentifier> elements;
+
+  public WebElementIndex(List<WebElementWithIdentifier> elements) {
+    this.elements = elements;
+  }
+
+  /**
+   * @return the element with the given index, or null if there aren't that
+   *     many.
+   */
+  public WebElementWithIdentifier get(int index) {
+    if (index < 0 || index >= elements.size()) {
+      return null;
+    }
+    return elements.get(index);
+  }
+
+  public int size() {
+    return elements.size();
+  }
+}
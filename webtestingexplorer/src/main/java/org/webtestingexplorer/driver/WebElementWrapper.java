@@ -22,7 +22,10 @@ import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.internal.Coordinates;
 import org.openqa.selenium.internal.Locatable;
 
+import com.google.common.collect.Maps;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  * Wraps a {@link WebElement} instance to provide some caching.
@@ -31,15 +34,70 @@ import java.util.List;
  */
 public class WebElementWrapper implements WebElement, Locatable {
 
+  /**
+   * The attributes from an element snapshot, in the order that
+   * getElementSnapshots.js returns them after the element and tag name.
+   */
+  private static final String[] SNAPSHOT_ATTRIBUTES = {"id", "name", "class", "type"};
+  
   private WebElement element;
   private String tagName;
-  private String id;
-  private String name;
+  
+  /**
+   * Attribute values we have looked up, which may be null.
+   */
+  private final Map<String, String> attributes = Maps.newHashMap();
+  
+  /**
+   * Whether the element was displayed and enabled when it was found, if it
+   * came from a snapshot.
+   */
+  private Boolean displayed;
+  private Boolean enabled;
   
   public WebElementWrapper(WebElement element) {
     this.element = element;
   }
   
+  /**
+   * Creates a wrapper from one of the element snapshots returned by
+   * getElementSnapshots.js, so that it can answer the usual questions about
+   * the element without going back to the browser: [element, tag name, id,
+   * name, class, type, displayed, enabled, outerHTML, map of other
+   * attributes that action generator configs look at]. The last two are null
+   * unless the snapshot is of an actionable element.
+   */
+  @SuppressWarnings("unchecked")
+  public static WebElementWrapper fromSnapshot(List<?> snapshot) {
+    WebElementWrapper wrapper = new WebElementWrapper((WebElement) snapshot.get(0));
+    wrapper.tagName = (String) snapshot.get(1);
+    for (int i = 0; i < SNAPSHOT_ATTRIBUTES.length; ++i) {
+      wrapper.attributes.put(SNAPSHOT_ATTRIBUTES[i], (String) snapshot.get(i + 2));
+    }
+    wrapper.displayed = (Boolean) snapshot.get(SNAPSHOT_ATTRIBUTES.length + 2);
+    wrapper.enabled = (Boolean) snapshot.get(SNAPSHOT_ATTRIBUTES.length + 3);
+    String outerHtml = (String) snapshot.get(SNAPSHOT_ATTRIBUTES.length + 4);
+    if (outerHtml != null) {
+      wrapper.attributes.put("outerHTML", outerHtml);
+    }
+    Map<String, Object> actionAttributes =
+        (Map<String, Object>) snapshot.get(SNAPSHOT_ATTRIBUTES.length + 5);
+    if (actionAttributes != null) {
+      for (Map.Entry<String, Object> attribute : actionAttributes.entrySet()) {
+        wrapper.attributes.put(attribute.getKey(), (String) attribute.getValue());
+      }
+    }
+    return wrapper;
+  }
+  
+  /**
+   * Gets the element we wrap, e.g. to pass it to a script, which can't take
+   * a wrapper.
+   */
+  public WebElement getWrappedElement() {
+    return element;
+  }
+  
   @Override
   public void click() {
     element.click();
@@ -70,21 +128,15 @@ public class WebElementWrapper implements WebElement, Locatable {
 
   @Override
   public String getAttribute(String attr) {
-    if ("id".equals(attr)) {
-      if (id == null) {
-        id = element.getAttribute("id");
-      }
-      return id;
+    if (attributes.containsKey(attr)) {
+      return attributes.get(attr);
     }
     
-    if ("name".equals(attr)) {
-      if (name == null) {
-        name = element.getAttribute("name");
-      }
-      return name;
+    String value = element.getAttribute(attr);
+    if ("id".equals(attr) || "name".equals(attr)) {
+      attributes.put(attr, value);
     }
-    
-    return element.getAttribute(attr);
+    return value;
   }
 
   @Override
@@ -94,6 +146,9 @@ public class WebElementWrapper implements WebElement, Locatable {
 
   @Override
   public boolean isEnabled() {
+    if (enabled != null) {
+      return enabled;
+    }
     return element.isEnabled();
   }
 
@@ -114,6 +169,9 @@ public class WebElementWrapper implements WebElement, Locatable {
 
   @Override
   public boolean isDisplayed() {
+    if (displayed != null) {
+      return displayed;
+    }
     return element.isDisplayed();
   }
 
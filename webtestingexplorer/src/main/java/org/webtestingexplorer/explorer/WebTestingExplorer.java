@@ -15,25 +15,41 @@ limitations under the License.
 */
 package org.webtestingexplorer.explorer;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+import com.thoughtworks.xstream.XStream;
 
-import org.openqa.selenium.WebElement;
 import org.webtestingexplorer.actions.Action;
 import org.webtestingexplorer.actions.ActionGenerator;
 import org.webtestingexplorer.actions.ActionSequence;
 import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.actions.ActionSequenceQueueJournal;
 import org.webtestingexplorer.actions.BackAction;
+import org.webtestingexplorer.actions.ConcurrentActionSequenceQueue;
 import org.webtestingexplorer.actions.ForwardAction;
 import org.webtestingexplorer.actions.RefreshAction;
 import org.webtestingexplorer.config.ActionGeneratorConfig;
 import org.webtestingexplorer.config.ActionSequenceFilter;
-import org.webtestingexplorer.config.WebElementSelector;
+import org.webtestingexplorer.config.ActionSequencePrioritizer;
+import org.webtestingexplorer.config.IncrementalActionSequencePrioritizer;
+import org.webtestingexplorer.config.OracleConfig;
 import org.webtestingexplorer.config.WebElementSelectorRegistry;
 import org.webtestingexplorer.config.WebTestingConfig;
+import org.webtestingexplorer.config.waitcondition.WaitConditionConfig;
+import org.webtestingexplorer.distributed.ActionSequenceLease;
+import org.webtestingexplorer.distributed.DirectoryWorkStore;
+import org.webtestingexplorer.distributed.ExplorationCoordinator;
+import org.webtestingexplorer.distributed.WorkStore;
 import org.webtestingexplorer.driver.ActionSequenceRunner;
 import org.webtestingexplorer.driver.ActionSequenceRunnerConfig;
+import org.webtestingexplorer.driver.BrowserStateSnapshotCache;
+import org.webtestingexplorer.driver.EquivalentElementsIndex;
+import org.webtestingexplorer.driver.WebDriverPool;
+import org.webtestingexplorer.driver.WebDriverProxy;
+import org.webtestingexplorer.driver.WebDriverProxyPool;
 import org.webtestingexplorer.driver.WebDriverWrapper;
 import org.webtestingexplorer.driver.ActionSequenceRunner.ActionSequenceResult;
 import org.webtestingexplorer.driver.ActionSequenceRunner.BeforeActionCallback;
@@ -41,15 +57,18 @@ import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
 import org.webtestingexplorer.state.State;
 import org.webtestingexplorer.state.StateChange;
 import org.webtestingexplorer.state.StateChecker;
+import org.webtestingexplorer.state.StateXStream;
 import org.webtestingexplorer.testcase.TestCase;
 import org.webtestingexplorer.testcase.TestCaseConfig;
 import org.webtestingexplorer.testcase.TestCaseWriter;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +76,9 @@ import java.util.logging.Logger;
  * Implements the actual test exploration process.
  * The default behavior when exploring is to run the longest discovered
  * action sequences first.
+ * With {@link WebTestingConfig#setNumWorkers} greater than one, several workers
+ * (each with its own runner, browser and proxy) pull from and push to the same
+ * queue in parallel.
  * 
  * @author smcmaster@google.com (Scott McMaster)
  */
@@ -65,17 +87,121 @@ public class WebTestingExplorer {
   private final static Logger LOGGER =
       Logger.getLogger(WebTestingExplorer.class.getName());
 
+  /**
+   * How often to look for work in the work store when we have none.
+   */
+  private static final long WORK_STORE_POLL_MILLIS = 1000;
+  
+  /**
+   * We don't bother sharing work unless we have at least this much.
+   */
+  private static final int MIN_SEQUENCES_TO_SHARE = 2;
+  
+  /**
+   * How many action sequences to lease from the coordinator at a time.
+   */
+  private static final int COORDINATOR_LEASE_SIZE = 10;
+
   private WebTestingConfig config;
   private ActionGenerator actionGenerator;
   private ActionSequenceRunner runner;
   
+  /**
+   * The action sequences still to explore, shared by all the workers.
+   * Workers push and pop without locking; queueLock is only held to
+   * prioritize or save the queue and to wait for more work. This is a
+   * {@link ConcurrentActionSequenceQueue}, unless the prioritizer is an
+   * {@link IncrementalActionSequencePrioritizer}, in which case it is that
+   * prioritizer's queue.
+   */
+  private ActionSequenceQueue actionSequences;
+  private final Object queueLock = new Object();
+  
+  /**
+   * The number of workers that are trying to pop or are running an action
+   * sequence. While this is non-zero, an empty queue does not mean we are done,
+   * since the running sequences may still be extended.
+   */
+  private final AtomicInteger inFlightCount = new AtomicInteger();
+  
+  /**
+   * Checkpoints the queue, if we are configured to use a journal.
+   */
+  private ActionSequenceQueueJournal queueJournal;
+  
+  /**
+   * Shares work with other explorer processes, if we are configured to.
+   */
+  private WorkStore workStore;
+  private final Object stealLock = new Object();
+  
+  /**
+   * For keying states in the coordinator, created when we first need it.
+   */
+  private XStream stateXStream;
+  
+  /**
+   * Shared by all the runners, so that each initial sequence only needs to run
+   * in one browser to get a snapshot that all the workers can use.
+   */
+  private final BrowserStateSnapshotCache stateSnapshotCache = new BrowserStateSnapshotCache();
+  
+  /**
+   * The proxies for the additional workers, kept running between rounds of
+   * workers.
+   */
+  private final WebDriverProxyPool proxyPool = new WebDriverProxyPool();
+  
+  /**
+   * Warm browsers, shared by all the runners.
+   */
+  private final WebDriverPool driverPool;
+  
+  private final AtomicInteger testCaseCount = new AtomicInteger();
+  private final AtomicInteger failedCaseCount = new AtomicInteger();
+  private final AtomicInteger errorCaseCount = new AtomicInteger();
+  
   public WebTestingExplorer(WebTestingConfig config) throws Exception {
     this.config = config;
     this.actionGenerator = new ActionGenerator(config.isUseDefaultActionGeneratorConfigs());
     this.runner = new ActionSequenceRunner(config.getWebDriverFactory());
+    runner.setStateSnapshotCache(stateSnapshotCache);
+    this.driverPool = new WebDriverPool(config.getWebDriverFactory(), config.getMaxBrowserUses());
+    runner.setWebDriverPool(driverPool);
   }
 
   public void run() throws Exception {
+    if (config.getCoordinator() != null) {
+      exploreWithCoordinator(config.getCoordinator());
+      // Before the runner terminates the driver factory.
+      driverPool.shutdown();
+      runner.shutdown();
+      proxyPool.shutdown();
+      return;
+    }
+    if (config.getWorkStoreDirectory() != null && !config.getWorkStoreDirectory().isEmpty()) {
+      workStore = new DirectoryWorkStore(config.getWorkStoreDirectory(),
+          config.getSerializationFormat());
+      workStore.register();
+    }
+    try {
+      explore();
+    } finally {
+      if (workStore != null) {
+        workStore.unregister();
+      }
+    }
+    
+    // We can add another step, which is to take the generated test cases and reorder
+    // actions, if the state changes are identical, the test cases are redundant.
+    
+    // Before the runner terminates the driver factory.
+    driverPool.shutdown();
+    runner.shutdown();
+    proxyPool.shutdown();
+  }
+  
+  private void explore() throws Exception {
     // Rip.
     ActionSequenceQueue actionSequences = null;
     if (config.getQueueFilename() != null && !config.getQueueFilename().isEmpty()) {
@@ -87,17 +213,36 @@ public class WebTestingExplorer {
       }
     }
     if (actionSequences == null || actionSequences.isEmpty()) {
-      actionSequences = buildInitialActionSequences(
-          config.getNumPartitions(), config.getPartitionNumber());
+      if (workStore == null) {
+        actionSequences = buildInitialActionSequences(
+            config.getNumPartitions(), config.getPartitionNumber());
+      } else if (workStore.claimInitialSequences()) {
+        actionSequences = buildInitialActionSequences(0, 0);
+      } else {
+        // We'll steal some from whoever built them.
+        actionSequences = new ActionSequenceQueue();
+      }
     }
     
     // Replay.
     replay(actionSequences, config.getMaxLength());
+  }
 
-    // We can add another step, which is to take the generated test cases and reorder
-    // actions, if the state changes are identical, the test cases are redundant.
-    
-    runner.shutdown();
+  /**
+   * Explores the sequences we lease from the given coordinator until it says
+   * the exploration is finished.
+   */
+  private void exploreWithCoordinator(ExplorationCoordinator coordinator) throws Exception {
+    if (coordinator.claimInitialSequences()) {
+      ActionSequenceQueue initialActionSequences = buildInitialActionSequences(0, 0);
+      coordinator.addActionSequences(Lists.reverse(initialActionSequences.asList()));
+    }
+    int numWorkers = Math.max(1, config.getNumWorkers());
+    if (numWorkers == 1) {
+      createWorker(runner, config.getMaxLength()).run();
+    } else {
+      runWorkers(numWorkers, config.getMaxLength());
+    }
   }
 
   private ActionSequenceQueue buildInitialActionSequences(
@@ -114,10 +259,11 @@ public class WebTestingExplorer {
           null,
           config.getNumRetries(),
           config.isUseElementsCache(),
-          false));
-      List<Action> actions = getAllPossibleActionsInCurrentState();
+          false)
+          .setUseStateSnapshots(config.isUseStateSnapshots()));
+      List<Action> actions = getAllPossibleActionsInCurrentState(runner.getDriver());
       for (Action action : actions) {
-        extendAndPushActionSequence(actionSequences, initialActionSequence, action);
+        extendAndPushActionSequence(actionSequences, actionSequences, initialActionSequence, action);
       }
       runner.getDriver().close();
     }
@@ -136,8 +282,8 @@ public class WebTestingExplorer {
     return new ActionSequenceQueue(partitionedActionSequences.get(partitionNumber));
   }
 
-  private List<Action> getAllPossibleActionsInCurrentState() {
-    LOGGER.info("Getting actions from " + runner.getDriver().getDriver().getCurrentUrl());
+  private List<Action> getAllPossibleActionsInCurrentState(WebDriverWrapper driver) {
+    LOGGER.info("Getting actions from " + driver.getDriver().getCurrentUrl());
     
     List<Action> actions = Lists.newArrayList();
 
@@ -154,173 +300,603 @@ public class WebTestingExplorer {
 
     // Look for element actions, filtering out ones in the same equivalence classes.
     Set<String> markedEquivalentSelectors = Sets.newHashSet();
-    Map<String, Set<WebElement>> cachedEquivalentElements = cacheEquivalentElements();
+    EquivalentElementsIndex equivalentElementsIndex = driver.getEquivalentElementsIndex(
+        config.getEquivalentWebElementSelectors());
     
-    List<WebElementWithIdentifier> allElements = runner.getDriver().getActionableElements();
+    List<WebElementWithIdentifier> allElements = driver.getActionableElements();
+    List<WebElementWithIdentifier> elementsToAddActionsFor = Lists.newArrayList();
     for (WebElementWithIdentifier elementWithId : allElements) {
-      boolean shouldAddActions = checkEquivalentElementSelectors(
-          cachedEquivalentElements,
-          markedEquivalentSelectors,
-          elementWithId);
-      
-      if (shouldAddActions) {
-        List<ActionGeneratorConfig> actionGeneratorConfigs = Lists.newArrayList();
-        for (ActionGeneratorConfig actionGeneratorConfig : config.getActionGeneratorConfigs()) {
-          if (actionGeneratorConfig.isActive(runner.getDriver())) {
-            actionGeneratorConfigs.add(actionGeneratorConfig);
-          }
-        }
-        Set<Action> newActions = actionGenerator.generateActionsForElement(
-            runner.getDriver(), actionGeneratorConfigs, elementWithId);
-        actions.addAll(newActions);
+      if (equivalentElementsIndex.shouldAddActions(
+          elementWithId.getElement(), markedEquivalentSelectors)) {
+        elementsToAddActionsFor.add(elementWithId);
       }
     }
     
+    List<ActionGeneratorConfig> actionGeneratorConfigs = Lists.newArrayList();
+    for (ActionGeneratorConfig actionGeneratorConfig : config.getActionGeneratorConfigs()) {
+      if (actionGeneratorConfig.isActive(driver)) {
+        actionGeneratorConfigs.add(actionGeneratorConfig);
+      }
+    }
+    for (Set<Action> newActions : actionGenerator.generateActionsForElements(
+        driver, actionGeneratorConfigs, elementsToAddActionsFor)) {
+      actions.addAll(newActions);
+    }
+    
     LOGGER.info("All possible actions in current state: " + actions.toString());
     return actions;
   }
 
+  // As long as the test case is longer than the previous one, you don't need to
+  // restart the browser.
+  void replay(ActionSequenceQueue actionSequences, int maxSequenceLength) throws Exception {
+    if (config.isUseQueueJournal() && config.getQueueFilename() != null &&
+        !config.getQueueFilename().isEmpty()) {
+      if (config.getActionSequencePrioritizer() != null && !isIncrementalPrioritizer()) {
+        // The journal doesn't keep the queue order.
+        actionSequences = config.getActionSequencePrioritizer().prioritize(actionSequences);
+      }
+      this.actionSequences = createSharedQueue(actionSequences);
+      queueJournal = ActionSequenceQueueJournal.open(this.actionSequences,
+          config.getQueueFilename(), config.getSerializationFormat());
+    } else {
+      this.actionSequences = createSharedQueue(actionSequences);
+    }
+    
+    try {
+      int numWorkers = Math.max(1, config.getNumWorkers());
+      if (numWorkers == 1) {
+        // No need for any extra threads.
+        createWorker(runner, maxSequenceLength).run();
+      } else {
+        runWorkers(numWorkers, maxSequenceLength);
+      }
+    } finally {
+      if (queueJournal != null) {
+        queueJournal.close();
+        queueJournal = null;
+      }
+    }
+  }
+  
+  private boolean isIncrementalPrioritizer() {
+    return config.getActionSequencePrioritizer() instanceof IncrementalActionSequencePrioritizer;
+  }
+  
   /**
-   * @return a map of selector name -> elements returned by that selector for the
-   *    elements defined as equivalent in the config.
+   * Copies the given queue into one the workers can share.
    */
-  private Map<String, Set<WebElement>> cacheEquivalentElements() {
-    Map<String, Set<WebElement>> cachedEquivalentElements = Maps.newHashMap();
-    for (Map.Entry<String, WebElementSelector> equivalentSelector : config.getEquivalentWebElementSelectors().entrySet()) {
-      Set<WebElement> equivalentElements = Sets.newLinkedHashSet(equivalentSelector.getValue().select(runner.getDriver().getDriver()));
-      cachedEquivalentElements.put(equivalentSelector.getKey(), equivalentElements);
+  private ActionSequenceQueue createSharedQueue(ActionSequenceQueue actionSequences) {
+    ActionSequencePrioritizer prioritizer = config.getActionSequencePrioritizer();
+    if (prioritizer instanceof IncrementalActionSequencePrioritizer) {
+      ActionSequenceQueue queue = ((IncrementalActionSequencePrioritizer) prioritizer).createQueue();
+      queue.pushAll(actionSequences);
+      return queue;
+    }
+    return ConcurrentActionSequenceQueue.copyOf(actionSequences);
+  }
+  
+  /**
+   * Explores with the given number of workers in parallel.
+   */
+  private void runWorkers(int numWorkers, int maxSequenceLength) throws Exception {
+    checkConfigFactoriesForWorkers();
+    LOGGER.info("Exploring with " + numWorkers + " workers");
+    List<ActionSequenceRunner> workerRunners = Lists.newArrayList();
+    List<Thread> workerThreads = Lists.newArrayList();
+    List<WebDriverProxy> workerProxies = null;
+    if (numWorkers > 1 && config.getWebDriverFactory().shouldUseProxy()) {
+      workerProxies = proxyPool.acquire(numWorkers - 1);
+    }
+    try {
+      for (int workerNumber = 0; workerNumber < numWorkers; ++workerNumber) {
+        ActionSequenceRunner workerRunner = runner;
+        if (workerNumber > 0) {
+          workerRunner = createWorkerRunner(
+              (workerProxies == null) ? null : workerProxies.get(workerNumber - 1));
+          workerRunners.add(workerRunner);
+        }
+        Thread workerThread = new Thread(createWorker(workerRunner, maxSequenceLength),
+            "explorer-worker-" + workerNumber);
+        workerThreads.add(workerThread);
+        workerThread.start();
+      }
+    } finally {
+      for (Thread workerThread : workerThreads) {
+        workerThread.join();
+      }
+      for (ActionSequenceRunner workerRunner : workerRunners) {
+        try { workerRunner.shutdown(); } catch (Exception e) {}
+      }
     }
-    return cachedEquivalentElements;
   }
 
   /**
-   * Checks to see if a given web element is equivalent to one we have already added
-   * an action for.
-   * 
-   * @param cachedEquivalentElements the equivalent elements by selector name in the current state.
-   * @param markedEquivalentSelectors tracks the equivalent selectors that have already been addressed.
-   * @param elementWithId the element to check for equivalence to already-added elements.
-   * @return true if we should add actions for the element, false if we should skip it.
-   */
-  private boolean checkEquivalentElementSelectors(
-      Map<String, Set<WebElement>> cachedEquivalentElements,
-      Set<String> markedEquivalentSelectors,
-      WebElementWithIdentifier elementWithId) {
+   * Makes sure that the workers won't share oracles or wait conditions, which
+   * keep state about the action sequence they are checking or waiting on.
+   * Each action sequence gets its own from the factories, so they must create
+   * new ones every time.
+   */
+  private void checkConfigFactoriesForWorkers() {
+    OracleConfig oracleConfig = config.getOracleConfig();
+    if (oracleConfig != null) {
+      OracleConfig otherOracleConfig = config.getOracleConfig();
+      if (sharesAny(oracleConfig.getAfterActionOracles(),
+              otherOracleConfig.getAfterActionOracles()) ||
+          sharesAny(oracleConfig.getFinalOracles(), otherOracleConfig.getFinalOracles())) {
+        throw new IllegalStateException("To explore with more than one worker, the oracle "
+            + "config factory must create new oracles every time");
+      }
+    }
+    WaitConditionConfig waitConditionConfig = config.getWaitConditionConfig();
+    if (waitConditionConfig != null) {
+      WaitConditionConfig otherWaitConditionConfig = config.getWaitConditionConfig();
+      if (sharesAny(waitConditionConfig.getInitialWaitConditions(),
+              otherWaitConditionConfig.getInitialWaitConditions()) ||
+          sharesAny(waitConditionConfig.getAfterActionWaitConditions(),
+              otherWaitConditionConfig.getAfterActionWaitConditions())) {
+        throw new IllegalStateException("To explore with more than one worker, the wait "
+            + "condition config factory must create new wait conditions every time");
+      }
+    }
+  }
+  
+  /**
+   * @return whether the given lists have any of the same objects.
+   */
+  private static boolean sharesAny(List<?> list, List<?> otherList) {
+    for (Object object : list) {
+      for (Object otherObject : otherList) {
+        if (object == otherObject) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates a runner for an additional worker. It shares our (already-initialized)
+   * driver factory but needs its own proxy so that it can capture its own traffic,
+   * which goes back to the pool when the runner shuts down.
+   */
+  private ActionSequenceRunner createWorkerRunner(WebDriverProxy proxy) {
+    ActionSequenceRunner workerRunner = new ActionSequenceRunner(config.getWebDriverFactory(),
+        proxy, proxyPool);
+    workerRunner.setStateSnapshotCache(stateSnapshotCache);
+    workerRunner.setWebDriverPool(driverPool);
+    return workerRunner;
+  }
+  
+  private Runnable createWorker(ActionSequenceRunner runner, int maxSequenceLength) {
+    if (config.getCoordinator() != null) {
+      return new CoordinatedWorker(runner, maxSequenceLength);
+    }
+    return new ExplorerWorker(runner, maxSequenceLength);
+  }
+  
+  /**
+   * Leases and runs batches of action sequences from the coordinator with its
+   * own runner until the coordinator says the exploration is finished.
+   */
+  private class CoordinatedWorker implements Runnable {
+    private final ActionSequenceRunner runner;
+    private final int maxSequenceLength;
     
-    boolean shouldAddActions = true;
+    public CoordinatedWorker(ActionSequenceRunner runner, int maxSequenceLength) {
+      this.runner = runner;
+      this.maxSequenceLength = maxSequenceLength;
+    }
     
-    for (Map.Entry<String, Set<WebElement>> equivalentElements : cachedEquivalentElements.entrySet()) {
-      
-      if (equivalentElements.getValue().contains(elementWithId.safeGetElement(runner.getDriver())) &&
-        markedEquivalentSelectors.contains(equivalentElements.getKey())) {
-          // We have already added an element from this set.
-          LOGGER.info("Filtering an element from equivalent selector: " + equivalentElements.getKey());
-          shouldAddActions = false;
+    @Override
+    public void run() {
+      ExplorationCoordinator coordinator = config.getCoordinator();
+      ActionSequenceLease lease = null;
+      try {
+        while (true) {
+          lease = coordinator.lease(COORDINATOR_LEASE_SIZE);
+          if (lease == null) {
+            if (coordinator.isFinished()) {
+              return;
+            }
+            // Somebody else may still extend their sequences.
+            Thread.sleep(WORK_STORE_POLL_MILLIS);
+            continue;
+          }
+          
+          ActionSequenceQueue extendedSequences = new ActionSequenceQueue();
+          for (ActionSequence actionSequence : lease.getActionSequences()) {
+            LOGGER.info("" + testCaseCount.incrementAndGet() + ": " + actionSequence.toString());
+            try {
+              List<Action> extensionActions =
+                  exploreActionSequence(runner, actionSequence, maxSequenceLength);
+              if (extensionActions != null) {
+                for (Action action : extensionActions) {
+                  extendAndPushActionSequence(extendedSequences, extendedSequences,
+                      actionSequence, action);
+                }
+              }
+            } catch (RuntimeException e) {
+              // Don't lose the rest of the batch, or this worker, over one sequence.
+              LOGGER.log(Level.SEVERE, "Error exploring action sequence: " + actionSequence, e);
+              errorCaseCount.incrementAndGet();
+            }
+          }
+          boolean completed = coordinator.complete(lease.getId(),
+              Lists.reverse(extendedSequences.asList()));
+          if (!completed) {
+            LOGGER.warning("Lease " + lease.getId()
+                + " expired before we completed it, its extensions were dropped");
+          }
+          lease = null;
+          
+          LOGGER.info(String.format("Run: %d, Failed: %d, Errors: %d",
+              testCaseCount.get(), failedCaseCount.get(), errorCaseCount.get()));
+        }
+      } catch (InterruptedException e) {
+        LOGGER.warning("Interrupted waiting for action sequences, stopping worker");
+      } catch (IOException e) {
+        LOGGER.log(Level.SEVERE, "Lost contact with the coordinator, stopping worker", e);
+      } finally {
+        if (lease != null) {
+          // Let somebody else have the batch now instead of when the lease expires.
+          try {
+            coordinator.release(lease.getId());
+          } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to release lease " + lease.getId(), e);
+          }
+        }
+        if (config.isUsePrefixContinuation()) {
+          // The last browser is still open.
+          runner.closeDriver();
+        }
       }
-      // Mark that we will add an element from this set so that we don't add
-      // any more.
-      markedEquivalentSelectors.add(equivalentElements.getKey());        
     }
+  }
+  
+  /**
+   * Pops and runs action sequences with its own runner until there is
+   * nothing left to explore.
+   */
+  private class ExplorerWorker implements Runnable {
+    private final ActionSequenceRunner runner;
+    private final int maxSequenceLength;
     
-    return shouldAddActions;
+    public ExplorerWorker(ActionSequenceRunner runner, int maxSequenceLength) {
+      this.runner = runner;
+      this.maxSequenceLength = maxSequenceLength;
+    }
+    
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          ActionSequence actionSequence;
+          try {
+            actionSequence = takeActionSequence();
+          } catch (InterruptedException e) {
+            LOGGER.warning("Interrupted waiting for action sequences, stopping worker");
+            return;
+          }
+          if (actionSequence == null) {
+            return;
+          }
+          
+          List<Action> extensionActions = null;
+          try {
+            extensionActions = exploreActionSequence(runner, actionSequence, maxSequenceLength);
+          } finally {
+            finishActionSequence(actionSequence, extensionActions);
+          }
+          
+          LOGGER.info(String.format("Run: %d, Failed: %d, Errors: %d",
+              testCaseCount.get(), failedCaseCount.get(), errorCaseCount.get()));
+        }
+      } finally {
+        if (config.isUsePrefixContinuation()) {
+          // The last browser is still open.
+          runner.closeDriver();
+        }
+      }
+    }
   }
-
-  // As long as the test case is longer than the previous one, you don't need to
-  // restart the browser.
-  private void replay(ActionSequenceQueue actionSequences, int maxSequenceLength) throws Exception {
-    int testCaseCount = 0;
-    int failedCaseCount = 0;
-    int errorCaseCount = 0;
-    while (!actionSequences.isEmpty()) {
-      LOGGER.info("Current queue size: " + actionSequences.size());
-      final ActionSequence actionSequence = actionSequences.pop();
-      ++testCaseCount;
-      LOGGER.info("" + testCaseCount + ": " + actionSequence.toString());
+  
+  /**
+   * Pops the next action sequence to explore, waiting if the queue is empty
+   * but other workers may still add to it.
+   * 
+   * @return the action sequence, or null if the exploration is finished.
+   */
+  private ActionSequence takeActionSequence() throws InterruptedException {
+    while (true) {
+      inFlightCount.incrementAndGet();
+      ActionSequence actionSequence = actionSequences.poll();
+      if (actionSequence != null) {
+        if (queueJournal != null) {
+          try {
+            queueJournal.recordPop(actionSequence);
+          } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to write action sequence queue journal", e);
+          }
+        }
+        LOGGER.info("Current queue size: " + (actionSequences.size() + 1));
+        LOGGER.info("" + testCaseCount.incrementAndGet() + ": " + actionSequence.toString());
+        return actionSequence;
+      }
+      if (inFlightCount.decrementAndGet() == 0 && actionSequences.isEmpty()) {
+        if (workStore == null || !stealWork()) {
+          return null;
+        }
+        continue;
+      }
+      // Workers notify after pushing, so checking under the lock can't miss that.
+      synchronized (queueLock) {
+        if (actionSequences.isEmpty() && inFlightCount.get() > 0) {
+          queueLock.wait();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Waits for action sequences from the work store when we have run out.
+   * 
+   * @return true if there is something more to do (possibly found by another
+   *     worker thread), false if the whole exploration is finished.
+   */
+  private boolean stealWork() throws InterruptedException {
+    synchronized (stealLock) {
       try {
-        final StateChange stateChange = new StateChange();
-        ActionSequenceResult result = runner.runActionSequence(new ActionSequenceRunnerConfig(
-            config.getUrl(),
-            actionSequence,
-            config.getOracleConfig(),
-            config.getWaitConditionConfig(),
-            new BeforeActionCallback() {
-                @Override
-                public void onBeforeAction(Action action) {
-                  if (action == actionSequence.getLastAction()) {
-                    stateChange.setBeforeState(createStateSnapshot(runner.getDriver()));
-                  }
-                }
-               },
-            config.getNumRetries(),
-            config.isUseElementsCache(),
-            config.isCaptureScreenshots()));
-        if (result.hasFailures()) {
-          ++failedCaseCount;
+        // Only idle once we've seen there is nothing left here, since another
+        // thread may have just stolen something.
+        while (actionSequences.isEmpty() && inFlightCount.get() == 0) {
+          workStore.setIdle();
+          List<ActionSequence> stolen = workStore.steal();
+          if (stolen != null) {
+            pushExtendedSequences(stolen);
+            synchronized (queueLock) {
+              queueLock.notifyAll();
+            }
+            break;
+          }
+          if (workStore.tryFinish()) {
+            return false;
+          }
+          Thread.sleep(WORK_STORE_POLL_MILLIS);
         }
-        
-        // Check the state and add a new test case if it has changed.
-        stateChange.setAfterState(createStateSnapshot(runner.getDriver()));   
-        if (stateChange.isStateChanged()) {
-          writeTestCase(actionSequence, stateChange.getAfterState(), result);
+        workStore.setBusy();
+        return true;
+      } catch (IOException e) {
+        LOGGER.log(Level.SEVERE, "Failed to get work from the work store", e);
+        return false;
+      }
+    }
+  }
+  
+  /**
+   * Gives half of our queue to the work store if any other process is idle.
+   * We give away the oldest sequences, which are the shortest and so
+   * probably have the most left to explore under them.
+   */
+  private void shareWork() {
+    try {
+      // Even with nothing to share, so that others don't take us for dead.
+      workStore.heartbeat();
+      if (actionSequences.size() < MIN_SEQUENCES_TO_SHARE || !workStore.hasIdleWorkers()) {
+        return;
+      }
+      synchronized (queueLock) {
+        List<ActionSequence> allSequences = Lists.newArrayList();
+        ActionSequence sequence;
+        while ((sequence = actionSequences.poll()) != null) {
+          allSequences.add(sequence);
         }
-        
-        // Options for checking state:
-        //    Need to ignore the element we just took an action on.
-        //    Look for new or removed elements.
-        //    Look at some CSS properties (disabled, color, etc.) for some subset of elements.
-        //        All elements? Elements with ids/names?
-        // TODO(smcmaster): I wonder if the initial/final action sequences should really count toward the max length check.
-        if (actionSequence.getLength() < maxSequenceLength) {
-          // Extend.
-          List<Action> actions = getAllPossibleActionsInCurrentState();
-          for (Action action : actions) {
-            extendAndPushActionSequence(actionSequences, actionSequence, action);
+        int numToKeep = allSequences.size() - allSequences.size() / 2;
+        List<ActionSequence> toShare = allSequences.subList(numToKeep, allSequences.size());
+        try {
+          workStore.offer(toShare);
+          if (queueJournal != null) {
+            for (ActionSequence shared : toShare) {
+              queueJournal.recordPop(shared);
+            }
           }
+        } catch (IOException e) {
+          LOGGER.log(Level.SEVERE, "Failed to share work", e);
+          numToKeep = allSequences.size();
+        }
+        actionSequences.pushAll(Lists.reverse(allSequences.subList(0, numToKeep)));
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.SEVERE, "Failed to check the work store", e);
+    }
+  }
+  
+  /**
+   * Runs the given action sequence, writing a test case if the state changed.
+   * 
+   * @return the actions available in the resulting state to extend the sequence with
+   *     (empty if the sequence is already at the maximum length), or null if the
+   *     sequence could not be run.
+   */
+  List<Action> exploreActionSequence(final ActionSequenceRunner runner,
+      final ActionSequence actionSequence, int maxSequenceLength) {
+    try {
+      final StateChange stateChange = new StateChange();
+      ActionSequenceResult result = runner.runActionSequence(new ActionSequenceRunnerConfig(
+          config.getUrl(),
+          actionSequence,
+          config.getOracleConfig(),
+          config.getWaitConditionConfig(),
+          new BeforeActionCallback() {
+              @Override
+              public void onBeforeAction(Action action) {
+                if (action == actionSequence.getLastAction()) {
+                  stateChange.setBeforeState(createStateSnapshot(runner.getDriver()));
+                }
+              }
+             },
+          config.getNumRetries(),
+          config.isUseElementsCache(),
+          config.isCaptureScreenshots())
+          .setUsePrefixContinuation(config.isUsePrefixContinuation())
+          .setUseStateSnapshots(config.isUseStateSnapshots()));
+      if (result.hasFailures()) {
+        failedCaseCount.incrementAndGet();
+      }
+      
+      // Check the state and add a new test case if it has changed.
+      try {
+        stateChange.setAfterState(createStateSnapshot(runner.getDriver()));
+        if (stateChange.isStateChanged() && isNewState(stateChange.getAfterState())) {
+          writeTestCase(actionSequence, stateChange.getAfterState(), result);
+        }
+      } finally {
+        // The writers have copied whatever screenshots they wanted by now.
+        result.deleteScreenshots();
+      }
+      
+      // Options for checking state:
+      //    Need to ignore the element we just took an action on.
+      //    Look for new or removed elements.
+      //    Look at some CSS properties (disabled, color, etc.) for some subset of elements.
+      //        All elements? Elements with ids/names?
+      // TODO(smcmaster): I wonder if the initial/final action sequences should really count toward the max length check.
+      if (actionSequence.getLength() < maxSequenceLength) {
+        return getAllPossibleActionsInCurrentState(runner.getDriver());
+      }
+      return Collections.emptyList();
+    } catch (Exception e) {
+      LOGGER.log(Level.SEVERE, "Error running action sequence, out of retries");
+      errorCaseCount.incrementAndGet();
+      runner.closeDriver();
+      return null;
+    } finally {
+      if (!config.isUsePrefixContinuation()) {
+        runner.closeDriver();
+      }
+    }
+  }
+  
+  /**
+   * Pushes the extensions of a finished action sequence and wakes up any
+   * workers waiting for more to do.
+   * 
+   * @param extensionActions the actions to extend the sequence with, or null if
+   *     it could not be run.
+   */
+  private void finishActionSequence(ActionSequence actionSequence, List<Action> extensionActions) {
+    try {
+      if (extensionActions != null) {
+        // Collect the extensions and push them all at once.
+        ActionSequenceQueue extendedSequences = new ActionSequenceQueue();
+        for (Action action : extensionActions) {
+          extendAndPushActionSequence(actionSequences, extendedSequences, actionSequence, action);
+        }
+        pushExtendedSequences(Lists.reverse(extendedSequences.asList()));
+        if (workStore != null) {
+          shareWork();
         }
         
-        if (config.getActionSequencePrioritizer() != null) {
-          actionSequences = config.getActionSequencePrioritizer().prioritize(actionSequences);
+        if ((config.getActionSequencePrioritizer() != null && !isIncrementalPrioritizer()) ||
+            (config.getQueueFilename() != null && !config.getQueueFilename().isEmpty())) {
+          synchronized (queueLock) {
+            prioritizeAndSaveQueue();
+          }
         }
         LOGGER.info("Current queue length: " + actionSequences.size());
-        if (config.getQueueFilename() != null && !config.getQueueFilename().isEmpty()) {
-          ActionSequenceQueue.writeToFile(actionSequences, config.getQueueFilename());
+      }
+    } finally {
+      inFlightCount.decrementAndGet();
+      synchronized (queueLock) {
+        queueLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Pushes the given sequences onto the queue, journaling them if necessary.
+   */
+  private void pushExtendedSequences(List<ActionSequence> extendedSequences) {
+    if (queueJournal != null) {
+      try {
+        queueJournal.pushAll(actionSequences, extendedSequences);
+        return;
+      } catch (Exception e) {
+        LOGGER.log(Level.SEVERE, "Failed to write action sequence queue journal", e);
+      }
+    }
+    actionSequences.pushAll(extendedSequences);
+  }
+
+  /**
+   * Reorders the queue with the configured prioritizer and checkpoints it
+   * to the configured file. Must be called holding queueLock.
+   */
+  private void prioritizeAndSaveQueue() {
+    boolean writeQueue = queueJournal == null &&
+        config.getQueueFilename() != null && !config.getQueueFilename().isEmpty();
+    if (isIncrementalPrioritizer()) {
+      // Already in order, and asList() gives a consistent snapshot to write.
+      if (writeQueue) {
+        ActionSequenceQueue.writeToFile(actionSequences, config.getQueueFilename(),
+            config.getSerializationFormat());
+      }
+    } else if (config.getActionSequencePrioritizer() != null || writeQueue) {
+      // Take everything so that other workers can't pop while we reorder;
+      // they wait, since we are still in flight.
+      ActionSequenceQueue queue = new ActionSequenceQueue();
+      queue.pushAll(Lists.reverse(((ConcurrentActionSequenceQueue) actionSequences).drain()));
+      if (config.getActionSequencePrioritizer() != null) {
+        queue = config.getActionSequencePrioritizer().prioritize(queue);
+      }
+      if (writeQueue) {
+        ActionSequenceQueue.writeToFile(queue, config.getQueueFilename(),
+            config.getSerializationFormat());
+      }
+      actionSequences.pushAll(Lists.reverse(queue.asList()));
+    }
+    
+    if (queueJournal != null) {
+      try {
+        if (queueJournal.shouldCompact(actionSequences.size())) {
+          queueJournal.compact(actionSequences);
         }
+        queueJournal.flush();
       } catch (Exception e) {
-        LOGGER.log(Level.SEVERE, "Error running action sequence, out of retries");
-        ++errorCaseCount;
-      } finally {
-        try { runner.getDriver().close(); } catch (Exception e) {}
+        LOGGER.log(Level.SEVERE, "Failed to write action sequence queue journal", e);
       }
-      
-      LOGGER.info(String.format("Run: %d, Failed: %d, Errors: %d",
-          testCaseCount, failedCaseCount, errorCaseCount));
     }
   }
 
   /**
    * Extends the given action sequence with the given action, appending final
-   * action sequences as necessary.
+   * action sequences as necessary, and pushes the result if it passes filtering.
+   * 
+   * @param existingActionSequences the queue the filters check against.
+   * @param targetActionSequences the queue to push the extended sequences to.
    */
-  private void extendAndPushActionSequence(
-      ActionSequenceQueue actionSequences, final ActionSequence actionSequence, Action action) {
-    ActionSequence extendedSequence = new ActionSequence(actionSequence);
-    extendedSequence.addAction(action);
+  private void extendAndPushActionSequence(ActionSequenceQueue existingActionSequences,
+      ActionSequenceQueue targetActionSequences, final ActionSequence actionSequence,
+      Action action) {
+    ActionSequence extendedSequence = actionSequence.extend(action);
     if (!config.getFinalActionSequences().isEmpty()) {
       for (ActionSequence finalActionSequence : config.getFinalActionSequences()) {
-        ActionSequence extendedSequenceWithFinal = new ActionSequence(extendedSequence);
-        extendedSequenceWithFinal.addActionsFrom(finalActionSequence);
-        checkPushActionSequence(actionSequences, extendedSequenceWithFinal);
+        ActionSequence extendedSequenceWithFinal =
+            extendedSequence.extendWith(finalActionSequence);
+        checkPushActionSequence(existingActionSequences, targetActionSequences,
+            extendedSequenceWithFinal);
       }
     } else {
       // Push the action sequence as-is.
-      checkPushActionSequence(actionSequences, extendedSequence);
+      checkPushActionSequence(existingActionSequences, targetActionSequences, extendedSequence);
     }
   }
 
   /**
    * Creates and writes out a test case from the given action sequence.
+   * Synchronized because the test case writers are shared by all workers.
    */
-  private void writeTestCase(final ActionSequence actionSequence,
+  private synchronized void writeTestCase(final ActionSequence actionSequence,
       List<State> finalState, ActionSequenceResult result) {
     String oracleConfigFactoryClassName = null;
     if (config.getOracleConfigFactory() != null) {
@@ -336,7 +912,17 @@ public class WebTestingExplorer {
     TestCase testCase = new TestCase(config.getUrl(), actionSequence, finalState,
         oracleConfigFactoryClassName, waitConditionConfigFactoryClassName,
         buildTestCaseConfig());
-    String testCaseId = UUID.randomUUID().toString();
+    String testCaseId = null;
+    if (config.getCoordinator() != null) {
+      try {
+        testCaseId = Integer.toString(config.getCoordinator().nextTestCaseNumber());
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Failed to get a test case number from the coordinator", e);
+      }
+    }
+    if (testCaseId == null) {
+      testCaseId = UUID.randomUUID().toString();
+    }
     for (TestCaseWriter testCaseWriter : config.getTestCaseWriters()) {
       testCaseWriter.writeTestCase(testCase, testCaseId, result);
     }
@@ -354,15 +940,41 @@ public class WebTestingExplorer {
    * Adds the given action sequence to the queue to be run assuming it passes
    * all filtering.
    */
-  private void checkPushActionSequence(ActionSequenceQueue actionSequences,
-      ActionSequence sequence) {
+  private void checkPushActionSequence(ActionSequenceQueue existingActionSequences,
+      ActionSequenceQueue targetActionSequences, ActionSequence sequence) {
     for (ActionSequenceFilter filter : config.getActionSequenceFilters()) {
-      if (filter.shouldExplore(sequence, actionSequences)) {
-        actionSequences.push(sequence);
+      if (filter.shouldExplore(sequence, existingActionSequences)) {
+        targetActionSequences.push(sequence);
       }
     }
   }
   
+  private synchronized XStream getStateXStream() {
+    if (stateXStream == null) {
+      stateXStream = StateXStream.createXStream();
+    }
+    return stateXStream;
+  }
+  
+  /**
+   * When exploring with a coordinator, checks whether any explorer has
+   * already written a test case ending in the given state. Otherwise every
+   * state counts as new.
+   */
+  private boolean isNewState(List<State> state) {
+    if (config.getCoordinator() == null) {
+      return true;
+    }
+    String stateKey = Hashing.sha1().hashBytes(
+        getStateXStream().toXML(state).getBytes(Charsets.UTF_8)).toString();
+    try {
+      return config.getCoordinator().markStateVisited(stateKey);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Failed to check the state with the coordinator", e);
+      return true;
+    }
+  }
+  
   /**
    * Takes a snapshot of the current state using each of the configured
    * checkers.
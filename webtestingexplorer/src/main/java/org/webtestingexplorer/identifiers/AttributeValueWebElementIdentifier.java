@@ -23,6 +23,9 @@ package org.webtestingexplorer.identifiers;
  */
 public class AttributeValueWebElementIdentifier extends XpathWebElementIdentifier {
 
+  private String attributeName;
+  private String attributeValue;
+
   protected AttributeValueWebElementIdentifier() {
     // For xstream.
     super();
@@ -34,5 +37,19 @@ public class AttributeValueWebElementIdentifier extends XpathWebElementIdentifie
   
   public AttributeValueWebElementIdentifier(String name, String value, String frameIdentifier) {
     super(String.format("//*[@%s='%s']", name, value), frameIdentifier);
+    this.attributeName = name;
+    this.attributeValue = value;
+  }
+
+  /**
+   * @return the attribute name, which may be null if this was read in from
+   *     a file written before we kept it.
+   */
+  public String getAttributeName() {
+    return attributeName;
+  }
+
+  public String getAttributeValue() {
+    return attributeValue;
   }
 }
@@ -1,7 +1,5 @@
 package org.webtestingexplorer.identifiers;
 
-import java.util.List;
-
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.webtestingexplorer.driver.WebDriverWrapper;
@@ -34,16 +32,7 @@ public class ClassIndexWebElementIdentifier extends IndexWebElementIdentifier {
 
   @Override
   public WebElementWrapper findElement(WebDriverWrapper driver) {
-    List<WebElementWithIdentifier> allElements = getAllElementsWithBasis(driver);
-    int currentIndex = 0;
-    for (WebElementWithIdentifier element : allElements) {
-      if (className.equals(element.getElement().getAttribute("class")) && currentIndex == index) {
-        return new WebElementWrapper(element.getElement());
-      }
-      ++currentIndex;
-    }
-    logNotFoundMessage();
-    return null;
+    return findElementByIndex(driver, null, className);
   }
 
   @Override
@@ -19,6 +19,7 @@ import com.google.common.collect.Lists;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.openqa.selenium.WebElement;
 import org.webtestingexplorer.driver.WebDriverWrapper;
 import org.webtestingexplorer.driver.WebElementWrapper;
 
@@ -63,24 +64,28 @@ public class IndexWebElementIdentifier extends WebElementIdentifier {
     return index;
   }
   
+  public IndexBasis getBasis() {
+    return basis;
+  }
+  
   /**
-   * Finds all the web elements with the current basis using the
-   * appropriate selector.
+   * Finds the element at our index among the elements with the current basis,
+   * if it has the given tag name and class (null for any).
    */
-  protected List<WebElementWithIdentifier> getAllElementsWithBasis(WebDriverWrapper driver) {
-    List<WebElementWithIdentifier> allElements;
-    if (basis == IndexBasis.ACTIONABLE) {
-      allElements = driver.getActionableElementsForFrame(frameIdentifier);
-    } else {
-      allElements = driver.getStatefulElementsForFrame(frameIdentifier);
+  protected WebElementWrapper findElementByIndex(WebDriverWrapper driver, String tagName,
+      String className) {
+    WebElement element = driver.findElementByIndex(frameIdentifier, basis, index, tagName,
+        className);
+    if (element == null) {
+      logNotFoundMessage();
+      return null;
     }
-    assert index < allElements.size();
-    return allElements;
+    return new WebElementWrapper(element);
   }
 
   @Override
   public WebElementWrapper findElement(WebDriverWrapper driver) {
-    return new WebElementWrapper(getAllElementsWithBasis(driver).get(index).getElement());
+    return findElementByIndex(driver, null, null);
   }
 
   @Override
@@ -31,6 +31,10 @@ public class CountOfElementsState implements State {
   public CountOfElementsState(int numElements) {
     this.numElements = numElements;
   }
+
+  public int getNumElements() {
+    return numElements;
+  }
   
   @Override
   public boolean equals(Object other) {
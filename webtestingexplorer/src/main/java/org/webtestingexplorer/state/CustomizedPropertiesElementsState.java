@@ -47,6 +47,12 @@ import javax.xml.parsers.ParserConfigurationException;
 public class CustomizedPropertiesElementsState extends ElementsState {
   List<String> customizedProperties;
 
+  /**
+   * For {@link StateCodec}.
+   */
+  CustomizedPropertiesElementsState() {
+  }
+
   public CustomizedPropertiesElementsState(List<String> properties, String xmlString) {
     elementType = ElementType.ALL;
     if (properties != null) {
@@ -46,6 +46,22 @@ public class SelectedElementsState implements State {
     }
   }
 
+  /**
+   * For {@link StateCodec}.
+   */
+  SelectedElementsState(Set<WebElementIdentifier> identifiers, String selectorKey) {
+    this.identifiers = identifiers;
+    this.selectorKey = selectorKey;
+  }
+
+  public Set<WebElementIdentifier> getIdentifiers() {
+    return identifiers;
+  }
+
+  public String getSelectorKey() {
+    return selectorKey;
+  }
+
   @Override
   public boolean equals(Object other) {
     if (other == this) {
@@ -0,0 +1,198 @@
+/*
+Copyright 2011 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.state;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.webtestingexplorer.actions.ActionSequenceCodec;
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.identifiers.WebElementIdentifier;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary encoding for the built-in {@link State} classes; the binary
+ * counterpart of {@link StateXStream}. Anything else (e.g. subclasses of
+ * {@link JSONObjectState}) is written as XStream XML.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class StateCodec {
+
+  private static final int STATE_XSTREAM = 0;
+  private static final int STATE_NULL = 1;
+  private static final int STATE_COUNT = 2;
+  private static final int STATE_SELECTED = 3;
+  private static final int STATE_VISIBLE = 4;
+  private static final int STATE_CUSTOMIZED = 5;
+
+  private final XStream xstream;
+
+  /**
+   * For the identifiers inside states.
+   */
+  private final ActionSequenceCodec actionSequenceCodec;
+
+  public StateCodec() {
+    this(StateXStream.createXStream(), new ActionSequenceCodec());
+  }
+
+  public StateCodec(XStream xstream, ActionSequenceCodec actionSequenceCodec) {
+    this.xstream = xstream;
+    this.actionSequenceCodec = actionSequenceCodec;
+  }
+
+  /**
+   * Writes a list of states, which may be null.
+   */
+  public void writeStates(BinaryEncoder encoder, List<State> states) throws IOException {
+    encoder.writeBoolean(states != null);
+    if (states == null) {
+      return;
+    }
+    encoder.writeVarInt(states.size());
+    for (State state : states) {
+      writeState(encoder, state);
+    }
+  }
+
+  public List<State> readStates(BinaryDecoder decoder) throws IOException {
+    if (!decoder.readBoolean()) {
+      return null;
+    }
+    int size = decoder.readVarInt();
+    List<State> states = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; ++i) {
+      states.add(readState(decoder));
+    }
+    return states;
+  }
+
+  public void writeState(BinaryEncoder encoder, State state) throws IOException {
+    Class<?> stateClass = state.getClass();
+    if (stateClass == NullState.class) {
+      encoder.writeVarInt(STATE_NULL);
+    } else if (stateClass == CountOfElementsState.class) {
+      encoder.writeVarInt(STATE_COUNT);
+      encoder.writeVarInt(((CountOfElementsState) state).getNumElements());
+    } else if (stateClass == SelectedElementsState.class) {
+      SelectedElementsState selectedState = (SelectedElementsState) state;
+      encoder.writeVarInt(STATE_SELECTED);
+      encoder.writeString(selectedState.getSelectorKey());
+      encoder.writeVarInt(selectedState.getIdentifiers().size());
+      for (WebElementIdentifier identifier : selectedState.getIdentifiers()) {
+        actionSequenceCodec.writeIdentifier(encoder, identifier);
+      }
+    } else if (stateClass == VisibleElementsState.class) {
+      encoder.writeVarInt(STATE_VISIBLE);
+      writeElementProperties(encoder, (ElementsState) state);
+    } else if (stateClass == CustomizedPropertiesElementsState.class) {
+      CustomizedPropertiesElementsState customizedState = (CustomizedPropertiesElementsState) state;
+      encoder.writeVarInt(STATE_CUSTOMIZED);
+      encoder.writeVarInt(customizedState.customizedProperties.size());
+      for (String property : customizedState.customizedProperties) {
+        encoder.writeString(property);
+      }
+      writeElementProperties(encoder, customizedState);
+    } else {
+      encoder.writeVarInt(STATE_XSTREAM);
+      encoder.writeXStream(xstream, state);
+    }
+  }
+
+  public State readState(BinaryDecoder decoder) throws IOException {
+    int type = decoder.readVarInt();
+    switch (type) {
+      case STATE_XSTREAM:
+        return (State) decoder.readXStream(xstream);
+      case STATE_NULL:
+        return new NullState();
+      case STATE_COUNT:
+        return new CountOfElementsState(decoder.readVarInt());
+      case STATE_SELECTED:
+        String selectorKey = decoder.readString();
+        int size = decoder.readVarInt();
+        Set<WebElementIdentifier> identifiers = Sets.newLinkedHashSet();
+        for (int i = 0; i < size; ++i) {
+          identifiers.add(actionSequenceCodec.readIdentifier(decoder));
+        }
+        return new SelectedElementsState(identifiers, selectorKey);
+      case STATE_VISIBLE:
+        VisibleElementsState visibleState = new VisibleElementsState();
+        readElementProperties(decoder, visibleState);
+        return visibleState;
+      case STATE_CUSTOMIZED:
+        CustomizedPropertiesElementsState customizedState = new CustomizedPropertiesElementsState();
+        int numProperties = decoder.readVarInt();
+        customizedState.customizedProperties = Lists.newArrayListWithCapacity(numProperties);
+        for (int i = 0; i < numProperties; ++i) {
+          customizedState.customizedProperties.add(decoder.readString());
+        }
+        readElementProperties(decoder, customizedState);
+        return customizedState;
+      default:
+        throw new IOException("Unknown state type: " + type);
+    }
+  }
+
+  /**
+   * Property names (and most values) repeat from element to element, so they
+   * go through the string dictionary.
+   */
+  private void writeElementProperties(BinaryEncoder encoder, ElementsState state)
+      throws IOException {
+    encoder.writeVarInt(state.elementType.ordinal());
+    encoder.writeVarInt(state.elementProperties.size());
+    for (Map.Entry<WebElementIdentifier, Map<String, String>> entry :
+        state.elementProperties.entrySet()) {
+      actionSequenceCodec.writeIdentifier(encoder, entry.getKey());
+      encoder.writeVarInt(entry.getValue().size());
+      for (Map.Entry<String, String> property : entry.getValue().entrySet()) {
+        encoder.writeString(property.getKey());
+        encoder.writeString(property.getValue());
+      }
+    }
+  }
+
+  private void readElementProperties(BinaryDecoder decoder, ElementsState state)
+      throws IOException {
+    int elementType = decoder.readVarInt();
+    if (elementType >= ElementsState.ElementType.values().length) {
+      throw new IOException("Unknown element type: " + elementType);
+    }
+    state.elementType = ElementsState.ElementType.values()[elementType];
+    int numElements = decoder.readVarInt();
+    state.elementProperties = new HashMap<WebElementIdentifier, Map<String, String>>();
+    for (int i = 0; i < numElements; ++i) {
+      WebElementIdentifier identifier = actionSequenceCodec.readIdentifier(decoder);
+      int numProperties = decoder.readVarInt();
+      Map<String, String> properties = new HashMap<String, String>();
+      for (int j = 0; j < numProperties; ++j) {
+        String key = decoder.readString();
+        properties.put(key, decoder.readString());
+      }
+      state.elementProperties.put(identifier, properties);
+    }
+  }
+}
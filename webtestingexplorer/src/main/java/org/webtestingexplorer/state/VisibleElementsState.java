@@ -32,6 +32,12 @@ import java.util.Map;
  * @author xyuan@google.com (Xun Yuan)
  */
 public class VisibleElementsState extends ElementsState {
+
+  /**
+   * For {@link StateCodec}.
+   */
+  VisibleElementsState() {
+  }
   
   public VisibleElementsState(WebDriverWrapper driver) {
     List<WebElementWithIdentifier> statefulElements = driver.getStatefulElements();
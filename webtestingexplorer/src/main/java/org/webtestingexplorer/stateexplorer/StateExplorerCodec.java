@@ -0,0 +1,107 @@
+package org.webtestingexplorer.stateexplorer;
+
+import com.google.common.collect.Lists;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.webtestingexplorer.actions.Action;
+import org.webtestingexplorer.actions.ActionSequenceCodec;
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.state.State;
+import org.webtestingexplorer.state.StateCodec;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding for {@link StateExplorerStateGraph}s; the binary
+ * counterpart of {@link StateExplorerXStream}. The graph has cycles, so we
+ * write a table of all the reachable states first and then the edges between
+ * them as indexes into the table.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class StateExplorerCodec {
+
+  private final ActionSequenceCodec actionSequenceCodec;
+  private final StateCodec stateCodec;
+
+  public StateExplorerCodec() {
+    XStream xstream = StateExplorerXStream.createXStream();
+    actionSequenceCodec = new ActionSequenceCodec(xstream);
+    stateCodec = new StateCodec(xstream, actionSequenceCodec);
+  }
+
+  public void writeStateGraph(BinaryEncoder encoder, StateExplorerStateGraph graph)
+      throws IOException {
+    encoder.writeHeader(BinaryFormat.KIND_STATE_EXPLORER_STATE_GRAPH);
+
+    // Number the states breadth-first from the root, which is number 0.
+    Map<StateExplorerState, Integer> indexes =
+        new IdentityHashMap<StateExplorerState, Integer>();
+    List<StateExplorerState> states = Lists.newArrayList();
+    if (graph.getRootState() != null) {
+      indexes.put(graph.getRootState(), 0);
+      states.add(graph.getRootState());
+    }
+    for (int i = 0; i < states.size(); ++i) {
+      for (StateExplorerState followingState : states.get(i).getFollowingStates()) {
+        if (!indexes.containsKey(followingState)) {
+          indexes.put(followingState, states.size());
+          states.add(followingState);
+        }
+      }
+    }
+
+    encoder.writeVarInt(states.size());
+    for (StateExplorerState state : states) {
+      stateCodec.writeStates(encoder, Lists.newArrayList(state.getStates()));
+      encoder.writeVarInt(state.getActions().size());
+      for (Action action : state.getActions()) {
+        actionSequenceCodec.writeAction(encoder, action);
+      }
+    }
+    for (StateExplorerState state : states) {
+      encoder.writeVarInt(state.getFollowingStates().size());
+      for (StateExplorerState followingState : state.getFollowingStates()) {
+        encoder.writeVarInt(indexes.get(followingState));
+      }
+    }
+    encoder.flush();
+  }
+
+  public StateExplorerStateGraph readStateGraph(BinaryDecoder decoder) throws IOException {
+    decoder.readHeader(BinaryFormat.KIND_STATE_EXPLORER_STATE_GRAPH);
+    int numStates = decoder.readVarInt();
+    StateExplorerState[] states = new StateExplorerState[numStates];
+    for (int i = 0; i < numStates; ++i) {
+      List<State> stateList = stateCodec.readStates(decoder);
+      int numActions = decoder.readVarInt();
+      List<Action> actions = Lists.newArrayListWithCapacity(numActions);
+      for (int j = 0; j < numActions; ++j) {
+        actions.add(actionSequenceCodec.readAction(decoder));
+      }
+      states[i] = new StateExplorerState(stateList, actions);
+    }
+    for (int i = 0; i < numStates; ++i) {
+      int numFollowingStates = decoder.readVarInt();
+      for (int j = 0; j < numFollowingStates; ++j) {
+        int index = decoder.readVarInt();
+        if (index >= numStates) {
+          throw new IOException("Bad state index: " + index);
+        }
+        states[i].addFollowingState(states[index]);
+      }
+    }
+
+    StateExplorerStateGraph graph = new StateExplorerStateGraph();
+    if (numStates > 0) {
+      graph.setRootState(states[0]);
+    }
+    return graph;
+  }
+}
@@ -26,6 +26,14 @@ public class StateExplorerState {
     followingStates = Sets.newHashSet();
   }
   
+  public Set<State> getStates() {
+    return states;
+  }
+
+  public Set<Action> getActions() {
+    return actions;
+  }
+
   public Set<StateExplorerState> getFollowingStates() {
     return followingStates;
   }
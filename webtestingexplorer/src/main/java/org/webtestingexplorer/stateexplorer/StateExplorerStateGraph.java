@@ -4,10 +4,20 @@ import com.google.common.collect.Sets;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Set;
@@ -73,11 +83,34 @@ public class StateExplorerStateGraph {
   }
   
   /**
-   * Writes the given state graph to the given filesystem location,
+   * Writes the given state graph to the given filesystem location in XML,
    * overwriting if it already exists.
    */
   public static void writeToFile(StateExplorerStateGraph queue, String filename) {
+    writeToFile(queue, filename, SerializationFormat.XML);
+  }
+
+  /**
+   * Writes the given state graph to the given filesystem location in the
+   * given format, overwriting if it already exists.
+   */
+  public static void writeToFile(StateExplorerStateGraph queue, String filename,
+      SerializationFormat format) {
     LOGGER.info("Writing state graph to file: " + filename);
+    if (format == SerializationFormat.BINARY) {
+      OutputStream out = null;
+      try {
+        out = new BufferedOutputStream(new FileOutputStream(filename));
+        new StateExplorerCodec().writeStateGraph(new BinaryEncoder(out), queue);
+      } catch (Exception e) {
+        LOGGER.log(Level.SEVERE, "Failed to write " + filename, e);
+      } finally {
+        if (out != null) {
+          try { out.close(); } catch (Exception e) {}
+        }
+      }
+      return;
+    }
     String xml = xstream.toXML(queue);
     Writer out = null;
     try {
@@ -92,19 +125,24 @@ public class StateExplorerStateGraph {
   }
 
   /**
-   * Reads a state graph from the given file system location.
+   * Reads a state graph in either format from the given file system location.
    * 
    * @return the read-in state graph, or null if the file does not exist.
    */
   public static StateExplorerStateGraph readFromFile(String filename) {
     LOGGER.info("Reading action sequence queue from file: " + filename);
     File inputFile = new File(filename);
-    FileInputStream inputStream = null;
+    InputStream inputStream = null;
     try {
-      inputStream = new FileInputStream(inputFile);
+      inputStream = new BufferedInputStream(new FileInputStream(inputFile));
+      if (BinaryFormat.isBinary(inputStream)) {
+        return new StateExplorerCodec().readStateGraph(new BinaryDecoder(inputStream));
+      }
       return (StateExplorerStateGraph) xstream.fromXML(inputStream);
     } catch (FileNotFoundException e) {
       return null;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read " + filename, e);
     } finally {
       if (inputStream != null) {
         try { inputStream.close(); } catch (Exception e) {}      }
@@ -1,10 +1,8 @@
 package org.webtestingexplorer.stateexplorer;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
-import org.openqa.selenium.WebElement;
 import org.webtestingexplorer.actions.Action;
 import org.webtestingexplorer.actions.ActionGenerator;
 import org.webtestingexplorer.actions.ActionSequence;
@@ -14,12 +12,12 @@ import org.webtestingexplorer.actions.ForwardAction;
 import org.webtestingexplorer.actions.RefreshAction;
 import org.webtestingexplorer.config.ActionGeneratorConfig;
 import org.webtestingexplorer.config.ActionSequenceFilter;
-import org.webtestingexplorer.config.WebElementSelector;
 import org.webtestingexplorer.config.WebTestingConfig;
 import org.webtestingexplorer.driver.ActionSequenceRunner;
 import org.webtestingexplorer.driver.ActionSequenceRunner.ActionSequenceResult;
 import org.webtestingexplorer.driver.ActionSequenceRunner.BeforeActionCallback;
 import org.webtestingexplorer.driver.ActionSequenceRunnerConfig;
+import org.webtestingexplorer.driver.EquivalentElementsIndex;
 import org.webtestingexplorer.driver.WebDriverWrapper;
 import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
 import org.webtestingexplorer.state.State;
@@ -27,7 +25,6 @@ import org.webtestingexplorer.state.StateChecker;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -163,75 +160,31 @@ public class WebTestingStateExplorer {
 
     // Look for element actions, filtering out ones in the same equivalence classes.
     Set<String> markedEquivalentSelectors = Sets.newHashSet();
-    Map<String, Set<WebElement>> cachedEquivalentElements = cacheEquivalentElements();
+    EquivalentElementsIndex equivalentElementsIndex = runner.getDriver().getEquivalentElementsIndex(
+        config.getEquivalentWebElementSelectors());
     
     List<WebElementWithIdentifier> allElements = runner.getDriver().getActionableElements();
+    List<WebElementWithIdentifier> elementsToAddActionsFor = Lists.newArrayList();
     for (WebElementWithIdentifier elementWithId : allElements) {
-      boolean shouldAddActions = checkEquivalentElementSelectors(
-          cachedEquivalentElements,
-          markedEquivalentSelectors,
-          elementWithId);
-      
-      if (shouldAddActions) {
-        List<ActionGeneratorConfig> actionGeneratorConfigs = Lists.newArrayList();
-        for (ActionGeneratorConfig actionGeneratorConfig : config.getActionGeneratorConfigs()) {
-          if (actionGeneratorConfig.isActive(runner.getDriver())) {
-            actionGeneratorConfigs.add(actionGeneratorConfig);
-          }
-        }
-        Set<Action> newActions = actionGenerator.generateActionsForElement(
-            runner.getDriver(), actionGeneratorConfigs, elementWithId);
-        actions.addAll(newActions);
+      if (equivalentElementsIndex.shouldAddActions(
+          elementWithId.getElement(), markedEquivalentSelectors)) {
+        elementsToAddActionsFor.add(elementWithId);
       }
     }
     
-    LOGGER.info("All possible actions in current state: " + actions.toString());
-    return actions;
-  }
-
-  /**
-   * @return a map of selector name -> elements returned by that selector for the
-   *    elements defined as equivalent in the config.
-   */
-  private Map<String, Set<WebElement>> cacheEquivalentElements() {
-    Map<String, Set<WebElement>> cachedEquivalentElements = Maps.newHashMap();
-    for (Map.Entry<String, WebElementSelector> equivalentSelector : config.getEquivalentWebElementSelectors().entrySet()) {
-      Set<WebElement> equivalentElements = Sets.newLinkedHashSet(equivalentSelector.getValue().select(runner.getDriver().getDriver()));
-      cachedEquivalentElements.put(equivalentSelector.getKey(), equivalentElements);
-    }
-    return cachedEquivalentElements;
-  }
-
-  /**
-   * Checks to see if a given web element is equivalent to one we have already added
-   * an action for.
-   * 
-   * @param cachedEquivalentElements the equivalent elements by selector name in the current state.
-   * @param markedEquivalentSelectors tracks the equivalent selectors that have already been addressed.
-   * @param elementWithId the element to check for equivalence to already-added elements.
-   * @return true if we should add actions for the element, false if we should skip it.
-   */
-  private boolean checkEquivalentElementSelectors(
-      Map<String, Set<WebElement>> cachedEquivalentElements,
-      Set<String> markedEquivalentSelectors,
-      WebElementWithIdentifier elementWithId) {
-    
-    boolean shouldAddActions = true;
-    
-    for (Map.Entry<String, Set<WebElement>> equivalentElements : cachedEquivalentElements.entrySet()) {
-      
-      if (equivalentElements.getValue().contains(elementWithId.safeGetElement(runner.getDriver())) &&
-        markedEquivalentSelectors.contains(equivalentElements.getKey())) {
-          // We have already added an element from this set.
-          LOGGER.info("Filtering an element from equivalent selector: " + equivalentElements.getKey());
-          shouldAddActions = false;
+    List<ActionGeneratorConfig> actionGeneratorConfigs = Lists.newArrayList();
+    for (ActionGeneratorConfig actionGeneratorConfig : config.getActionGeneratorConfigs()) {
+      if (actionGeneratorConfig.isActive(runner.getDriver())) {
+        actionGeneratorConfigs.add(actionGeneratorConfig);
       }
-      // Mark that we will add an element from this set so that we don't add
-      // any more.
-      markedEquivalentSelectors.add(equivalentElements.getKey());        
+    }
+    for (Set<Action> newActions : actionGenerator.generateActionsForElements(
+        runner.getDriver(), actionGeneratorConfigs, elementsToAddActionsFor)) {
+      actions.addAll(newActions);
     }
     
-    return shouldAddActions;
+    LOGGER.info("All possible actions in current state: " + actions.toString());
+    return actions;
   }
 
   // As long as the test case is longer than the previous one, you don't need to
@@ -264,6 +217,8 @@ public class WebTestingStateExplorer {
         if (result.hasFailures()) {
           ++failedCaseCount;
         }
+        // Nothing here writes them out.
+        result.deleteScreenshots();
         
         // Push the state. Reuse the instance out of the state graph if it's already in there.
         StateExplorerState newState = stateGraph.findState(createStateExplorerStateSnapshot(runner.getDriver()));
@@ -272,7 +227,8 @@ public class WebTestingStateExplorer {
         }
         currentState = newState;
         if (config.getStateFilename() != null && !config.getStateFilename().isEmpty()) {
-          StateExplorerStateGraph.writeToFile(stateGraph, config.getStateFilename());
+          StateExplorerStateGraph.writeToFile(stateGraph, config.getStateFilename(),
+              config.getSerializationFormat());
         }
         
         // Options for checking state:
@@ -294,7 +250,8 @@ public class WebTestingStateExplorer {
         }
         LOGGER.info("Current queue length: " + actionSequences.size());
         if (config.getQueueFilename() != null && !config.getQueueFilename().isEmpty()) {
-          ActionSequenceQueue.writeToFile(actionSequences, config.getQueueFilename());
+          ActionSequenceQueue.writeToFile(actionSequences, config.getQueueFilename(),
+              config.getSerializationFormat());
         }
       } catch (Exception e) {
         LOGGER.log(Level.SEVERE, "Error running action sequence, out of retries");
@@ -311,12 +268,11 @@ public class WebTestingStateExplorer {
    */
   private void extendAndPushActionSequence(
       ActionSequenceQueue actionSequences, final ActionSequence actionSequence, Action action) {
-    ActionSequence extendedSequence = new ActionSequence(actionSequence);
-    extendedSequence.addAction(action);
+    ActionSequence extendedSequence = actionSequence.extend(action);
     if (!config.getFinalActionSequences().isEmpty()) {
       for (ActionSequence finalActionSequence : config.getFinalActionSequences()) {
-        ActionSequence extendedSequenceWithFinal = new ActionSequence(extendedSequence);
-        extendedSequenceWithFinal.addActionsFrom(finalActionSequence);
+        ActionSequence extendedSequenceWithFinal =
+            extendedSequence.extendWith(finalActionSequence);
         checkPushActionSequence(actionSequences, extendedSequenceWithFinal);
       }
     } else {
@@ -2,9 +2,15 @@ package org.webtestingexplorer.testcase;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.logging.Logger;
 
 /**
@@ -24,15 +30,22 @@ public class ReplayableTestCaseReader {
   }
 
   /**
-   * Reads in a test case from the given file system path.
+   * Reads in a test case, in either format, from the given file system path.
    */
   public TestCase readTestCase(String path) throws FileNotFoundException {
     LOGGER.info("Reading " + path);
     File inputFile = new File(path);
-    FileInputStream inputStream = null;
+    InputStream inputStream = null;
     try {
-      inputStream = new FileInputStream(inputFile);
+      inputStream = new BufferedInputStream(new FileInputStream(inputFile));
+      if (BinaryFormat.isBinary(inputStream)) {
+        return new TestCaseCodec().readTestCase(new BinaryDecoder(inputStream));
+      }
       return (TestCase) xstream.fromXML(inputStream);
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read " + path, e);
     } finally {
       if (inputStream != null) {
         try { inputStream.close(); } catch (Exception e) {}      }
@@ -2,10 +2,14 @@ package org.webtestingexplorer.testcase;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.SerializationFormat;
 import org.webtestingexplorer.driver.ActionSequenceRunner.ActionSequenceResult;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.logging.Level;
@@ -23,14 +27,25 @@ public class ReplayableTestCaseWriter extends AbstractTestCaseWriter {
 
   private String outputDirectory;
   private XStream xstream;
+  private SerializationFormat format;
   
   /**
    * @param outputDirectory
    */
   public ReplayableTestCaseWriter(String outputDirectory) {
+    this(outputDirectory, SerializationFormat.XML);
+  }
+  
+  /**
+   * @param outputDirectory
+   * @param format the format to write test cases in; {@link ReplayableTestCaseReader}
+   *     reads either.
+   */
+  public ReplayableTestCaseWriter(String outputDirectory, SerializationFormat format) {
     xstream = TestCaseXStream.createXStream();
     new File(outputDirectory).mkdirs();
     this.outputDirectory = outputDirectory;
+    this.format = format;
   }
 
   /**
@@ -38,6 +53,10 @@ public class ReplayableTestCaseWriter extends AbstractTestCaseWriter {
    */
   @Override
   public void writeTestCase(TestCase testCase, String testCaseId, ActionSequenceResult result) {
+    if (format == SerializationFormat.BINARY) {
+      writeBinaryTestCase(testCase, testCaseId);
+      return;
+    }
     String fileName = "test-" + testCaseId + ".xml";
     String xml = xstream.toXML(testCase);
     String fullPath = outputDirectory + "/" + fileName;
@@ -54,4 +73,20 @@ public class ReplayableTestCaseWriter extends AbstractTestCaseWriter {
       try { out.close(); } catch (Exception e) {}
     }
   }
+
+  private void writeBinaryTestCase(TestCase testCase, String testCaseId) {
+    String fullPath = outputDirectory + "/test-" + testCaseId + ".bin";
+    LOGGER.log(Level.INFO, "Writing test case to " + fullPath);
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(fullPath));
+      new TestCaseCodec().writeTestCase(new BinaryEncoder(out), testCase);
+    } catch (Exception e) {
+      LOGGER.log(Level.SEVERE, "Failed to write " + fullPath, e);
+    } finally {
+      if (out != null) {
+        try { out.close(); } catch (Exception e) {}
+      }
+    }
+  }
 }
@@ -1,7 +1,7 @@
 package org.webtestingexplorer.testcase;
 
-import org.apache.commons.io.FileUtils;
 import org.webtestingexplorer.driver.ActionSequenceRunner.ActionSequenceResult;
+import org.webtestingexplorer.driver.Screenshot;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -46,14 +46,10 @@ public class ScreenshotTestCaseWriter extends AbstractTestCaseWriter {
     String screenshotDirPath = outputDirectory + "/" + screenshotDirName;
     int i = 1;
     LOGGER.log(Level.INFO, "Writing screenshots to " + screenshotDirPath);
-    for (Byte[] screenshotBytes : result.getScreenshots()) {
+    for (Screenshot screenshot : result.getScreenshots()) {
       String fullPath = screenshotDirPath + '/' + i++ + ".png";
-      byte[] bytes = new byte[screenshotBytes.length];
-      for (int byteNum = 0; byteNum < screenshotBytes.length; ++byteNum) {
-        bytes[byteNum]  = screenshotBytes[byteNum];
-      }
       try {
-        FileUtils.writeByteArrayToFile(new File(fullPath), bytes);
+        screenshot.writeTo(new File(fullPath));
       } catch (FileNotFoundException e) {
         LOGGER.log(Level.SEVERE, "File not found: " + fullPath, e);
       } catch (IOException e) {
@@ -42,7 +42,8 @@ public class TestCase {
       List<State> finalState, String oracleConfigFactoryClassName,
       String waitConditionConfigFactoryClassName, TestCaseConfig config) {
     this.url = url;
-    this.actionSequence = actionSequence;
+    // Copy so that the test case stands alone rather than sharing a prefix.
+    this.actionSequence = new ActionSequence(actionSequence);
     this.finalState = finalState;
     this.oracleConfigFactoryClassName = oracleConfigFactoryClassName;
     this.waitConditionConfigFactoryClassName = waitConditionConfigFactoryClassName;
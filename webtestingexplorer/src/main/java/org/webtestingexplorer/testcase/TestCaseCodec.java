@@ -0,0 +1,79 @@
+/*
+Copyright 2011 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.testcase;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.ActionSequenceCodec;
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.state.State;
+import org.webtestingexplorer.state.StateCodec;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Binary encoding for {@link TestCase}s; the binary counterpart of
+ * {@link TestCaseXStream}. The {@link TestCaseConfig} is small and full of
+ * user classes, so it stays XStream XML.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class TestCaseCodec {
+
+  private final XStream xstream;
+  private final ActionSequenceCodec actionSequenceCodec;
+  private final StateCodec stateCodec;
+
+  public TestCaseCodec() {
+    xstream = TestCaseXStream.createXStream();
+    actionSequenceCodec = new ActionSequenceCodec(xstream);
+    stateCodec = new StateCodec(xstream, actionSequenceCodec);
+  }
+
+  public void writeTestCase(BinaryEncoder encoder, TestCase testCase) throws IOException {
+    encoder.writeHeader(BinaryFormat.KIND_TEST_CASE);
+    encoder.writeString(testCase.getUrl());
+    actionSequenceCodec.writeActionSequence(encoder, testCase.getActionSequence());
+    encoder.writeString(testCase.getOracleConfigFactoryClassName());
+    encoder.writeString(testCase.getWaitConditionConfigFactoryClassName());
+    stateCodec.writeStates(encoder, testCase.getFinalState());
+    TestCaseConfig config = testCase.getTestCaseConfig();
+    encoder.writeBoolean(config != null);
+    if (config != null) {
+      encoder.writeXStream(xstream, config);
+    }
+    encoder.flush();
+  }
+
+  public TestCase readTestCase(BinaryDecoder decoder) throws IOException {
+    decoder.readHeader(BinaryFormat.KIND_TEST_CASE);
+    String url = decoder.readString();
+    ActionSequence actionSequence = actionSequenceCodec.readActionSequence(decoder);
+    String oracleConfigFactoryClassName = decoder.readString();
+    String waitConditionConfigFactoryClassName = decoder.readString();
+    List<State> finalState = stateCodec.readStates(decoder);
+    TestCaseConfig config = null;
+    if (decoder.readBoolean()) {
+      config = (TestCaseConfig) decoder.readXStream(xstream);
+    }
+    return new TestCase(url, actionSequence, finalState, oracleConfigFactoryClassName,
+        waitConditionConfigFactoryClassName, config);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.wait;
+
+import org.openqa.selenium.WebDriverException;
+import org.webtestingexplorer.driver.WebDriverWrapper;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link EventWaitCondition} that waits in the browser, with an asynchronous
+ * script that calls back with true as soon as the condition holds, or with
+ * false after a while so that the overall wait timeout still applies.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public abstract class AsyncScriptWaitCondition implements EventWaitCondition {
+
+  private final static Logger LOGGER = Logger.getLogger(AsyncScriptWaitCondition.class.getName());
+
+  /**
+   * How long the script waits by default before giving up and letting us
+   * check the overall timeout.
+   */
+  protected static final long DEFAULT_MAX_CHECK_MILLIS = 1000;
+
+  /**
+   * How much longer than that WebDriver waits for the script to call back.
+   */
+  private static final long SCRIPT_TIMEOUT_SLACK_MILLIS = 5000;
+
+  @Override
+  public void reset() {
+  }
+
+  @Override
+  public void register(WebDriverWrapper driver, WaitSignal signal) {
+  }
+
+  @Override
+  public void unregister(WebDriverWrapper driver) {
+  }
+
+  @Override
+  public boolean canContinue(WebDriverWrapper driver) {
+    try {
+      return Boolean.TRUE.equals(driver.executeAsyncScript(getScript(),
+          getMaxCheckMillis() + SCRIPT_TIMEOUT_SLACK_MILLIS, getScriptArguments()));
+    } catch (WebDriverException e) {
+      LOGGER.log(Level.WARNING, "Failed to wait in the browser, not waiting", e);
+      return true;
+    }
+  }
+
+  /**
+   * The script already waited, so we can check again right away.
+   */
+  @Override
+  public long getRecheckDelayMillis() {
+    return 0;
+  }
+
+  /**
+   * @return how long the script waits before calling back with false.
+   */
+  protected long getMaxCheckMillis() {
+    return DEFAULT_MAX_CHECK_MILLIS;
+  }
+
+  /**
+   * @return the asynchronous script to run, which calls back with true or
+   *     false within {@link #getMaxCheckMillis()}.
+   */
+  protected abstract String getScript();
+
+  protected abstract Object[] getScriptArguments();
+}
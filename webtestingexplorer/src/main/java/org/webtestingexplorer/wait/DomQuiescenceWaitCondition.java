@@ -0,0 +1,60 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.wait;
+
+import org.webtestingexplorer.javascript.JavaScriptUtil;
+
+/**
+ * {@link WaitCondition} that waits for the page's DOM to stop changing for a
+ * given amount of time, as seen by a MutationObserver. Browsers without
+ * MutationObserver don't wait.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class DomQuiescenceWaitCondition extends AsyncScriptWaitCondition {
+
+  private static final String WAIT_SCRIPT =
+      JavaScriptUtil.getJavaScriptFromFile("/waitForDomQuiescence.js");
+
+  private final long quietMillis;
+
+  public DomQuiescenceWaitCondition(long quietMillis) {
+    this.quietMillis = quietMillis;
+  }
+
+  /**
+   * Leaves time for the DOM to change a few times and still go quiet.
+   */
+  @Override
+  protected long getMaxCheckMillis() {
+    return Math.max(2 * quietMillis, DEFAULT_MAX_CHECK_MILLIS);
+  }
+
+  @Override
+  protected String getScript() {
+    return WAIT_SCRIPT;
+  }
+
+  @Override
+  protected Object[] getScriptArguments() {
+    return new Object[] {quietMillis, getMaxCheckMillis()};
+  }
+
+  @Override
+  public String getDescription() {
+    return "Waiting for the DOM to be quiet for " + quietMillis + " milliseconds";
+  }
+}
@@ -0,0 +1,50 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.wait;
+
+import org.webtestingexplorer.driver.WebDriverWrapper;
+
+/**
+ * A {@link WaitCondition} that knows when it is worth checking again, so
+ * that the wait can end as soon as it is satisfied instead of at the next
+ * wait interval. Either something tells it (e.g. the proxy sees a response)
+ * and it passes that on to the {@link WaitSignal}, or it waits in the browser
+ * itself in {@link #canContinue}.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public interface EventWaitCondition extends WaitCondition {
+
+  /**
+   * Called after {@link #reset()} to start listening for whatever may
+   * satisfy the condition, and signal the given signal when it happens.
+   */
+  void register(WebDriverWrapper driver, WaitSignal signal);
+
+  /**
+   * Called when the wait is over to stop listening.
+   */
+  void unregister(WebDriverWrapper driver);
+
+  /**
+   * Called when {@link #canContinue} has returned false.
+   *
+   * @return how long to wait for a signal before checking again, e.g. until
+   *     a quiet period is over, or a negative number to wait for a signal
+   *     however long it takes.
+   */
+  long getRecheckDelayMillis();
+}
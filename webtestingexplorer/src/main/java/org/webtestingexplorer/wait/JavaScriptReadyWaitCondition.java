@@ -0,0 +1,52 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.wait;
+
+import org.webtestingexplorer.javascript.JavaScriptUtil;
+
+/**
+ * {@link WaitCondition} that waits for a JavaScript expression to become
+ * true in the page, e.g. a ready flag that the app sets when it has finished
+ * updating, such as "window.appReady" or "jQuery.active == 0".
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class JavaScriptReadyWaitCondition extends AsyncScriptWaitCondition {
+
+  private static final String WAIT_SCRIPT =
+      JavaScriptUtil.getJavaScriptFromFile("/waitForReadyExpression.js");
+
+  private final String expression;
+
+  public JavaScriptReadyWaitCondition(String expression) {
+    this.expression = expression;
+  }
+
+  @Override
+  protected String getScript() {
+    return WAIT_SCRIPT;
+  }
+
+  @Override
+  protected Object[] getScriptArguments() {
+    return new Object[] {expression, getMaxCheckMillis()};
+  }
+
+  @Override
+  public String getDescription() {
+    return "Waiting for " + expression;
+  }
+}
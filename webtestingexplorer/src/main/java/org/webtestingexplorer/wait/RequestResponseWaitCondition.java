@@ -15,17 +15,21 @@ limitations under the License.
 */
 package org.webtestingexplorer.wait;
 
+import org.webtestingexplorer.driver.WebDriverProxy;
 import org.webtestingexplorer.driver.WebDriverWrapper;
 
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * {@link WaitCondition} that waits for all outstanding requests to come back.
+ * {@link WaitCondition} that waits for all outstanding requests to come back,
+ * and then for no new ones to go out for a while. The proxy's
+ * {@link org.webtestingexplorer.driver.InFlightRequestTracker} pairs up the
+ * requests and responses, and the proxy tells us about each one, so we check
+ * again as soon as one comes in.
  * 
  * @author smcmaster@google.com (Scott McMaster)
  */
-public class RequestResponseWaitCondition implements WaitCondition {
+public class RequestResponseWaitCondition implements EventWaitCondition {
 
   private final static Logger LOGGER = Logger.getLogger(RequestResponseWaitCondition.class.getName());
   
@@ -35,12 +39,40 @@ public class RequestResponseWaitCondition implements WaitCondition {
    */
   private long requestDelayMillis;
 
+  private boolean isFirstCheck;
+  private long recheckDelayMillis;
+  private WebDriverProxy.TrafficListener trafficListener;
+
   public RequestResponseWaitCondition(long requestDelayMillis) {
     this.requestDelayMillis = requestDelayMillis;
   }
   
   @Override
   public void reset() {
+    isFirstCheck = true;
+    recheckDelayMillis = 0;
+  }
+
+  @Override
+  public void register(WebDriverWrapper driver, final WaitSignal signal) {
+    if (driver.getProxy() == null) {
+      return;
+    }
+    trafficListener = new WebDriverProxy.TrafficListener() {
+      @Override
+      public void onTraffic() {
+        signal.signal();
+      }
+    };
+    driver.getProxy().addTrafficListener(trafficListener);
+  }
+
+  @Override
+  public void unregister(WebDriverWrapper driver) {
+    if (trafficListener != null && driver.getProxy() != null) {
+      driver.getProxy().removeTrafficListener(trafficListener);
+    }
+    trafficListener = null;
   }
 
   @Override
@@ -50,27 +82,28 @@ public class RequestResponseWaitCondition implements WaitCondition {
       return true;
     }
     
-    // Attempt to make sure all requests get the chance to go out.
-    int requestCount = driver.getProxy().getRequestCount();
-    
     // If there are no requests initially, assume the action makes no requests
     // and leave immediately.
-    if (requestCount == 0) {
-      return true;
+    if (isFirstCheck) {
+      isFirstCheck = false;
+      if (driver.getProxy().getRequestCount() == 0) {
+        return true;
+      }
     }
     
-    int currentRequestCount = 0;
-    do {
-      currentRequestCount = requestCount;
-      try {
-        LOGGER.log(Level.FINE, "Waiting for request/response pairs");
-        Thread.sleep(requestDelayMillis);
-      } catch (InterruptedException useless) {}
-      requestCount = driver.getProxy().getRequestCount();
-    } while (requestCount != currentRequestCount);
-    
-    int responseCount = driver.getProxy().getResponseCount();
-    return (requestCount == responseCount);
+    long idleMillis = driver.getProxy().getRequestTracker().getIdleMillis();
+    if (idleMillis < 0) {
+      // The response will signal us.
+      recheckDelayMillis = -1;
+      return false;
+    }
+    recheckDelayMillis = requestDelayMillis - idleMillis;
+    return recheckDelayMillis <= 0;
+  }
+
+  @Override
+  public long getRecheckDelayMillis() {
+    return recheckDelayMillis;
   }
 
   @Override
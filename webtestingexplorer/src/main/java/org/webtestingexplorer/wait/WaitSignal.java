@@ -0,0 +1,62 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.wait;
+
+/**
+ * Wakes up a wait when an {@link EventWaitCondition} may have become
+ * satisfied. Signals are counted, so that one that comes in while the
+ * conditions are being checked isn't lost.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WaitSignal {
+
+  private long count;
+
+  /**
+   * Wakes up anybody waiting. Safe to call from any thread.
+   */
+  public synchronized void signal() {
+    ++count;
+    notifyAll();
+  }
+
+  /**
+   * @return the number of signals so far.
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * Waits until there have been more than the given number of signals, or
+   * for the given time, whichever comes first.
+   *
+   * @return whether we were signaled.
+   */
+  public synchronized boolean await(long sinceCount, long timeoutMillis)
+      throws InterruptedException {
+    long endMillis = System.currentTimeMillis() + timeoutMillis;
+    while (count == sinceCount) {
+      long remainingMillis = endMillis - System.currentTimeMillis();
+      if (remainingMillis <= 0) {
+        return false;
+      }
+      wait(remainingMillis);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,25 @@
+function findElementByIndex(index, tagName, className) {
+  var elements = document.getElementsByTagName('*');
+  var currentIndex = 0;
+  for (var i = 0; i < elements.length; i++) {
+    var e = elements[i];
+    var elementTagName = String(e.tagName).toLowerCase();
+    if (!isInterestingTag(elementTagName) ||
+        elementTagName == 'frame' || elementTagName == 'iframe') {
+      continue;
+    }
+    if (currentIndex == index) {
+      if (tagName != null && elementTagName != String(tagName).toLowerCase()) {
+        return null;
+      }
+      if (className != null && e.getAttribute('class') != className) {
+        return null;
+      }
+      return e;
+    }
+    currentIndex++;
+  }
+  return null;
+}
+
+return findElementByIndex(arguments[0], arguments[1], arguments[2]);
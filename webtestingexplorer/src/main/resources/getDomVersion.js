@@ -0,0 +1,25 @@
+function getDomVersion() {
+  var version = window.webTestingExplorerDomVersion;
+  if (typeof version == 'undefined') {
+    if (typeof MutationObserver == 'undefined') {
+      return null;
+    }
+    version = {
+      page: new Date().getTime() + '-' + Math.random(),
+      count: 0
+    };
+    version.observer = new MutationObserver(function(mutations) {
+      version.count++;
+    });
+    version.observer.observe(document, {
+      childList: true, attributes: true, characterData: true, subtree: true
+    });
+    window.webTestingExplorerDomVersion = version;
+  }
+  if (version.observer.takeRecords().length > 0) {
+    version.count++;
+  }
+  return version.page + ':' + version.count;
+}
+
+return getDomVersion();
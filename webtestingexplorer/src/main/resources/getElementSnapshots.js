@@ -0,0 +1,78 @@
+function getElementSnapshots(elements, actionable) {
+  function getSelect(e) {
+    var n = e.parentNode;
+    while (n != null && n.nodeType == 1 && n.tagName.toLowerCase() != 'select') {
+      n = n.parentNode;
+    }
+    return (n != null && n.nodeType == 1) ? n : null;
+  }
+
+  function isDisplayed(e) {
+    var tagName = e.tagName.toLowerCase();
+    if (tagName == 'option' || tagName == 'optgroup') {
+      var select = getSelect(e);
+      return select != null && isDisplayed(select);
+    }
+    if (tagName == 'input' && String(e.type).toLowerCase() == 'hidden') {
+      return false;
+    }
+    var style = window.getComputedStyle(e, null);
+    if (style != null && (style.display == 'none' ||
+        style.visibility == 'hidden' || style.visibility == 'collapse')) {
+      return false;
+    }
+    if (e.offsetWidth > 0 || e.offsetHeight > 0) {
+      return true;
+    }
+    var rects = e.getClientRects();
+    for (var i = 0; i < rects.length; i++) {
+      if (rects[i].width > 0 && rects[i].height > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  function getActionProperties(e, tagName) {
+    var properties = {
+      role: e.getAttribute('role'),
+      'aria-disabled': e.getAttribute('aria-disabled'),
+      href: null
+    };
+    if (e.hasAttribute('href')) {
+      properties.href = typeof e.href == 'string' ? e.href : e.getAttribute('href');
+    }
+    if (tagName == 'select') {
+      properties.length = String(e.length);
+    }
+    return properties;
+  }
+
+  if (elements == null) {
+    elements = document.getElementsByTagName('*');
+  }
+  var snapshots = [];
+  for (var i = 0; i < elements.length; i++) {
+    var e = elements[i];
+    var tagName = String(e.tagName).toLowerCase();
+    if (!isInterestingTag(tagName)) {
+      continue;
+    }
+    snapshots.push([
+      e,
+      tagName,
+      // Properties, like WebDriver reads first, unless a form's control shadows them.
+      typeof e.id == 'string' ? e.id : e.getAttribute('id'),
+      typeof e.name == 'string' ? e.name : e.getAttribute('name'),
+      e.getAttribute('class'),
+      typeof e.type == 'string' ? e.type : e.getAttribute('type'),
+      isDisplayed(e),
+      !e.disabled,
+      actionable ? e.outerHTML : null,
+      actionable ? getActionProperties(e, tagName) : null
+    ]);
+  }
+  return snapshots;
+}
+
+return getElementSnapshots(arguments[0], arguments[1]);
@@ -0,0 +1,7 @@
+function isInterestingTag(tagName) {
+  var uninterestingTags = {
+    meta: true, script: true, noscript: true, title: true,
+    style: true, html: true, head: true, body: true
+  };
+  return !uninterestingTags[String(tagName).toLowerCase()];
+}
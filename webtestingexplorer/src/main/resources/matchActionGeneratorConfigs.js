@@ -0,0 +1,55 @@
+function matchActionGeneratorConfigs(elements, configPatterns) {
+  function getText(e) {
+    var text = typeof e.innerText == 'string' ? e.innerText : e.textContent;
+    if (text == null) {
+      return null;
+    }
+    return text.replace(/[^\S\n]+/g, ' ').replace(/ ?\n ?/g, '\n').replace(/^\s+|\s+$/g, '');
+  }
+
+  var getters = {
+    tag: function(e) { return String(e.tagName).toLowerCase(); },
+    id: function(e) { return e.getAttribute('id'); },
+    name: function(e) { return e.getAttribute('name'); },
+    'class': function(e) { return e.getAttribute('class'); },
+    text: getText,
+    type: function(e) { return typeof e.type == 'string' ? e.type : e.getAttribute('type'); }
+  };
+
+  var configs = [];
+  for (var i = 0; i < configPatterns.length; i++) {
+    var regexps = {};
+    var patterns = configPatterns[i];
+    for (var k = 0; k < patterns.length; k += 2) {
+      regexps[patterns[k]] = new RegExp('^(?:' + patterns[k + 1] + ')$');
+    }
+    configs.push(regexps);
+  }
+
+  var results = [];
+  for (var i = 0; i < elements.length; i++) {
+    var e = elements[i];
+    var values = {};
+    var matches = [];
+    for (var j = 0; j < configs.length; j++) {
+      var isMatch = true;
+      for (var key in configs[j]) {
+        if (!(key in values)) {
+          values[key] = getters[key](e);
+        }
+        var value = values[key];
+        if (value == null || value.length == 0 || !configs[j][key].test(value)) {
+          isMatch = false;
+          break;
+        }
+      }
+      if (isMatch) {
+        matches.push(j);
+      }
+    }
+    results.push(matches);
+  }
+  return results;
+}
+
+return matchActionGeneratorConfigs(arguments[0], arguments[1]);
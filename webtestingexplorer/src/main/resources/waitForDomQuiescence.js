@@ -0,0 +1,35 @@
+function waitForDomQuiescence(quietMillis, maxMillis, callback) {
+  if (typeof MutationObserver == 'undefined') {
+    callback(true);
+    return;
+  }
+  var isDone = false;
+  var quietTimer = null;
+  var maxTimer = null;
+  var observer = null;
+
+  function finish(isQuiet) {
+    if (isDone) {
+      return;
+    }
+    isDone = true;
+    observer.disconnect();
+    clearTimeout(quietTimer);
+    clearTimeout(maxTimer);
+    callback(isQuiet);
+  }
+
+  function restartQuietTimer() {
+    clearTimeout(quietTimer);
+    quietTimer = setTimeout(function() { finish(true); }, quietMillis);
+  }
+
+  observer = new MutationObserver(restartQuietTimer);
+  observer.observe(document, {
+    childList: true, attributes: true, characterData: true, subtree: true
+  });
+  restartQuietTimer();
+  maxTimer = setTimeout(function() { finish(false); }, maxMillis);
+}
+
+waitForDomQuiescence(arguments[0], arguments[1], arguments[arguments.length - 1]);
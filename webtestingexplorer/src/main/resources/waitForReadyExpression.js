@@ -0,0 +1,24 @@
+function waitForReadyExpression(expression, maxMillis, callback) {
+  var isReady = new Function('return !!(' + expression + ');');
+  var endTime = new Date().getTime() + maxMillis;
+
+  function check() {
+    var ready = false;
+    try {
+      ready = isReady();
+    } catch (e) {
+      ready = false;
+    }
+    if (ready) {
+      callback(true);
+    } else if (new Date().getTime() >= endTime) {
+      callback(false);
+    } else {
+      setTimeout(check, 10);
+    }
+  }
+
+  check();
+}
+
+waitForReadyExpression(arguments[0], arguments[1], arguments[arguments.length - 1]);
@@ -0,0 +1,111 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.webtestingexplorer.config.ActionGeneratorConfig;
+import org.webtestingexplorer.config.actiongenerator.MultiCriterionActionGeneratorConfig;
+import org.webtestingexplorer.config.actiongenerator.TagActionGeneratorConfig;
+import org.webtestingexplorer.driver.WebDriverWrapper;
+import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the {@link ActionGeneratorMatcher} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionGeneratorMatcherTest {
+
+  @Test
+  public void getScriptPatterns() {
+    List<String> patterns = ActionGeneratorMatcher.getScriptPatterns(
+        createMultiCriterionConfig(null, ".*email.*"));
+    assertEquals(Lists.newArrayList("id", ".*email.*"), patterns);
+  }
+
+  @Test
+  public void noScriptPatternsForOtherConfigs() {
+    assertNull(ActionGeneratorMatcher.getScriptPatterns(new TagActionGeneratorConfig("a") {
+      @Override
+      public Set<Action> generateActions(WebDriverWrapper driver,
+          WebElementWithIdentifier elementWithId) {
+        return null;
+      }
+    }));
+  }
+
+  @Test
+  public void noScriptPatternsWhenMatchesIsOverridden() {
+    assertNull(ActionGeneratorMatcher.getScriptPatterns(
+        new MultiCriterionActionGeneratorConfig("a", null, null, null, null, null) {
+          @Override
+          public boolean matches(WebDriverWrapper driver,
+              WebElementWithIdentifier elementWithId) {
+            return false;
+          }
+
+          @Override
+          public Set<Action> generateActions(WebDriverWrapper driver,
+              WebElementWithIdentifier elementWithId) {
+            return null;
+          }
+        }));
+  }
+
+  @Test
+  public void noScriptPatternsForJavaOnlyRegex() {
+    assertNull(ActionGeneratorMatcher.getScriptPatterns(
+        createMultiCriterionConfig(null, "(?<=feedback_).*")));
+    assertNull(ActionGeneratorMatcher.getScriptPatterns(
+        createMultiCriterionConfig(null, "(?i)email")));
+    assertNull(ActionGeneratorMatcher.getScriptPatterns(
+        createMultiCriterionConfig(null, "\\p{Alpha}+")));
+    assertNull(ActionGeneratorMatcher.getScriptPatterns(
+        createMultiCriterionConfig(null, "a*+")));
+  }
+
+  @Test
+  public void getFirstMatchWithoutScriptResults() {
+    ActionGeneratorConfig never = createMultiCriterionConfig("button", null);
+    ActionGeneratorConfig always = createMultiCriterionConfig(null, null);
+    WebElementWithIdentifier elementWithId = new WebElementWithIdentifier(null, null);
+    // A config with no criteria matches without looking at the element.
+    assertSame(always, new ActionGeneratorMatcher(Lists.newArrayList(always, never))
+        .getFirstMatch(null, elementWithId));
+    assertNull(new ActionGeneratorMatcher(Lists.<ActionGeneratorConfig>newArrayList())
+        .getFirstMatch(null, elementWithId));
+  }
+
+  private static MultiCriterionActionGeneratorConfig createMultiCriterionConfig(
+      String tag, String id) {
+    return new MultiCriterionActionGeneratorConfig(tag, id, null, null, null, null) {
+      @Override
+      public Set<Action> generateActions(WebDriverWrapper driver,
+          WebElementWithIdentifier elementWithId) {
+        return null;
+      }
+    };
+  }
+}
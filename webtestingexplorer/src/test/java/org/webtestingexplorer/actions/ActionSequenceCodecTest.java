@@ -0,0 +1,141 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webtestingexplorer.codec.BinaryDecoder;
+import org.webtestingexplorer.codec.BinaryEncoder;
+import org.webtestingexplorer.codec.BinaryFormat;
+import org.webtestingexplorer.identifiers.IdWebElementIdentifier;
+import org.webtestingexplorer.identifiers.IndexWebElementIdentifier;
+import org.webtestingexplorer.identifiers.IndexWebElementIdentifier.IndexBasis;
+import org.webtestingexplorer.identifiers.NameWebElementIdentifier;
+import org.webtestingexplorer.identifiers.XpathWebElementIdentifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Tests for the {@link ActionSequenceCodec} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionSequenceCodecTest {
+
+  private ActionSequenceCodec codec;
+  private ByteArrayOutputStream bytes;
+  private BinaryEncoder encoder;
+
+  @Before
+  public void setUp() {
+    codec = new ActionSequenceCodec();
+    bytes = new ByteArrayOutputStream();
+    encoder = new BinaryEncoder(bytes);
+  }
+
+  @Test
+  public void primitivesRoundTrip() throws Exception {
+    encoder.writeVarInt(0);
+    encoder.writeVarInt(300);
+    encoder.writeVarLong(Long.MAX_VALUE);
+    encoder.writeSignedVarLong(-1);
+    encoder.writeString(null);
+    encoder.writeString("hello");
+    encoder.writeString("hello");
+    encoder.flush();
+
+    BinaryDecoder decoder = createDecoder();
+    assertEquals(0, decoder.readVarInt());
+    assertEquals(300, decoder.readVarInt());
+    assertEquals(Long.MAX_VALUE, decoder.readVarLong());
+    assertEquals(-1, decoder.readSignedVarLong());
+    assertNull(decoder.readString());
+    assertEquals("hello", decoder.readString());
+    assertEquals("hello", decoder.readString());
+  }
+
+  @Test
+  public void repeatedStringsUseDictionary() throws Exception {
+    encoder.writeString("a fairly long xpath or id");
+    int firstLength = bytes.size();
+    encoder.writeString("a fairly long xpath or id");
+    encoder.flush();
+    assertEquals(1, bytes.size() - firstLength);
+  }
+
+  @Test
+  public void actionsRoundTrip() throws Exception {
+    List<Action> actions = Lists.newArrayList(
+        new ClickAction(new IdWebElementIdentifier("button", "frame")),
+        new SetTextAction(new NameWebElementIdentifier("text"), "some text"),
+        new SelectAction(new XpathWebElementIdentifier("/html/body/select"), 2),
+        new HoverAction(new IndexWebElementIdentifier(5, null, IndexBasis.ACTIONABLE), 250),
+        new WaitAction(1000),
+        new BackAction(),
+        new ForwardAction(),
+        new RefreshAction());
+    for (Action action : actions) {
+      codec.writeAction(encoder, action);
+    }
+    encoder.flush();
+
+    BinaryDecoder decoder = createDecoder();
+    for (Action action : actions) {
+      Action readAction = codec.readAction(decoder);
+      assertSame(action.getClass(), readAction.getClass());
+      assertEquals(action, readAction);
+      assertEquals(action.getIdentifier(), readAction.getIdentifier());
+    }
+  }
+
+  @Test
+  public void queueRoundTripSharesPrefixes() throws Exception {
+    ActionSequence initial = new ActionSequence(new RefreshAction());
+    initial.setInitial();
+    ActionSequence prefix = initial.extend(new ClickAction(new IdWebElementIdentifier("a")));
+    ActionSequence first = prefix.extend(new ClickAction(new IdWebElementIdentifier("b")));
+    ActionSequence second = prefix.extend(new ClickAction(new IdWebElementIdentifier("c")));
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.push(first);
+    queue.push(second);
+    codec.writeQueue(encoder, queue);
+
+    assertTrue(BinaryFormat.isBinary(bytes.toByteArray()));
+    ActionSequenceQueue readQueue = codec.readQueue(createDecoder());
+    assertEquals(2, readQueue.size());
+    ActionSequence readSecond = readQueue.pop();
+    ActionSequence readFirst = readQueue.pop();
+    assertEquals(second.getActions(), readSecond.getActions());
+    assertEquals(first.getActions(), readFirst.getActions());
+    assertTrue(readFirst.getActions().get(0).isInitial());
+    assertFalse(readFirst.getActions().get(1).isInitial());
+    assertSame(readFirst.getParent(), readSecond.getParent());
+  }
+
+  private BinaryDecoder createDecoder() {
+    return new BinaryDecoder(new ByteArrayInputStream(bytes.toByteArray()));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Tests for the {@link ActionSequenceQueueJournal} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionSequenceQueueJournalTest {
+
+  private File queueFile;
+  private File journalFile;
+
+  @Before
+  public void setUp() throws Exception {
+    queueFile = File.createTempFile("queue", ".xml");
+    journalFile = new File(queueFile.getPath() + ActionSequenceQueueJournal.JOURNAL_SUFFIX);
+  }
+
+  @After
+  public void tearDown() {
+    queueFile.delete();
+    journalFile.delete();
+  }
+
+  @Test
+  public void readAppliesPushesAndPops() throws Exception {
+    List<ActionSequence> sequences = createSequences(4);
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.push(sequences.get(0));
+    queue.push(sequences.get(1));
+    ActionSequenceQueueJournal journal = ActionSequenceQueueJournal.open(queue, queueFile.getPath());
+
+    journal.recordPop(queue.pop());
+    journal.pushAll(queue, sequences.subList(2, 4));
+    journal.recordPop(queue.pop());
+    journal.close();
+    assertTrue(journalFile.exists());
+
+    ActionSequenceQueue readQueue = ActionSequenceQueue.readFromFile(queueFile.getPath());
+    assertEquals(queue.size(), readQueue.size());
+    assertEquals(getLastActions(queue), getLastActions(readQueue));
+  }
+
+  @Test
+  public void readIgnoresTornRecord() throws Exception {
+    List<ActionSequence> sequences = createSequences(2);
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    ActionSequenceQueueJournal journal = ActionSequenceQueueJournal.open(queue, queueFile.getPath());
+    journal.pushAll(queue, sequences.subList(0, 1));
+    journal.flush();
+    long goodLength = journalFile.length();
+    journal.pushAll(queue, sequences.subList(1, 2));
+    journal.close();
+
+    // Chop off the end of the last record.
+    RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+    file.setLength(goodLength + (file.length() - goodLength) / 2);
+    file.close();
+
+    ActionSequenceQueue readQueue = ActionSequenceQueue.readFromFile(queueFile.getPath());
+    assertEquals(1, readQueue.size());
+    assertEquals(sequences.get(0).getLastAction(), readQueue.pop().getLastAction());
+  }
+
+  @Test
+  public void compactStartsNewJournal() throws Exception {
+    List<ActionSequence> sequences = createSequences(3);
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    ActionSequenceQueueJournal journal = ActionSequenceQueueJournal.open(queue, queueFile.getPath());
+    journal.pushAll(queue, sequences);
+    assertFalse(journal.shouldCompact(queue.size()));
+    journal.compact(queue);
+    assertFalse(journalFile.exists());
+
+    // Pops of sequences from before the compaction still count.
+    journal.recordPop(queue.pop());
+    journal.close();
+
+    ActionSequenceQueue readQueue = ActionSequenceQueue.readFromFile(queueFile.getPath());
+    assertEquals(getLastActions(queue), getLastActions(readQueue));
+  }
+
+  @Test
+  public void writeToFileDiscardsJournal() throws Exception {
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    ActionSequenceQueueJournal journal = ActionSequenceQueueJournal.open(queue, queueFile.getPath());
+    journal.pushAll(queue, createSequences(2));
+    journal.close();
+    assertTrue(journalFile.exists());
+
+    queue.pop();
+    ActionSequenceQueue.writeToFile(queue, queueFile.getPath());
+    assertFalse(journalFile.exists());
+    assertEquals(1, ActionSequenceQueue.readFromFile(queueFile.getPath()).size());
+  }
+
+  private List<ActionSequence> createSequences(int count) {
+    List<ActionSequence> sequences = Lists.newArrayList();
+    for (int i = 0; i < count; ++i) {
+      sequences.add(new ActionSequence(new WaitAction(i)));
+    }
+    return sequences;
+  }
+
+  private List<Action> getLastActions(ActionSequenceQueue queue) {
+    List<Action> actions = Lists.newArrayList();
+    for (ActionSequence sequence : queue) {
+      actions.add(sequence.getLastAction());
+    }
+    return actions;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ActionSequence} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ActionSequenceTest {
+
+  @Test
+  public void extendSharesPrefix() {
+    Action initial = new RefreshAction();
+    ActionSequence initialSequence = new ActionSequence(initial);
+    initialSequence.setInitial();
+
+    Action back = new BackAction();
+    Action forward = new ForwardAction();
+    ActionSequence extended = initialSequence.extend(back).extend(forward);
+    assertEquals(Lists.newArrayList(initial, back, forward), extended.getActions());
+    assertEquals(2, extended.getLength());
+    assertSame(forward, extended.getLastAction());
+    assertEquals(Lists.newArrayList(initial), initialSequence.getActions());
+  }
+
+  @Test
+  public void extendWith() {
+    Action back = new BackAction();
+    Action forward = new ForwardAction();
+    Action refresh = new RefreshAction();
+    ActionSequence finalSequence = new ActionSequence(forward);
+    finalSequence.addAction(refresh);
+
+    ActionSequence extended = new ActionSequence(back).extendWith(finalSequence);
+    assertEquals(Lists.newArrayList(back, forward, refresh), extended.getActions());
+    assertEquals(3, extended.getLength());
+    assertSame(refresh, extended.getLastAction());
+  }
+
+  @Test
+  public void getLastActionSkipsEmptySuffix() {
+    Action back = new BackAction();
+    ActionSequence extended = new ActionSequence(back).extendWith(new ActionSequence());
+    assertSame(back, extended.getLastAction());
+    assertNull(new ActionSequence().getLastAction());
+  }
+
+  @Test
+  public void copyIsFlatAndIndependent() {
+    Action back = new BackAction();
+    Action forward = new ForwardAction();
+    ActionSequence extended = new ActionSequence(back).extend(forward);
+    ActionSequence copy = new ActionSequence(extended);
+    copy.addAction(new RefreshAction());
+    assertEquals(3, copy.getActions().size());
+    assertEquals(2, extended.getActions().size());
+  }
+}
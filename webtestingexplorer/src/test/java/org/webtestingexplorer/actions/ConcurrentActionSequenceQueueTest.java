@@ -0,0 +1,166 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for the {@link ConcurrentActionSequenceQueue} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ConcurrentActionSequenceQueueTest {
+
+  @Test
+  public void pushAndPopInStackOrder() {
+    ActionSequence first = new ActionSequence(new BackAction());
+    ActionSequence second = new ActionSequence(new ForwardAction());
+    ConcurrentActionSequenceQueue queue = new ConcurrentActionSequenceQueue();
+    assertTrue(queue.isEmpty());
+    queue.push(first);
+    queue.push(second);
+    assertEquals(2, queue.size());
+    assertSame(second, queue.pop());
+    assertSame(first, queue.pop());
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void pushAllMatchesRepeatedPush() {
+    List<ActionSequence> sequences = createSequences(5);
+    ActionSequenceQueue plainQueue = new ActionSequenceQueue();
+    for (ActionSequence sequence : sequences) {
+      plainQueue.push(sequence);
+    }
+    ConcurrentActionSequenceQueue queue = new ConcurrentActionSequenceQueue();
+    queue.push(new ActionSequence());
+    queue.pushAll(sequences);
+    assertEquals(6, queue.size());
+    assertEquals(plainQueue.asList(), queue.asList().subList(0, 5));
+  }
+
+  @Test
+  public void copyOfKeepsPopOrder() {
+    ActionSequenceQueue plainQueue = new ActionSequenceQueue();
+    for (ActionSequence sequence : createSequences(3)) {
+      plainQueue.push(sequence);
+    }
+    ConcurrentActionSequenceQueue queue = ConcurrentActionSequenceQueue.copyOf(plainQueue);
+    assertEquals(plainQueue.asList(), queue.asList());
+  }
+
+  @Test
+  public void iterationIsUnaffectedByLaterChanges() {
+    ConcurrentActionSequenceQueue queue = new ConcurrentActionSequenceQueue();
+    queue.pushAll(createSequences(3));
+    Iterator<ActionSequence> iter = queue.iterator();
+    queue.pop();
+    queue.push(new ActionSequence());
+    int count = 0;
+    while (iter.hasNext()) {
+      iter.next();
+      ++count;
+    }
+    assertEquals(3, count);
+  }
+
+  @Test
+  public void drain() {
+    ConcurrentActionSequenceQueue queue = new ConcurrentActionSequenceQueue();
+    List<ActionSequence> sequences = createSequences(4);
+    queue.pushAll(sequences);
+    assertEquals(Lists.reverse(sequences), queue.drain());
+    assertTrue(queue.isEmpty());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void concurrentPushAndPop() throws Exception {
+    final int numThreads = 4;
+    final int numPerThread = 1000;
+    final ConcurrentActionSequenceQueue queue = new ConcurrentActionSequenceQueue();
+    final List<Set<ActionSequence>> popped = Lists.newArrayList();
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < numThreads; ++i) {
+      final Set<ActionSequence> poppedByThread = Sets.newIdentityHashSet();
+      popped.add(poppedByThread);
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numPerThread; ++j) {
+            queue.push(new ActionSequence());
+            ActionSequence sequence = queue.poll();
+            if (sequence != null) {
+              poppedByThread.add(sequence);
+            }
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Set<ActionSequence> allPopped = Sets.newIdentityHashSet();
+    for (Set<ActionSequence> poppedByThread : popped) {
+      for (ActionSequence sequence : poppedByThread) {
+        assertTrue(allPopped.add(sequence));
+      }
+    }
+    assertEquals(numThreads * numPerThread, allPopped.size() + queue.size());
+    assertFalse(queue.size() < 0);
+  }
+
+  @Test
+  public void writesPlainQueue() throws Exception {
+    ConcurrentActionSequenceQueue queue = new ConcurrentActionSequenceQueue();
+    queue.pushAll(createSequences(3));
+    File file = File.createTempFile("queue", ".xml");
+    try {
+      ActionSequenceQueue.writeToFile(queue, file.getPath());
+      ActionSequenceQueue readQueue = ActionSequenceQueue.readFromFile(file.getPath());
+      assertSame(ActionSequenceQueue.class, readQueue.getClass());
+      assertEquals(queue.asList().toString(), readQueue.asList().toString());
+    } finally {
+      file.delete();
+    }
+  }
+
+  private List<ActionSequence> createSequences(int count) {
+    List<ActionSequence> sequences = Lists.newArrayList();
+    for (int i = 0; i < count; ++i) {
+      sequences.add(new ActionSequence(new WaitAction(i)));
+    }
+    return sequences;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.webtestingexplorer.config.prioritizer.ShortestActionSequencePrioritizer;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tests for the {@link PriorityActionSequenceQueue} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class PriorityActionSequenceQueueTest {
+
+  private static final PriorityActionSequenceQueue.Scorer WAIT_TIME_SCORER =
+      new PriorityActionSequenceQueue.Scorer() {
+        @Override
+        public double score(ActionSequence sequence) {
+          return ((WaitAction) sequence.getLastAction()).getMillis();
+        }
+      };
+
+  @Test
+  public void popsHighestScoreFirst() {
+    PriorityActionSequenceQueue queue = new PriorityActionSequenceQueue(WAIT_TIME_SCORER);
+    List<ActionSequence> sequences = createSequences(3, 1, 2);
+    queue.pushAll(sequences);
+    assertEquals(3, queue.size());
+    assertEquals(Lists.newArrayList(sequences.get(0), sequences.get(2), sequences.get(1)),
+        queue.asList());
+    assertSame(sequences.get(0), queue.pop());
+    assertSame(sequences.get(2), queue.pop());
+    assertSame(sequences.get(1), queue.pop());
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void tiesPopNewestFirst() {
+    PriorityActionSequenceQueue queue = new PriorityActionSequenceQueue(WAIT_TIME_SCORER);
+    List<ActionSequence> sequences = createSequences(1, 1, 1);
+    queue.pushAll(sequences);
+    assertSame(sequences.get(2), queue.pop());
+    assertSame(sequences.get(1), queue.pop());
+    assertSame(sequences.get(0), queue.pop());
+  }
+
+  @Test
+  public void comparatorOrder() {
+    PriorityActionSequenceQueue queue = new PriorityActionSequenceQueue(
+        new Comparator<ActionSequence>() {
+          @Override
+          public int compare(ActionSequence first, ActionSequence second) {
+            long difference = ((WaitAction) first.getLastAction()).getMillis() -
+                ((WaitAction) second.getLastAction()).getMillis();
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+          }
+        });
+    List<ActionSequence> sequences = createSequences(3, 1, 2);
+    queue.pushAll(sequences);
+    assertSame(sequences.get(1), queue.pop());
+    assertSame(sequences.get(2), queue.pop());
+    assertSame(sequences.get(0), queue.pop());
+  }
+
+  @Test
+  public void shortestPrioritizerPopsShortestFirst() {
+    ActionSequence shortest = new ActionSequence(new WaitAction(1));
+    ActionSequence longest = shortest.extend(new WaitAction(2)).extend(new WaitAction(3));
+    ActionSequence middle = shortest.extend(new WaitAction(4));
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.push(middle);
+    queue.push(shortest);
+    queue.push(longest);
+
+    ShortestActionSequencePrioritizer prioritizer = new ShortestActionSequencePrioritizer();
+    ActionSequenceQueue prioritized = prioritizer.prioritize(queue);
+    assertEquals(Lists.newArrayList(shortest, middle, longest), prioritized.asList());
+    assertSame(prioritized, prioritizer.prioritize(prioritized));
+  }
+
+  @Test
+  public void shortestPrioritizerQueuePopsShortestThenNewest() {
+    List<ActionSequence> sequences = createSequences(1, 2);
+    ActionSequence longer = sequences.get(0).extend(new WaitAction(3));
+    ActionSequenceQueue queue = new ShortestActionSequencePrioritizer().createQueue();
+    queue.push(sequences.get(0));
+    queue.push(longer);
+    queue.push(sequences.get(1));
+
+    assertSame(sequences.get(1), queue.pop());
+    assertSame(sequences.get(0), queue.pop());
+    queue.push(longer.extend(new WaitAction(4)));
+    assertSame(longer, queue.pop());
+  }
+
+  private List<ActionSequence> createSequences(long... waitTimes) {
+    List<ActionSequence> sequences = Lists.newArrayList();
+    for (long waitTime : waitTimes) {
+      sequences.add(new ActionSequence(new WaitAction(waitTime)));
+    }
+    return sequences;
+  }
+}
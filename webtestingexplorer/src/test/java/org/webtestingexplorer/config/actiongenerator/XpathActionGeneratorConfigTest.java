@@ -0,0 +1,124 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.config.actiongenerator;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.webtestingexplorer.actions.Action;
+import org.webtestingexplorer.driver.WebDriverFactory;
+import org.webtestingexplorer.driver.WebDriverPool;
+import org.webtestingexplorer.driver.WebDriverWrapper;
+import org.webtestingexplorer.driver.WebElementWrapper;
+import org.webtestingexplorer.identifiers.IdWebElementIdentifier;
+import org.webtestingexplorer.identifiers.WebElementWithIdentifier;
+import org.webtestingexplorer.testing.FakeWebElement;
+
+import java.util.Set;
+
+/**
+ * Tests for the {@link XpathActionGeneratorConfig} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class XpathActionGeneratorConfigTest {
+
+  interface JavascriptWebDriver extends WebDriver, JavascriptExecutor {
+  }
+
+  @Test
+  public void evaluatesXpathOncePerDomVersion() {
+    WebElement link = new FakeWebElement();
+    WebElement button = new FakeWebElement();
+    WebDriverWrapper driver = EasyMock.createMock(WebDriverWrapper.class);
+    EasyMock.expect(driver.getLastDomVersionForFrame(null)).andReturn("page:1").times(2);
+    EasyMock.expect(driver.findElementsInFrame(By.xpath("//a[@href]"), null))
+        .andReturn(Lists.newArrayList(link));
+    EasyMock.expect(driver.getLastDomVersionForFrame(null)).andReturn("page:2");
+    EasyMock.expect(driver.findElementsInFrame(By.xpath("//a[@href]"), null))
+        .andReturn(Lists.<WebElement>newArrayList());
+    EasyMock.replay(driver);
+
+    XpathActionGeneratorConfig config = createActionGeneratorConfig("a[@href]");
+    assertTrue(config.matches(driver, createElementWithId(link)));
+    assertFalse(config.matches(driver, createElementWithId(button)));
+    assertFalse(config.matches(driver, createElementWithId(link)));
+    EasyMock.verify(driver);
+  }
+
+  @Test
+  public void evaluatesXpathEveryTimeWithoutDomVersion() {
+    WebElement link = new FakeWebElement();
+    WebDriverWrapper driver = EasyMock.createMock(WebDriverWrapper.class);
+    EasyMock.expect(driver.getLastDomVersionForFrame(null)).andReturn(null).times(2);
+    EasyMock.expect(driver.findElementsInFrame(By.xpath("//a"), null))
+        .andReturn(Lists.newArrayList(link)).times(2);
+    EasyMock.replay(driver);
+
+    XpathActionGeneratorConfig config = createActionGeneratorConfig("//a");
+    assertTrue(config.matches(driver, createElementWithId(link)));
+    assertTrue(config.matches(driver, createElementWithId(link)));
+    EasyMock.verify(driver);
+  }
+
+  @Test
+  public void evaluatesXpathOncePerStateWithoutElementsCache() throws Exception {
+    WebElement link = new FakeWebElement();
+    WebElement button = new FakeWebElement();
+    JavascriptWebDriver browser = EasyMock.createMock(JavascriptWebDriver.class);
+    WebDriverFactory factory = EasyMock.createMock(WebDriverFactory.class);
+    EasyMock.expect(factory.createWebDriver(null)).andReturn(browser);
+    EasyMock.expect(browser.executeScript(EasyMock.contains("getDomVersion")))
+        .andReturn("page:1");
+    EasyMock.expect(browser.executeScript(EasyMock.contains("getElementSnapshots"),
+        EasyMock.anyObject(), EasyMock.anyObject())).andReturn(Lists.newArrayList());
+    EasyMock.expect(browser.findElements(By.xpath("//a"))).andReturn(Lists.newArrayList(link));
+    EasyMock.replay(browser, factory);
+
+    WebDriverWrapper driver = new WebDriverWrapper(new WebDriverPool(factory, 1), null,
+        0, 0, false);
+    driver.getActionableElementsForFrame(null);
+    XpathActionGeneratorConfig config = createActionGeneratorConfig("a");
+    for (int i = 0; i < 5; ++i) {
+      assertTrue(config.matches(driver, createElementWithId(link)));
+      assertFalse(config.matches(driver, createElementWithId(button)));
+    }
+    EasyMock.verify(browser, factory);
+  }
+
+  private WebElementWithIdentifier createElementWithId(WebElement element) {
+    return new WebElementWithIdentifier(new WebElementWrapper(element),
+        new IdWebElementIdentifier("id"));
+  }
+
+  private XpathActionGeneratorConfig createActionGeneratorConfig(String xpath) {
+    return new XpathActionGeneratorConfig(xpath) {
+      @Override
+      public Set<Action> generateActions(WebDriverWrapper driver,
+          WebElementWithIdentifier elementWithId) {
+        return null;
+      }
+    };
+  }
+}
@@ -0,0 +1,121 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.WaitAction;
+import org.webtestingexplorer.codec.SerializationFormat;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Tests for the {@link DirectoryWorkStore} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class DirectoryWorkStoreTest {
+
+  private File directory;
+  private DirectoryWorkStore busyStore;
+  private DirectoryWorkStore idleStore;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile("workstore", "");
+    directory.delete();
+    busyStore = new DirectoryWorkStore(directory.getPath(), SerializationFormat.XML);
+    idleStore = new DirectoryWorkStore(directory.getPath(), SerializationFormat.XML);
+    busyStore.register();
+    idleStore.register();
+  }
+
+  @After
+  public void tearDown() {
+    deleteRecursively(directory);
+  }
+
+  @Test
+  public void onlyOneClaimsInitialSequences() throws Exception {
+    assertTrue(busyStore.claimInitialSequences());
+    assertFalse(idleStore.claimInitialSequences());
+  }
+
+  @Test
+  public void stealOfferedWork() throws Exception {
+    assertFalse(busyStore.hasIdleWorkers());
+    idleStore.setIdle();
+    assertTrue(busyStore.hasIdleWorkers());
+    assertNull(idleStore.steal());
+
+    List<ActionSequence> sequences = Lists.newArrayList(
+        new ActionSequence(new WaitAction(1)), new ActionSequence(new WaitAction(2)));
+    busyStore.offer(sequences);
+    List<ActionSequence> stolen = idleStore.steal();
+    assertEquals(2, stolen.size());
+    assertEquals(sequences.get(0).getLastAction(), stolen.get(0).getLastAction());
+    assertEquals(sequences.get(1).getLastAction(), stolen.get(1).getLastAction());
+
+    // Stealing made it busy again.
+    assertFalse(busyStore.hasIdleWorkers());
+    assertNull(busyStore.steal());
+  }
+
+  @Test
+  public void setBusyStopsBeingIdle() throws Exception {
+    idleStore.setIdle();
+    assertTrue(busyStore.hasIdleWorkers());
+    idleStore.setBusy();
+    assertFalse(busyStore.hasIdleWorkers());
+    busyStore.setIdle();
+    assertFalse(busyStore.tryFinish());
+  }
+
+  @Test
+  public void finishOnlyWhenEveryoneIsIdle() throws Exception {
+    idleStore.setIdle();
+    assertFalse(idleStore.tryFinish());
+
+    busyStore.offer(Lists.newArrayList(new ActionSequence(new WaitAction(1))));
+    busyStore.setIdle();
+    assertFalse(busyStore.tryFinish());
+
+    assertEquals(1, idleStore.steal().size());
+    idleStore.setIdle();
+    assertTrue(busyStore.tryFinish());
+    assertTrue(idleStore.tryFinish());
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.distributed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.actions.WaitAction;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link LocalExplorationCoordinator} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class LocalExplorationCoordinatorTest {
+
+  @Test
+  public void leaseAndComplete() {
+    LocalExplorationCoordinator coordinator = new LocalExplorationCoordinator();
+    assertTrue(coordinator.claimInitialSequences());
+    assertFalse(coordinator.claimInitialSequences());
+    assertFalse(coordinator.isFinished());
+
+    List<ActionSequence> initial = createSequences(1, 2, 3);
+    coordinator.addActionSequences(initial);
+    ActionSequenceLease lease = coordinator.lease(2);
+    assertEquals(Lists.newArrayList(initial.get(2), initial.get(1)), lease.getActionSequences());
+    assertEquals(1, coordinator.getQueueSize());
+
+    List<ActionSequence> extended = createSequences(4);
+    assertTrue(coordinator.complete(lease.getId(), extended));
+    ActionSequenceLease nextLease = coordinator.lease(10);
+    assertEquals(Lists.newArrayList(extended.get(0), initial.get(0)),
+        nextLease.getActionSequences());
+    assertNull(coordinator.lease(10));
+    assertFalse(coordinator.isFinished());
+
+    assertTrue(coordinator.complete(nextLease.getId(), createSequences()));
+    assertTrue(coordinator.isFinished());
+  }
+
+  @Test
+  public void expiredLeaseIsRequeued() throws Exception {
+    LocalExplorationCoordinator coordinator =
+        new LocalExplorationCoordinator(new ActionSequenceQueue(), 0);
+    coordinator.addActionSequences(createSequences(1, 2));
+    ActionSequenceLease lease = coordinator.lease(10);
+    Thread.sleep(1);
+
+    ActionSequenceLease secondLease = coordinator.lease(10);
+    assertEquals(lease.getActionSequences(), secondLease.getActionSequences());
+    assertFalse(coordinator.complete(lease.getId(), createSequences(3)));
+  }
+
+  @Test
+  public void releasedLeaseIsRequeued() {
+    LocalExplorationCoordinator coordinator = new LocalExplorationCoordinator();
+    coordinator.addActionSequences(createSequences(1, 2, 3));
+    ActionSequenceLease lease = coordinator.lease(2);
+    coordinator.release(lease.getId());
+    assertEquals(3, coordinator.getQueueSize());
+    assertFalse(coordinator.complete(lease.getId(), createSequences(4)));
+
+    ActionSequenceLease secondLease = coordinator.lease(2);
+    assertEquals(lease.getActionSequences(), secondLease.getActionSequences());
+    assertTrue(coordinator.complete(secondLease.getId(), createSequences()));
+    coordinator.release(coordinator.lease(10).getId());
+    assertFalse(coordinator.isFinished());
+  }
+
+  @Test
+  public void statesAndTestCaseNumbers() {
+    LocalExplorationCoordinator coordinator = new LocalExplorationCoordinator();
+    assertTrue(coordinator.markStateVisited("a"));
+    assertFalse(coordinator.markStateVisited("a"));
+    assertTrue(coordinator.markStateVisited("b"));
+    assertEquals(1, coordinator.nextTestCaseNumber());
+    assertEquals(2, coordinator.nextTestCaseNumber());
+  }
+
+  @Test
+  public void overHttp() throws Exception {
+    LocalExplorationCoordinator coordinator = new LocalExplorationCoordinator();
+    HttpExplorationCoordinatorServer server = new HttpExplorationCoordinatorServer(coordinator, 0);
+    server.start();
+    try {
+      ExplorationCoordinator client =
+          new HttpExplorationCoordinatorClient("http://localhost:" + server.getPort());
+      assertTrue(client.claimInitialSequences());
+      client.addActionSequences(createSequences(1, 2));
+      assertEquals(2, coordinator.getQueueSize());
+
+      ActionSequenceLease lease = client.lease(1);
+      assertEquals(new WaitAction(2), lease.getActionSequences().get(0).getLastAction());
+      assertTrue(client.complete(lease.getId(), createSequences(3)));
+      assertEquals(2, coordinator.getQueueSize());
+      client.release(client.lease(1).getId());
+      assertEquals(2, coordinator.getQueueSize());
+      assertTrue(client.markStateVisited("some state"));
+      assertFalse(client.markStateVisited("some state"));
+      assertEquals(1, client.nextTestCaseNumber());
+      assertFalse(client.isFinished());
+    } finally {
+      server.stop();
+    }
+  }
+
+  private List<ActionSequence> createSequences(long... waitTimes) {
+    List<ActionSequence> sequences = Lists.newArrayList();
+    for (long waitTime : waitTimes) {
+      sequences.add(new ActionSequence(new WaitAction(waitTime)));
+    }
+    return sequences;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+import org.webtestingexplorer.actions.Action;
+import org.webtestingexplorer.actions.ClickAction;
+import org.webtestingexplorer.actions.SetTextAction;
+import org.webtestingexplorer.identifiers.IdWebElementIdentifier;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link BrowserStateSnapshotCache} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class BrowserStateSnapshotCacheTest {
+
+  private static final String START_URL = "http://localhost:8080/login";
+
+  @Test
+  public void getByInitialActions() {
+    BrowserStateSnapshotCache cache = new BrowserStateSnapshotCache();
+    List<Action> login = createInitialActions("user");
+    BrowserStateSnapshot snapshot = createSnapshot();
+    cache.put(START_URL, login, snapshot);
+
+    assertSame(snapshot, cache.get(START_URL, createInitialActions("user")));
+    assertNull(cache.get(START_URL, createInitialActions("admin")));
+    assertNull(cache.get("http://localhost:8080/other", login));
+  }
+
+  @Test
+  public void snapshotsExpire() throws Exception {
+    BrowserStateSnapshotCache cache = new BrowserStateSnapshotCache(10);
+    List<Action> login = createInitialActions("user");
+    cache.put(START_URL, login, createSnapshot());
+    Thread.sleep(50);
+    assertNull(cache.get(START_URL, login));
+  }
+
+  @Test
+  public void removeOnlyRemovesTheGivenSnapshot() {
+    BrowserStateSnapshotCache cache = new BrowserStateSnapshotCache();
+    List<Action> login = createInitialActions("user");
+    BrowserStateSnapshot oldSnapshot = createSnapshot();
+    BrowserStateSnapshot newSnapshot = createSnapshot();
+    cache.put(START_URL, login, newSnapshot);
+
+    cache.remove(START_URL, login, oldSnapshot);
+    assertSame(newSnapshot, cache.get(START_URL, login));
+    cache.remove(START_URL, login, newSnapshot);
+    assertNull(cache.get(START_URL, login));
+  }
+
+  @Test
+  public void evictedSnapshotsDeleteTheirScreenshots() throws Exception {
+    BrowserStateSnapshotCache cache = new BrowserStateSnapshotCache();
+    List<Action> login = createInitialActions("user");
+    BrowserStateSnapshot oldSnapshot = createSnapshot();
+    oldSnapshot.setScreenshots(Lists.newArrayList(new Screenshot(new byte[] {1})));
+    cache.put(START_URL, login, oldSnapshot);
+    List<Screenshot> retained = oldSnapshot.retainScreenshots();
+
+    BrowserStateSnapshot newSnapshot = createSnapshot();
+    newSnapshot.setScreenshots(Lists.newArrayList(new Screenshot(new byte[] {2})));
+    cache.put(START_URL, login, newSnapshot);
+    assertNull(oldSnapshot.retainScreenshots());
+    // Still held by whoever retained it.
+    assertArrayEquals(new byte[] {1}, retained.get(0).getBytes());
+
+    cache.remove(START_URL, login, newSnapshot);
+    assertNull(newSnapshot.retainScreenshots());
+  }
+
+  @Test
+  public void isSameOrigin() {
+    BrowserStateSnapshot snapshot = createSnapshot();
+    assertTrue(snapshot.isSameOrigin(START_URL));
+    assertFalse(snapshot.isSameOrigin("http://localhost:8081/login"));
+    assertFalse(snapshot.isSameOrigin("https://localhost:8080/login"));
+  }
+
+  private static List<Action> createInitialActions(String user) {
+    List<Action> actions = Lists.newArrayList(
+        new SetTextAction(new IdWebElementIdentifier("user"), user),
+        new ClickAction(new IdWebElementIdentifier("login")));
+    for (Action action : actions) {
+      action.setInitial(true);
+    }
+    return actions;
+  }
+
+  private static BrowserStateSnapshot createSnapshot() {
+    return new BrowserStateSnapshot("http://localhost:8080/home",
+        Sets.newHashSet(new Cookie("session", "1234")),
+        Maps.<String, String>newHashMap(), Maps.<String, String>newHashMap());
+  }
+}
@@ -0,0 +1,99 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.webtestingexplorer.config.WebElementSelector;
+import org.webtestingexplorer.testing.FakeWebElement;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the {@link EquivalentElementsIndex} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class EquivalentElementsIndexTest {
+
+  private final WebElement row1 = new FakeWebElement();
+  private final WebElement row2 = new FakeWebElement();
+  private final WebElement tab1 = new FakeWebElement();
+  private final WebElement tab2 = new FakeWebElement();
+  private final WebElement other = new FakeWebElement();
+
+  @Test
+  public void addsActionsForOneElementPerSelector() {
+    EquivalentElementsIndex index = createIndex("page:1");
+    Set<String> marked = Sets.newHashSet();
+    assertTrue(index.shouldAddActions(new WebElementWrapper(other), marked));
+    assertTrue(index.shouldAddActions(new WebElementWrapper(row1), marked));
+    assertTrue(index.shouldAddActions(new WebElementWrapper(tab1), marked));
+    assertFalse(index.shouldAddActions(new WebElementWrapper(row2), marked));
+    assertFalse(index.shouldAddActions(new WebElementWrapper(tab2), marked));
+    assertTrue(index.shouldAddActions(new WebElementWrapper(other), marked));
+  }
+
+  @Test
+  public void getSelectorNames() {
+    EquivalentElementsIndex index = createIndex("page:1");
+    assertEquals(Lists.newArrayList("rows"), index.getSelectorNames(row2));
+    assertTrue(index.getSelectorNames(other).isEmpty());
+  }
+
+  @Test
+  public void isCurrent() {
+    Map<String, WebElementSelector> selectors = createSelectors();
+    EquivalentElementsIndex index = new EquivalentElementsIndex("page:1", selectors,
+        Maps.<String, List<WebElement>>newHashMap());
+    assertTrue(index.isCurrent("page:1", selectors));
+    assertFalse(index.isCurrent("page:2", selectors));
+    assertFalse(index.isCurrent("page:1", Maps.<String, WebElementSelector>newHashMap()));
+    assertFalse(new EquivalentElementsIndex(null, selectors,
+        Maps.<String, List<WebElement>>newHashMap()).isCurrent(null, selectors));
+  }
+
+  private EquivalentElementsIndex createIndex(String domVersion) {
+    Map<String, List<WebElement>> selectedElements = Maps.newLinkedHashMap();
+    selectedElements.put("rows", Lists.newArrayList(row1, row2));
+    selectedElements.put("tabs", Lists.newArrayList(tab1, tab2));
+    return new EquivalentElementsIndex(domVersion, createSelectors(), selectedElements);
+  }
+
+  private static Map<String, WebElementSelector> createSelectors() {
+    WebElementSelector selector = new WebElementSelector() {
+      @Override
+      public List<WebElement> select(WebDriver driver) {
+        return null;
+      }
+    };
+    Map<String, WebElementSelector> selectors = Maps.newHashMap();
+    selectors.put("rows", selector);
+    selectors.put("tabs", selector);
+    return selectors;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.webtestingexplorer.driver.RequestCaptureStore.CapturedRequest;
+
+import java.net.URI;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for the {@link InFlightRequestTracker} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class InFlightRequestTrackerTest {
+
+  @Test
+  public void pairsRequestsWithResponses() throws Exception {
+    InFlightRequestTracker tracker = new InFlightRequestTracker();
+    CapturedRequest first = createRequest("http://localhost/a");
+    CapturedRequest second = createRequest("http://localhost/a");
+    assertTrue(tracker.requestStarted(first));
+    assertTrue(tracker.requestStarted(second));
+    assertEquals(2, tracker.getInFlightCount());
+    assertEquals(-1, tracker.getIdleMillis());
+
+    tracker.requestFinished(second);
+    tracker.requestFinished(second);
+    assertEquals(1, tracker.getInFlightCount());
+    tracker.requestFinished(first);
+    assertEquals(0, tracker.getInFlightCount());
+    assertTrue(tracker.getIdleMillis() >= 0);
+  }
+
+  @Test
+  public void ignoresMatchingUrls() throws Exception {
+    InFlightRequestTracker tracker = new InFlightRequestTracker();
+    tracker.setIgnoredUrlPatterns(Lists.newArrayList(Pattern.compile(".*/poll\\?.*")));
+    CapturedRequest poll = createRequest("http://localhost/poll?since=1");
+    assertFalse(tracker.requestStarted(poll));
+    assertEquals(0, tracker.getInFlightCount());
+    tracker.requestFinished(poll);
+    assertEquals(0, tracker.getInFlightCount());
+  }
+
+  @Test
+  public void resetForgetsRequestsInFlight() throws Exception {
+    InFlightRequestTracker tracker = new InFlightRequestTracker();
+    CapturedRequest request = createRequest("http://localhost/a");
+    tracker.requestStarted(request);
+    tracker.reset();
+    assertEquals(0, tracker.getInFlightCount());
+    tracker.requestFinished(request);
+    assertEquals(0, tracker.getInFlightCount());
+  }
+
+  @Test
+  public void awaitIdle() throws Exception {
+    final InFlightRequestTracker tracker = new InFlightRequestTracker();
+    final CapturedRequest request = createRequest("http://localhost/a");
+    tracker.requestStarted(request);
+    assertFalse(tracker.awaitIdle(0, 10));
+
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException useless) {
+        }
+        tracker.requestFinished(request);
+      }
+    }.start();
+    long startMillis = System.currentTimeMillis();
+    assertTrue(tracker.awaitIdle(10, 10000));
+    assertTrue(System.currentTimeMillis() - startMillis < 5000);
+  }
+
+  @Test
+  public void captureStoreTellsTracker() throws Exception {
+    InFlightRequestTracker tracker = new InFlightRequestTracker();
+    RequestCaptureStore store = new RequestCaptureStore(tracker);
+    CapturedRequest request = store.requestStarted(new URI("http://localhost/a"), -1);
+    assertEquals(1, tracker.getInFlightCount());
+    store.responseReceived(request, 200, -1);
+    assertEquals(0, tracker.getInFlightCount());
+
+    store.requestStarted(new URI("http://localhost/b"), -1);
+    store.reset();
+    assertEquals(0, tracker.getInFlightCount());
+  }
+
+  private static CapturedRequest createRequest(String url) throws Exception {
+    return new RequestCaptureStore().requestStarted(new URI(url), -1);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webtestingexplorer.driver.RequestCaptureStore.CapturedRequest;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Tests for the {@link RequestCaptureStore} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class RequestCaptureStoreTest {
+
+  @Test
+  public void matchesResponsesToRequestsOutOfOrder() throws Exception {
+    RequestCaptureStore store = new RequestCaptureStore();
+    CapturedRequest slow = store.requestStarted(new URI("http://localhost/slow"), -1);
+    CapturedRequest fast = store.requestStarted(new URI("http://localhost/fast"), 10);
+    store.responseReceived(fast, 404, 100);
+    assertEquals(2, store.getRequestCount());
+    assertEquals(1, store.getResponseCount());
+
+    store.responseReceived(slow, 200, 2000);
+    List<CapturedRequest> requests = store.getRequests();
+    assertEquals(2, requests.size());
+    assertEquals(new URI("http://localhost/slow"), requests.get(0).getUri());
+    assertEquals(Integer.valueOf(200), requests.get(0).getStatusCode());
+    assertEquals(2000, requests.get(0).getResponseBytes());
+    assertEquals(Integer.valueOf(404), requests.get(1).getStatusCode());
+    assertEquals(10, requests.get(1).getRequestBytes());
+    assertTrue(requests.get(1).getDurationMillis() >= 0);
+  }
+
+  @Test
+  public void resetHidesOlderRequests() throws Exception {
+    RequestCaptureStore store = new RequestCaptureStore();
+    CapturedRequest old = store.requestStarted(new URI("http://localhost/old"), -1);
+    store.reset();
+    CapturedRequest current = store.requestStarted(new URI("http://localhost/new"), -1);
+    store.responseReceived(old, 200, -1);
+
+    List<CapturedRequest> requests = store.getRequests();
+    assertEquals(1, requests.size());
+    assertEquals(current.getId(), requests.get(0).getId());
+    assertFalse(requests.get(0).hasResponse());
+    assertNull(requests.get(0).getStatusCode());
+    assertEquals(-1, requests.get(0).getDurationMillis());
+    assertEquals(0, store.getResponseCount());
+    assertEquals(1, store.getRequestCount());
+  }
+
+  @Test
+  public void concurrentCapture() throws Exception {
+    final RequestCaptureStore store = new RequestCaptureStore();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 100; ++j) {
+            try {
+              CapturedRequest request = store.requestStarted(
+                  new URI("http://localhost/" + j), -1);
+              store.responseReceived(request, 200, -1);
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(800, store.getRequestCount());
+    assertEquals(800, store.getResponseCount());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tests for the {@link ScreenshotSpool} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class ScreenshotSpoolTest {
+
+  @Test
+  public void spillsScreenshotsToDisk() throws Exception {
+    ScreenshotSpool spool = new ScreenshotSpool();
+    List<Screenshot> screenshots = Lists.newArrayList();
+    for (int i = 0; i < 50; ++i) {
+      screenshots.add(spool.add(new byte[] {(byte) i, 1, 2, 3}));
+    }
+    spool.shutdown();
+
+    // Once the spool falls behind, we write some ourselves, out of order.
+    long endMillis = System.currentTimeMillis() + 10000;
+    for (Screenshot screenshot : screenshots) {
+      while (!screenshot.isSpilled() && System.currentTimeMillis() < endMillis) {
+        Thread.sleep(10);
+      }
+    }
+    for (int i = 0; i < 50; ++i) {
+      assertTrue(screenshots.get(i).isSpilled());
+      assertArrayEquals(new byte[] {(byte) i, 1, 2, 3}, screenshots.get(i).getBytes());
+    }
+
+    File destination = File.createTempFile("screenshot", ".png");
+    try {
+      screenshots.get(7).writeTo(destination);
+      assertArrayEquals(new byte[] {7, 1, 2, 3}, FileUtils.readFileToByteArray(destination));
+    } finally {
+      destination.delete();
+    }
+  }
+
+  @Test
+  public void deletesFileWhenLastHolderDeletes() throws Exception {
+    ScreenshotSpool spool = new ScreenshotSpool();
+    Screenshot screenshot = spool.add(new byte[] {1, 2, 3});
+    spool.shutdown();
+    long endMillis = System.currentTimeMillis() + 10000;
+    while (!screenshot.isSpilled() && System.currentTimeMillis() < endMillis) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, spool.getDirectory().list().length);
+
+    List<Screenshot> retained = Screenshot.retainAll(Lists.newArrayList(screenshot));
+    screenshot.delete();
+    assertEquals(1, spool.getDirectory().list().length);
+    assertArrayEquals(new byte[] {1, 2, 3}, retained.get(0).getBytes());
+
+    Screenshot.deleteAll(retained);
+    assertEquals(0, spool.getDirectory().list().length);
+    assertFalse(screenshot.isSpilled());
+    try {
+      screenshot.getBytes();
+      fail("Read a deleted screenshot");
+    } catch (IOException expected) {
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link TempProfileJanitor} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class TempProfileJanitorTest {
+
+  /**
+   * Makes a profile directory for each browser it "starts", optionally
+   * waiting for a latch in between so that starts can overlap.
+   */
+  private static class ProfileMakingWebDriverFactory implements WebDriverFactory {
+    private final TempProfileJanitor janitor;
+    private final CountDownLatch latch;
+    private boolean crashed;
+
+    public ProfileMakingWebDriverFactory(TempProfileJanitor janitor, CountDownLatch latch) {
+      this.janitor = janitor;
+      this.latch = latch;
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void term() {
+    }
+
+    @Override
+    public WebDriver createWebDriver(WebDriverProxy proxy) throws Exception {
+      WebDriver driver = createStubWebDriver(crashed);
+      new File(janitor.getProfileDirectory(), "profile" + System.identityHashCode(driver))
+          .mkdirs();
+      if (latch != null) {
+        latch.countDown();
+        latch.await(10, TimeUnit.SECONDS);
+      }
+      return driver;
+    }
+
+    @Override
+    public boolean shouldUseProxy() {
+      return false;
+    }
+  }
+
+  private File tmpDir;
+
+  @Before
+  public void setUp() throws Exception {
+    tmpDir = File.createTempFile("janitor", "");
+    tmpDir.delete();
+    tmpDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(tmpDir);
+  }
+
+  @Test
+  public void sweepsOnlyStaleProfileDirectories() throws Exception {
+    long oldMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+    File staleProfile = createDirectory("anonymous123webdriver-profile", oldMillis);
+    File staleOtherRun = createDirectory("webtestingexplorer-profiles-other", oldMillis);
+    File freshProfile = createDirectory("anonymous456webdriver-profile",
+        System.currentTimeMillis());
+    File unrelated = createDirectory("somebody-elses", oldMillis);
+
+    TempProfileJanitor janitor = new TempProfileJanitor(tmpDir);
+    janitor.getProfileDirectory().setLastModified(oldMillis);
+    janitor.sweep();
+    assertFalse(staleProfile.exists());
+    assertFalse(staleOtherRun.exists());
+    assertTrue(freshProfile.exists());
+    assertTrue(unrelated.exists());
+    assertTrue(janitor.getProfileDirectory().exists());
+
+    janitor.shutdown();
+    assertFalse(janitor.getProfileDirectory().exists());
+  }
+
+  @Test
+  public void deletesProfileOfQuitBrowser() throws Exception {
+    TempProfileJanitor janitor = new TempProfileJanitor(tmpDir);
+    WebDriverFactory factory = new ProfileMakingWebDriverFactory(janitor, null);
+    WebDriver driver = janitor.createWebDriver(factory, null);
+    WebDriver otherDriver = janitor.createWebDriver(factory, null);
+    File profile = getProfile(janitor, driver);
+    File otherProfile = getProfile(janitor, otherDriver);
+    assertTrue(profile.exists());
+    assertTrue(otherProfile.exists());
+
+    janitor.browserQuit(driver);
+    waitForDeletion(profile);
+    assertFalse(profile.exists());
+    assertTrue(otherProfile.exists());
+
+    janitor.browserQuit(otherDriver);
+    waitForDeletion(otherProfile);
+    assertFalse(otherProfile.exists());
+    janitor.shutdown();
+  }
+
+  @Test
+  public void deletesOverlappedProfilesWhenAllHaveQuit() throws Exception {
+    final TempProfileJanitor janitor = new TempProfileJanitor(tmpDir);
+    final WebDriverFactory factory =
+        new ProfileMakingWebDriverFactory(janitor, new CountDownLatch(2));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Callable<WebDriver> start = new Callable<WebDriver>() {
+      @Override
+      public WebDriver call() throws Exception {
+        return janitor.createWebDriver(factory, null);
+      }
+    };
+    Future<WebDriver> driverFuture = executor.submit(start);
+    Future<WebDriver> otherDriverFuture = executor.submit(start);
+    WebDriver driver = driverFuture.get();
+    WebDriver otherDriver = otherDriverFuture.get();
+    executor.shutdown();
+    File profile = getProfile(janitor, driver);
+    File otherProfile = getProfile(janitor, otherDriver);
+
+    janitor.browserQuit(driver);
+    // Wait as long as we would for a deletion.
+    waitForDeletion(profile);
+    assertTrue(profile.exists());
+    assertTrue(otherProfile.exists());
+
+    janitor.browserQuit(otherDriver);
+    waitForDeletion(profile);
+    waitForDeletion(otherProfile);
+    assertFalse(profile.exists());
+    assertFalse(otherProfile.exists());
+    janitor.shutdown();
+  }
+
+  /**
+   * @param crashed whether the driver should throw from everything, like one
+   *     whose browser has gone away.
+   */
+  @Test
+  public void deletesProfileOfCrashedBrowser() throws Exception {
+    TempProfileJanitor janitor = new TempProfileJanitor(tmpDir);
+    ProfileMakingWebDriverFactory factory = new ProfileMakingWebDriverFactory(janitor, null);
+    factory.crashed = true;
+    WebDriver driver = janitor.createWebDriver(factory, null);
+    File profile = getProfile(janitor, driver);
+    assertTrue(profile.exists());
+
+    try {
+      janitor.quit(driver);
+      fail("Quit a crashed browser");
+    } catch (WebDriverException expected) {
+    }
+    waitForDeletion(profile);
+    assertFalse(profile.exists());
+    janitor.shutdown();
+  }
+
+  private static WebDriver createStubWebDriver(final boolean crashed) {
+    return (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+        new Class<?>[] {WebDriver.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("equals")) {
+              return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode")) {
+              return System.identityHashCode(proxy);
+            }
+            if (crashed) {
+              throw new WebDriverException("Browser has gone away");
+            }
+            return null;
+          }
+        });
+  }
+
+  private static File getProfile(TempProfileJanitor janitor, WebDriver driver) {
+    return new File(janitor.getProfileDirectory(), "profile" + System.identityHashCode(driver));
+  }
+
+  private static void waitForDeletion(File dir) throws InterruptedException {
+    long endMillis = System.currentTimeMillis() + 500;
+    while (dir.exists() && System.currentTimeMillis() < endMillis) {
+      Thread.sleep(10);
+    }
+  }
+
+  private File createDirectory(String name, long lastModifiedMillis) {
+    File dir = new File(tmpDir, name);
+    dir.mkdirs();
+    dir.setLastModified(lastModifiedMillis);
+    return dir;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Tests for the {@link WebDriverPool} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebDriverPoolTest {
+
+  interface JavascriptWebDriver extends WebDriver, JavascriptExecutor {
+  }
+
+  @Test
+  public void reusesBrowserUntilMaxUses() throws Exception {
+    WebDriver browser = createResettableBrowser();
+    WebDriverFactory factory = EasyMock.createMock(WebDriverFactory.class);
+    EasyMock.expect(factory.createWebDriver(null)).andReturn(browser);
+    EasyMock.replay(factory);
+
+    WebDriverPool pool = new WebDriverPool(factory, 2);
+    assertSame(browser, pool.acquire(null));
+    assertTrue(pool.release(browser, null));
+    assertSame(browser, pool.acquire(null));
+    assertFalse(pool.release(browser, null));
+    EasyMock.verify(factory);
+  }
+
+  @Test
+  public void doesNotReuseDiscardedBrowsers() throws Exception {
+    WebDriver badBrowser = createResettableBrowser();
+    WebDriver goodBrowser = createResettableBrowser();
+    WebDriverFactory factory = EasyMock.createMock(WebDriverFactory.class);
+    EasyMock.expect(factory.createWebDriver(null)).andReturn(badBrowser);
+    EasyMock.expect(factory.createWebDriver(null)).andReturn(goodBrowser);
+    EasyMock.replay(factory);
+
+    WebDriverPool pool = new WebDriverPool(factory, 10);
+    assertSame(badBrowser, pool.acquire(null));
+    pool.discard(badBrowser);
+    assertFalse(pool.release(badBrowser, null));
+    assertSame(goodBrowser, pool.acquire(null));
+    EasyMock.verify(factory);
+  }
+
+  private WebDriver createResettableBrowser() {
+    JavascriptWebDriver browser = EasyMock.createNiceMock(JavascriptWebDriver.class);
+    WebDriver.TargetLocator targetLocator = EasyMock.createNiceMock(WebDriver.TargetLocator.class);
+    WebDriver.Options options = EasyMock.createNiceMock(WebDriver.Options.class);
+    EasyMock.expect(browser.getWindowHandles()).andReturn(Sets.newHashSet("window")).anyTimes();
+    EasyMock.expect(browser.switchTo()).andReturn(targetLocator).anyTimes();
+    EasyMock.expect(browser.manage()).andReturn(options).anyTimes();
+    EasyMock.replay(browser, targetLocator, options);
+    return browser;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link WebDriverProxyPool} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebDriverProxyPoolTest {
+
+  @Test
+  public void reusesReleasedProxies() throws Exception {
+    WebDriverProxyPool pool = new WebDriverProxyPool();
+    try {
+      List<WebDriverProxy> proxies = pool.acquire(2);
+      assertEquals(2, proxies.size());
+      assertFalse(proxies.get(0).getPort() == proxies.get(1).getPort());
+
+      pool.release(proxies.get(1));
+      assertSame(proxies.get(1), pool.acquire());
+      pool.release(proxies.get(0));
+      pool.release(proxies.get(1));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void startsOnlyTheProxiesItDoesNotHave() throws Exception {
+    WebDriverProxyPool pool = new WebDriverProxyPool();
+    try {
+      WebDriverProxy idleProxy = pool.acquire();
+      pool.release(idleProxy);
+      List<WebDriverProxy> proxies = pool.acquire(3);
+      assertEquals(3, proxies.size());
+      assertSame(idleProxy, proxies.get(0));
+      assertFalse(proxies.get(1) == idleProxy || proxies.get(2) == idleProxy);
+      for (WebDriverProxy proxy : proxies) {
+        pool.release(proxy);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.driver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+import org.webtestingexplorer.testing.FakeWebElement;
+
+import java.util.Arrays;
+
+/**
+ * Tests for the {@link WebElementWrapper} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebElementWrapperTest {
+
+  private static class CountingWebElement extends FakeWebElement {
+    private int numCalls;
+
+    @Override
+    public String getAttribute(String name) {
+      ++numCalls;
+      return "live-" + name;
+    }
+
+    @Override
+    public String getTagName() {
+      ++numCalls;
+      return "live";
+    }
+  }
+
+  @Test
+  public void snapshotAnswersWithoutTheBrowser() {
+    CountingWebElement element = new CountingWebElement();
+    WebElementWrapper wrapper = WebElementWrapper.fromSnapshot(Arrays.<Object>asList(
+        element, "input", "user", null, "wide", "text", true, false, "<input id=\"user\">",
+        ImmutableMap.of("role", "textbox")));
+
+    assertEquals("input", wrapper.getTagName());
+    assertEquals("user", wrapper.getAttribute("id"));
+    assertNull(wrapper.getAttribute("name"));
+    assertEquals("wide", wrapper.getAttribute("class"));
+    assertEquals("text", wrapper.getAttribute("type"));
+    assertEquals("<input id=\"user\">", wrapper.getAttribute("outerHTML"));
+    assertTrue(wrapper.isDisplayed());
+    assertFalse(wrapper.isEnabled());
+    assertEquals("textbox", wrapper.getAttribute("role"));
+    assertEquals(0, element.numCalls);
+
+    assertEquals("live-value", wrapper.getAttribute("value"));
+    assertEquals(1, element.numCalls);
+  }
+
+  @Test
+  public void attributesAreLiveIfNotInSnapshot() {
+    CountingWebElement element = new CountingWebElement();
+    WebElementWrapper wrapper = WebElementWrapper.fromSnapshot(Arrays.<Object>asList(
+        element, "div", null, null, null, null, false, true, null, null));
+
+    assertEquals("live-outerHTML", wrapper.getAttribute("outerHTML"));
+    assertEquals(1, element.numCalls);
+  }
+
+  @Test
+  public void cachesIdAndName() {
+    CountingWebElement element = new CountingWebElement();
+    WebElementWrapper wrapper = new WebElementWrapper(element);
+
+    assertEquals("live-id", wrapper.getAttribute("id"));
+    assertEquals("live-id", wrapper.getAttribute("id"));
+    assertEquals("live-name", wrapper.getAttribute("name"));
+    assertEquals("live-name", wrapper.getAttribute("name"));
+    assertEquals(2, element.numCalls);
+  }
+}
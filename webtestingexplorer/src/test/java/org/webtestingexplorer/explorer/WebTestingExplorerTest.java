@@ -0,0 +1,188 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.explorer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.webtestingexplorer.actions.Action;
+import org.webtestingexplorer.actions.ActionSequence;
+import org.webtestingexplorer.actions.ActionSequenceQueue;
+import org.webtestingexplorer.actions.WaitAction;
+import org.webtestingexplorer.config.ActionSequenceFilter;
+import org.webtestingexplorer.config.OracleConfig;
+import org.webtestingexplorer.config.OracleConfigFactory;
+import org.webtestingexplorer.config.WebTestingConfig;
+import org.webtestingexplorer.distributed.LocalExplorationCoordinator;
+import org.webtestingexplorer.driver.ActionSequenceRunner;
+import org.webtestingexplorer.driver.WebDriverFactory;
+import org.webtestingexplorer.driver.WebDriverProxy;
+import org.webtestingexplorer.oracles.TimingOracle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the {@link WebTestingExplorer} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WebTestingExplorerTest {
+
+  /**
+   * Doesn't start any browsers, since the explorer below doesn't need them.
+   */
+  private static class NoBrowserWebDriverFactory implements WebDriverFactory {
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void term() {
+    }
+
+    @Override
+    public WebDriver createWebDriver(WebDriverProxy proxy) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean shouldUseProxy() {
+      return false;
+    }
+  }
+
+  /**
+   * Records the sequences it explores instead of running them, and extends
+   * each one with two waits.
+   */
+  private static class RecordingExplorer extends WebTestingExplorer {
+    private final Multiset<String> exploredSequences =
+        ConcurrentHashMultiset.<String>create();
+    private final Multiset<String> exploringThreads =
+        ConcurrentHashMultiset.<String>create();
+
+    /**
+     * The sequence to blow up on instead of exploring, if any.
+     */
+    private String failingSequence;
+
+    public RecordingExplorer(WebTestingConfig config) throws Exception {
+      super(config);
+    }
+
+    @Override
+    List<Action> exploreActionSequence(ActionSequenceRunner runner,
+        ActionSequence actionSequence, int maxSequenceLength) {
+      exploredSequences.add(actionSequence.toString());
+      exploringThreads.add(Thread.currentThread().getName());
+      if (actionSequence.toString().equals(failingSequence)) {
+        throw new IllegalStateException("Failing on purpose");
+      }
+      try {
+        // Give the other worker a chance.
+        Thread.sleep(5);
+      } catch (InterruptedException useless) {
+      }
+      if (actionSequence.getLength() < maxSequenceLength) {
+        return Lists.<Action>newArrayList(new WaitAction(1), new WaitAction(2));
+      }
+      return Collections.emptyList();
+    }
+  }
+
+  @Test
+  public void workersExploreEachSequenceOnce() throws Exception {
+    WebTestingConfig config = new WebTestingConfig()
+        .setUrl("http://localhost/")
+        .setWebDriverFactory(new NoBrowserWebDriverFactory())
+        .setNumWorkers(2)
+        .addActionSequenceFilter(new ActionSequenceFilter() {
+          @Override
+          public boolean shouldExplore(ActionSequence actionSequence,
+              ActionSequenceQueue existingActionSequences) {
+            return true;
+          }
+        });
+    RecordingExplorer explorer = new RecordingExplorer(config);
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.push(new ActionSequence());
+    explorer.replay(queue, 4);
+
+    // 1 + 2 + 4 + 8 + 16 sequences of length 0 to 4.
+    assertEquals(31, explorer.exploredSequences.size());
+    for (Multiset.Entry<String> entry : explorer.exploredSequences.entrySet()) {
+      assertEquals(entry.getElement(), 1, entry.getCount());
+    }
+    assertTrue(explorer.exploringThreads.elementSet().size() <= 2);
+  }
+
+  @Test
+  public void coordinatedWorkerSurvivesFailingSequence() throws Exception {
+    LocalExplorationCoordinator coordinator = new LocalExplorationCoordinator();
+    coordinator.addActionSequences(Lists.newArrayList(new ActionSequence()));
+    WebTestingConfig config = new WebTestingConfig()
+        .setUrl("http://localhost/")
+        .setWebDriverFactory(new NoBrowserWebDriverFactory())
+        .setCoordinator(coordinator)
+        .addActionSequenceFilter(new ActionSequenceFilter() {
+          @Override
+          public boolean shouldExplore(ActionSequence actionSequence,
+              ActionSequenceQueue existingActionSequences) {
+            return true;
+          }
+        });
+    RecordingExplorer explorer = new RecordingExplorer(config);
+    explorer.failingSequence = new ActionSequence(new WaitAction(1)).toString();
+    explorer.replay(new ActionSequenceQueue(), 2);
+
+    // The failing sequence doesn't get extended, but everything else does.
+    assertEquals(5, explorer.exploredSequences.size());
+    assertEquals(1, explorer.exploredSequences.count(explorer.failingSequence));
+    assertTrue(coordinator.isFinished());
+  }
+
+  @Test
+  public void workersRejectSharedOracles() throws Exception {
+    final TimingOracle sharedOracle = new TimingOracle(1000);
+    WebTestingConfig config = new WebTestingConfig()
+        .setUrl("http://localhost/")
+        .setWebDriverFactory(new NoBrowserWebDriverFactory())
+        .setNumWorkers(2)
+        .setOracleConfigFactory(new OracleConfigFactory() {
+          @Override
+          public OracleConfig createOracleConfig() {
+            return new OracleConfig().addAfterActionOracle(sharedOracle);
+          }
+        });
+    RecordingExplorer explorer = new RecordingExplorer(config);
+    ActionSequenceQueue queue = new ActionSequenceQueue();
+    queue.push(new ActionSequence());
+    try {
+      explorer.replay(queue, 1);
+      fail("Workers shared an oracle");
+    } catch (IllegalStateException expected) {
+    }
+    assertTrue(explorer.exploredSequences.isEmpty());
+  }
+}
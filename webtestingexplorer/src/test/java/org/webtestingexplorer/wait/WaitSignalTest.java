@@ -0,0 +1,62 @@
+/*
+Copyright 2012 Google Inc. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.webtestingexplorer.wait;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link WaitSignal} class.
+ *
+ * @author scott.d.mcmaster@gmail.com (Scott McMaster)
+ */
+public class WaitSignalTest {
+
+  @Test
+  public void awaitTimesOutWithoutSignal() throws Exception {
+    WaitSignal signal = new WaitSignal();
+    assertFalse(signal.await(signal.getCount(), 10));
+  }
+
+  @Test
+  public void signalBeforeAwaitIsNotLost() throws Exception {
+    WaitSignal signal = new WaitSignal();
+    long count = signal.getCount();
+    signal.signal();
+    assertTrue(signal.await(count, 10));
+  }
+
+  @Test
+  public void signalFromAnotherThreadWakesAwait() throws Exception {
+    final WaitSignal signal = new WaitSignal();
+    long count = signal.getCount();
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException useless) {
+        }
+        signal.signal();
+      }
+    }.start();
+    long startMillis = System.currentTimeMillis();
+    assertTrue(signal.await(count, 10000));
+    assertTrue(System.currentTimeMillis() - startMillis < 5000);
+  }
+}